@@ -0,0 +1,112 @@
+package jpiccoli.mt.crosscorrelation;
+
+/**
+ * Computes the correlation between a signal and a waveform at given lags (sums of products).
+ * <p>
+ * Adjacent lags are computed four at a time: each waveform sample loaded from memory is multiplied by
+ * the signal samples of the four lags, which are accumulated in separate registers. Each lag also uses two
+ * partial sums (even and odd signal indexes), so eight independent additions are in flight instead of a
+ * single chain in which every addition waits for the previous one.
+ * <p>
+ * The single-lag computation adds the products in the same order as the blocked one, so the result for a
+ * lag is always the same, regardless of how the lags are grouped.
+ * All the scanners compute the direct correlation through this class. The samples of mapped and streamed
+ * waveforms are copied to arrays first, so every scanner uses the blocked computation.
+ * @author Piccoli
+ *
+ */
+final class CorrelationKernel {
+	
+	/**
+	 * Number of adjacent lags computed in each pass over the signal.
+	 */
+	static final int LAGS_PER_PASS = 4;
+	
+	private CorrelationKernel() {
+	}
+	
+	/**
+	 * Computes the correlation of a single lag.
+	 * @param signal The signal.
+	 * @param waveform The waveform.
+	 * @param offset Index of the waveform sample multiplied by the first signal sample.
+	 * @return The correlation.
+	 */
+	static float correlate(final float[] signal, final float[] waveform, final int offset) {
+		final int evenLength = signal.length & ~1;
+		float even = 0;
+		float odd = 0;
+		for (int index = 0; index < evenLength; index += 2) {
+			even += signal[index] * waveform[offset + index];
+			odd += signal[index + 1] * waveform[offset + index + 1];
+		}
+		float sum = even + odd;
+		if (evenLength < signal.length) {
+			sum += signal[evenLength] * waveform[offset + evenLength];
+		}
+		return sum;
+	}
+	
+	/**
+	 * Computes the correlation of consecutive lags.
+	 * @param signal The signal.
+	 * @param waveform The waveform.
+	 * @param offset First lag.
+	 * @param count Number of lags.
+	 * @param results Receives the correlation of the lag 'offset + index' at the position 'index'.
+	 */
+	static void correlate(final float[] signal, final float[] waveform, final int offset, final int count, final float[] results) {
+		int index = 0;
+		for (; index + LAGS_PER_PASS <= count; index += LAGS_PER_PASS) {
+			correlateBlock(signal, waveform, offset + index, results, index);
+		}
+		for (; index < count; index++) {
+			results[index] = correlate(signal, waveform, offset + index);
+		}
+	}
+	
+	private static void correlateBlock(final float[] signal, final float[] waveform, final int offset, final float[] results, final int resultsPosition) {
+		final int evenLength = signal.length & ~1;
+		float even0 = 0, even1 = 0, even2 = 0, even3 = 0;
+		float odd0 = 0, odd1 = 0, odd2 = 0, odd3 = 0;
+		// Samples [index, index + 4] of the waveform window are needed in each iteration. The last three
+		// are kept for the next iteration, so only two samples are loaded per iteration.
+		float sample0 = waveform[offset];
+		float sample1 = waveform[offset + 1];
+		float sample2 = waveform[offset + 2];
+		for (int index = 0; index < evenLength; index += 2) {
+			final float sample3 = waveform[offset + index + 3];
+			final float sample4 = waveform[offset + index + 4];
+			final float evenSignal = signal[index];
+			final float oddSignal = signal[index + 1];
+			even0 += evenSignal * sample0;
+			odd0 += oddSignal * sample1;
+			even1 += evenSignal * sample1;
+			odd1 += oddSignal * sample2;
+			even2 += evenSignal * sample2;
+			odd2 += oddSignal * sample3;
+			even3 += evenSignal * sample3;
+			odd3 += oddSignal * sample4;
+			sample0 = sample2;
+			sample1 = sample3;
+			sample2 = sample4;
+		}
+		float sum0 = even0 + odd0;
+		float sum1 = even1 + odd1;
+		float sum2 = even2 + odd2;
+		float sum3 = even3 + odd3;
+		if (evenLength < signal.length) {
+			final float lastSignal = signal[evenLength];
+			final int last = offset + evenLength;
+			sum0 += lastSignal * waveform[last];
+			sum1 += lastSignal * waveform[last + 1];
+			sum2 += lastSignal * waveform[last + 2];
+			sum3 += lastSignal * waveform[last + 3];
+		}
+		results[resultsPosition] = sum0;
+		results[resultsPosition + 1] = sum1;
+		results[resultsPosition + 2] = sum2;
+		results[resultsPosition + 3] = sum3;
+	}
+	
+}
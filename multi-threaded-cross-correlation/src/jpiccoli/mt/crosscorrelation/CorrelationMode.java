@@ -0,0 +1,27 @@
+package jpiccoli.mt.crosscorrelation;
+
+/**
+ * Defines how the cross correlation between the signal and the waveform is computed.
+ * @author Piccoli
+ *
+ */
+public enum CorrelationMode {
+	
+	/**
+	 * Chooses between the direct and the FFT-based computation according to the signal length.
+	 */
+	AUTO,
+	
+	/**
+	 * Computes the sum of products of every lag separately. The cost is proportional to the
+	 * waveform length multiplied by the signal length.
+	 */
+	DIRECT,
+	
+	/**
+	 * Computes the correlation of blocks of lags through Fast Fourier Transforms (overlap-save method).
+	 * The cost per lag grows with the logarithm of the signal length instead of with the signal length.
+	 */
+	FFT
+	
+}
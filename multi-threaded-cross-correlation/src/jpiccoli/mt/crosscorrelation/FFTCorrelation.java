@@ -0,0 +1,173 @@
+package jpiccoli.mt.crosscorrelation;
+
+/**
+ * Computes the cross correlation of a signal with blocks of a waveform through Fast Fourier Transforms,
+ * using the overlap-save method. The transform length is a power of two several times longer than the
+ * signal, and each block yields the correlation of (transform length - signal length + 1) consecutive lags.
+ * Blocks are independent, so they can be distributed among multiple threads, each one using its own {@link Worker}.
+ * @author Piccoli
+ *
+ */
+final class FFTCorrelation {
+	
+	/**
+	 * Number of lags kept by each worker for the final evaluation. The correlations obtained through the
+	 * transforms have rounding errors different from the ones of the direct computation, so the lags with the
+	 * highest values are evaluated again with the direct computation before the best one is chosen.
+	 */
+	static final int CANDIDATES_COUNT = 16;
+	
+	private static final int MINIMUM_TRANSFORM_LENGTH = 1024;
+	private static final int TRANSFORM_LENGTH_FACTOR = 4;
+	
+	private final float[] capturedWaveform;
+	private final int limit;
+	private final RealFFT fft;
+	private final int lagsPerBlock;
+	private final double[] signalSpectrumReal;
+	private final double[] signalSpectrumImaginary;
+	
+	/**
+	 * @param signal The signal for which to search.
+	 * @param capturedWaveform The waveform containing the signal.
+	 * @param limit Lags in the range [0, limit) are evaluated.
+	 */
+	FFTCorrelation(final float[] signal, final float[] capturedWaveform, final int limit) {
+		this.capturedWaveform = capturedWaveform;
+		this.limit = Math.max(limit, 0);
+		fft = new RealFFT(transformLength(signal.length));
+		final int length = fft.getLength();
+		lagsPerBlock = length - signal.length + 1;
+		final double[] input = new double[length];
+		for (int index = 0; index < signal.length; index++) {
+			input[index] = signal[index];
+		}
+		signalSpectrumReal = new double[length / 2 + 1];
+		signalSpectrumImaginary = new double[length / 2 + 1];
+		fft.forward(input, signalSpectrumReal, signalSpectrumImaginary);
+	}
+	
+	/**
+	 * Creates an instance for another waveform, sharing the transform tables and the signal spectrum of the template.
+	 * @param template Instance created for the same signal.
+	 * @param capturedWaveform The waveform containing the signal.
+	 * @param limit Lags in the range [0, limit) are evaluated.
+	 */
+	FFTCorrelation(final FFTCorrelation template, final float[] capturedWaveform, final int limit) {
+		this.capturedWaveform = capturedWaveform;
+		this.limit = Math.max(limit, 0);
+		fft = template.fft;
+		lagsPerBlock = template.lagsPerBlock;
+		signalSpectrumReal = template.signalSpectrumReal;
+		signalSpectrumImaginary = template.signalSpectrumImaginary;
+	}
+	
+	static int transformLength(final int signalLength) {
+		final int length = Integer.highestOneBit(Math.max(signalLength, 1) * TRANSFORM_LENGTH_FACTOR - 1) << 1;
+		return Math.max(length, MINIMUM_TRANSFORM_LENGTH);
+	}
+	
+	int getBlocksCount() {
+		return (int) (((long) limit + lagsPerBlock - 1) / lagsPerBlock);
+	}
+	
+	int getLagsPerBlock() {
+		return lagsPerBlock;
+	}
+	
+	Worker newWorker() {
+		return new Worker();
+	}
+	
+	/**
+	 * Holds the buffers used for transforming blocks of the waveform and the best lags found so far.
+	 * Instances must not be shared between threads.
+	 */
+	final class Worker {
+		
+		private final double[] buffer;
+		private final double[] spectrumReal;
+		private final double[] spectrumImaginary;
+		private final int[] candidatePositions;
+		private final double[] candidateValues;
+		private int candidatesCount;
+		// Index of the candidate with the lowest value, which is replaced when a better lag is found.
+		private int lowestCandidate;
+		
+		private Worker() {
+			final int length = fft.getLength();
+			buffer = new double[length];
+			spectrumReal = new double[length / 2 + 1];
+			spectrumImaginary = new double[length / 2 + 1];
+			candidatePositions = new int[CANDIDATES_COUNT];
+			candidateValues = new double[CANDIDATES_COUNT];
+		}
+		
+		/**
+		 * Computes the correlation of the lags of the specified block and updates the candidates.
+		 * @param block Index of the block, in the range [0, blocks count).
+		 */
+		void scan(final int block) {
+			final int firstLag = block * lagsPerBlock;
+			final int available = Math.max(Math.min(buffer.length, capturedWaveform.length - firstLag), 0);
+			for (int index = 0; index < available; index++) {
+				buffer[index] = capturedWaveform[firstLag + index];
+			}
+			for (int index = available; index < buffer.length; index++) {
+				buffer[index] = 0;
+			}
+			fft.forward(buffer, spectrumReal, spectrumImaginary);
+			// Multiplying by the conjugate of the signal spectrum results in the correlation instead of the convolution.
+			for (int index = 0; index < spectrumReal.length; index++) {
+				final double sr = signalSpectrumReal[index];
+				final double si = signalSpectrumImaginary[index];
+				final double wr = spectrumReal[index];
+				final double wi = spectrumImaginary[index];
+				spectrumReal[index] = sr * wr + si * wi;
+				spectrumImaginary[index] = sr * wi - si * wr;
+			}
+			fft.inverse(spectrumReal, spectrumImaginary, buffer);
+			// Only the first lagsPerBlock results are free from the circular wrap-around.
+			final int lagsCount = Math.min(lagsPerBlock, limit - firstLag);
+			for (int index = 0; index < lagsCount; index++) {
+				offer(firstLag + index, buffer[index]);
+			}
+		}
+		
+		private void offer(final int position, final double value) {
+			if (candidatesCount < CANDIDATES_COUNT) {
+				candidatePositions[candidatesCount] = position;
+				candidateValues[candidatesCount] = value;
+				candidatesCount++;
+				if (candidatesCount == CANDIDATES_COUNT) {
+					updateLowestCandidate();
+				}
+			} else if (value > candidateValues[lowestCandidate]) {
+				candidatePositions[lowestCandidate] = position;
+				candidateValues[lowestCandidate] = value;
+				updateLowestCandidate();
+			}
+		}
+		
+		private void updateLowestCandidate() {
+			int lowest = 0;
+			for (int index = 1; index < CANDIDATES_COUNT; index++) {
+				if (candidateValues[index] < candidateValues[lowest]) {
+					lowest = index;
+				}
+			}
+			lowestCandidate = lowest;
+		}
+		
+		/**
+		 * @return The lags with the highest correlations found by this worker, in no specific order.
+		 */
+		int[] getCandidates() {
+			final int[] candidates = new int[candidatesCount];
+			System.arraycopy(candidatePositions, 0, candidates, 0, candidatesCount);
+			return candidates;
+		}
+		
+	}
+	
+}
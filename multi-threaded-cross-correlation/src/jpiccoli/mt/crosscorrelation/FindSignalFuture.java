@@ -0,0 +1,73 @@
+package jpiccoli.mt.crosscorrelation;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future which delivers the result of a scan once the threads of the executor are terminated.
+ * @author Piccoli
+ *
+ * @param <V> Type of the result.
+ */
+final class FindSignalFuture<V> implements Future<V> {
+	
+	private ExecutorService executorService;
+	private boolean cancelled;
+	private V result;
+	
+	FindSignalFuture(ExecutorService executorService, V initialResult) {
+		this.executorService = executorService;
+		cancelled = false;
+		result = initialResult;
+	}
+	
+	void setResult(V result) {
+		this.result = result;
+	}
+	
+	V getResult() {
+		return result;
+	}
+	
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (!cancelled) {
+			if (mayInterruptIfRunning) {
+				executorService.shutdownNow();
+			}
+			cancelled = true;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return cancelled || executorService.isTerminated();
+	}
+
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		return result;
+	}
+
+	@Override
+	public V get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		boolean terminated = executorService.awaitTermination(timeout, unit);
+		if (!terminated) {
+			throw new TimeoutException();
+		}
+		return result;
+	}
+	
+}
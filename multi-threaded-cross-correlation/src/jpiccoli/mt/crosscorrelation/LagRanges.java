@@ -0,0 +1,105 @@
+package jpiccoli.mt.crosscorrelation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distributes the lags [0, limit) among a number of workers. Each worker owns a contiguous range, from which
+ * it takes blocks of adjacent lags in ascending order, so consecutive blocks reuse the waveform samples
+ * already in the cache of its core. Once its range is exhausted, a worker steals blocks from the end of the
+ * ranges of the other workers, which balances the work when some threads are slower than others.
+ * <p>
+ * The next and the end lag of each range are packed in a single long value, updated through compare-and-set,
+ * and each range is stored in a separate cache line.
+ * @author Piccoli
+ *
+ */
+final class LagRanges {
+	
+	/**
+	 * Returned by {@link #take(int)} when all the lags were taken.
+	 */
+	static final long NONE = -1;
+	
+	// Distance between the ranges in the array: 8 longs fill a 64 bytes cache line.
+	private static final int STRIDE = 8;
+	
+	private final AtomicLongArray ranges;
+	private final int rangesCount;
+	private final int blockLength;
+	
+	/**
+	 * @param limit Number of lags.
+	 * @param rangesCount Number of workers.
+	 * @param blockLength Maximum number of lags taken at once.
+	 */
+	LagRanges(final int limit, final int rangesCount, final int blockLength) {
+		this.rangesCount = rangesCount;
+		this.blockLength = blockLength;
+		ranges = new AtomicLongArray(rangesCount * STRIDE);
+		final int lags = Math.max(limit, 0);
+		for (int range = 0; range < rangesCount; range++) {
+			final int start = (int) ((long) lags * range / rangesCount);
+			final int end = (int) ((long) lags * (range + 1) / rangesCount);
+			ranges.set(range * STRIDE, pack(start, end));
+		}
+	}
+	
+	/**
+	 * Takes the next block of lags for the specified worker: a block from the beginning of its own range
+	 * or, if it is exhausted, from the end of the range of another worker.
+	 * @param worker Index of the worker, in the range [0, ranges count).
+	 * @return The block, which can be decoded by {@link #start(long)} and {@link #end(long)}, or {@link #NONE}.
+	 */
+	long take(final int worker) {
+		long block = takeFirst(worker);
+		for (int index = 1; block == NONE && index < rangesCount; index++) {
+			block = takeLast((worker + index) % rangesCount);
+		}
+		return block;
+	}
+	
+	static int start(final long block) {
+		return (int) (block >>> 32);
+	}
+	
+	static int end(final long block) {
+		return (int) block;
+	}
+	
+	private long takeFirst(final int range) {
+		final int index = range * STRIDE;
+		while (true) {
+			final long current = ranges.get(index);
+			final int next = start(current);
+			final int end = end(current);
+			if (next >= end) {
+				return NONE;
+			}
+			final int blockEnd = next + Math.min(blockLength, end - next);
+			if (ranges.compareAndSet(index, current, pack(blockEnd, end))) {
+				return pack(next, blockEnd);
+			}
+		}
+	}
+	
+	private long takeLast(final int range) {
+		final int index = range * STRIDE;
+		while (true) {
+			final long current = ranges.get(index);
+			final int next = start(current);
+			final int end = end(current);
+			if (next >= end) {
+				return NONE;
+			}
+			final int blockStart = end - Math.min(blockLength, end - next);
+			if (ranges.compareAndSet(index, current, pack(next, blockStart))) {
+				return pack(blockStart, end);
+			}
+		}
+	}
+	
+	private static long pack(final int start, final int end) {
+		return ((long) start << 32) | (end & 0xFFFFFFFFL);
+	}
+	
+}
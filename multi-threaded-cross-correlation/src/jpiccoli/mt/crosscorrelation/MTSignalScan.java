@@ -1,30 +1,43 @@
 package jpiccoli.mt.crosscorrelation;
 
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides functionality for searching for a specific signal in a collection of samples.
  * The waveform may contain noise and the signal may be attenuated.
  * The algorithm uses Cross Correlation (https://en.wikipedia.org/wiki/Cross-correlation) to define the most likely position of the signal.
- * It can use multiple threads to deliver results faster.
+ * It can use multiple threads to deliver results faster. The correlation can be computed directly or through
+ * Fast Fourier Transforms, which is faster for long signals (see {@link CorrelationMode}).
  * @author Piccoli
  *
  */
 public class MTSignalScan {
 	
+	/**
+	 * Minimum signal length for which {@link CorrelationMode#AUTO} uses the FFT-based computation.
+	 * For shorter signals, the direct computation has less overhead.
+	 */
+	public static final int FFT_SIGNAL_LENGTH_THRESHOLD = 128;
+	
+	private static final int L2_CACHE_SIZE = 256 * 1024;
+	private static final int MINIMUM_BLOCK_LENGTH = 1024;
+	private static final int CORRELATIONS_BUFFER_LENGTH = 256;
+	
 	private final float[] signal;
 	private final float[] capturedWaveform;
 	private final int limit;
 	
 	private AtomicInteger nextOffset;
-	private float maximumCorrelation;
-	private FindSignalFuture future;
+	private LagRanges lagRanges;
+	private AtomicInteger runningWorkers;
+	private FindSignalFuture<Integer> future;
+	// Results of each worker, combined by the last one to finish.
+	private float[] workerCorrelations;
+	private int[] workerPositions;
+	private int[][] workerCandidates;
 	
 	/**
 	 * Creates an instance of the scanner for searching for the specified
@@ -47,101 +60,139 @@ public class MTSignalScan {
 	 * @return A Future which resolves with the position of the signal in the waveform.
 	 */
 	public Future<Integer> start(int threadsCount) {
+		return start(threadsCount, CorrelationMode.DIRECT);
+	}
+	
+	/**
+	 * Starts the search using the specified method for computing the correlation. All the methods deliver
+	 * the same position: the lags selected by the FFT-based computation are evaluated again with the direct
+	 * computation before the best one is chosen. The only exception is a waveform in which more lags than
+	 * the candidates kept by each thread have correlations within the rounding error of the maximum.
+	 * Important: this method is not thread-safe. Once a scan process was started,
+	 * it can only be restarted after the resulting Future is terminated.
+	 * @param threadsCount The number of threads that will be used for computing the result.
+	 * @param mode The method used for computing the correlation.
+	 * @return A Future which resolves with the position of the signal in the waveform.
+	 */
+	public Future<Integer> start(int threadsCount, CorrelationMode mode) {
 		ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
-		nextOffset = new AtomicInteger(0);
-		maximumCorrelation = Float.MIN_VALUE;
-		future = new FindSignalFuture(executor);
-		for (int index = 0; index < threadsCount; index++) {
-			executor.submit(this::mainLoop);
+		runningWorkers = new AtomicInteger(threadsCount);
+		future = new FindSignalFuture<>(executor, -1);
+		if (resolveMode(mode, signal.length) == CorrelationMode.FFT) {
+			FFTCorrelation correlation = new FFTCorrelation(signal, capturedWaveform, limit);
+			nextOffset = new AtomicInteger(0);
+			workerCandidates = new int[threadsCount][0];
+			for (int index = 0; index < threadsCount; index++) {
+				final int worker = index;
+				executor.submit(() -> fftLoop(correlation, worker));
+			}
+		} else {
+			lagRanges = new LagRanges(limit, threadsCount, blockLength(signal.length));
+			workerCorrelations = new float[threadsCount];
+			workerPositions = new int[threadsCount];
+			for (int index = 0; index < threadsCount; index++) {
+				final int worker = index;
+				executor.submit(() -> mainLoop(worker));
+			}
 		}
 		executor.shutdown();
 		return future;
 	}
 	
-	private void mainLoop() {
-		float localMaxCorrelation = Float.MIN_VALUE;
-		int localPosition = -1;
-		int localOffset = nextOffset.getAndIncrement();
-		while (localOffset < limit && !Thread.interrupted()) {
-			float correlation = calcCorrelation(signal, capturedWaveform, localOffset);
-			if (correlation > localMaxCorrelation) {
-				localMaxCorrelation = correlation;
-				localPosition = localOffset;
-			}
-			localOffset = nextOffset.getAndIncrement();
-		}
-		checkAndSwap(localPosition, localMaxCorrelation);
+	/**
+	 * Defines the number of adjacent lags scanned at once by a worker, so that the waveform samples
+	 * read by the block fit in the L2 cache.
+	 */
+	static int blockLength(int signalLength) {
+		int windowSamples = L2_CACHE_SIZE / Float.BYTES;
+		int length = Math.max(windowSamples - signalLength, MINIMUM_BLOCK_LENGTH);
+		return length - length % CorrelationKernel.LAGS_PER_PASS;
 	}
 	
-	private synchronized void checkAndSwap(int position, float correlation) {
-		if (correlation > maximumCorrelation) {
-			maximumCorrelation = correlation;
-			future.setPosition(position);
+	static CorrelationMode resolveMode(CorrelationMode mode, int signalLength) {
+		if (mode == CorrelationMode.AUTO) {
+			return signalLength >= FFT_SIGNAL_LENGTH_THRESHOLD ? CorrelationMode.FFT : CorrelationMode.DIRECT;
 		}
+		return mode;
 	}
 	
-	private static float calcCorrelation(final float[] signal, final float[] capturedWaveform, final int offset) {
-		float sum = 0;
-		for (int index = 0; index < signal.length; index++) {
-			sum += signal[index] * capturedWaveform[index + offset];
+	private void mainLoop(int worker) {
+		float localMaxCorrelation = Float.MIN_VALUE;
+		int localPosition = -1;
+		try {
+			float[] correlations = new float[CORRELATIONS_BUFFER_LENGTH];
+			long block = lagRanges.take(worker);
+			while (block != LagRanges.NONE && !Thread.interrupted()) {
+				int blockEnd = LagRanges.end(block);
+				for (int offset = LagRanges.start(block); offset < blockEnd; offset += CORRELATIONS_BUFFER_LENGTH) {
+					int count = Math.min(CORRELATIONS_BUFFER_LENGTH, blockEnd - offset);
+					CorrelationKernel.correlate(signal, capturedWaveform, offset, count, correlations);
+					for (int index = 0; index < count; index++) {
+						float correlation = correlations[index];
+						// Stolen blocks are scanned out of order, so ties must be decided by the position.
+						if (correlation > localMaxCorrelation || (correlation == localMaxCorrelation && localPosition >= 0 && offset + index < localPosition)) {
+							localMaxCorrelation = correlation;
+							localPosition = offset + index;
+						}
+					}
+				}
+				block = lagRanges.take(worker);
+			}
+		} finally {
+			workerCorrelations[worker] = localMaxCorrelation;
+			workerPositions[worker] = localPosition;
+			if (runningWorkers.decrementAndGet() == 0) {
+				float maximumCorrelation = Float.MIN_VALUE;
+				int position = -1;
+				for (int index = 0; index < workerPositions.length; index++) {
+					if (isBetter(workerCorrelations[index], workerPositions[index], maximumCorrelation, position)) {
+						maximumCorrelation = workerCorrelations[index];
+						position = workerPositions[index];
+					}
+				}
+				future.setResult(position);
+			}
 		}
-		return sum;
 	}
 	
-	private static class FindSignalFuture implements Future<Integer> {
-		
-		private ExecutorService executorService;
-		private boolean cancelled;
-		private int position;
-		
-		private FindSignalFuture(ExecutorService executorService) {
-			this.executorService = executorService;
-			cancelled = false;
-			position = -1;
-		}
-		
-		private void setPosition(int position) {
-			this.position = position;
-		}
-		
-		@Override
-		public boolean cancel(boolean mayInterruptIfRunning) {
-			if (!cancelled) {
-				if (mayInterruptIfRunning) {
-					executorService.shutdownNow();
-				}
-				cancelled = true;
-				return true;
+	private void fftLoop(FFTCorrelation correlation, int worker) {
+		try {
+			FFTCorrelation.Worker correlationWorker = correlation.newWorker();
+			int blocksCount = correlation.getBlocksCount();
+			int block = nextOffset.getAndIncrement();
+			while (block < blocksCount && !Thread.interrupted()) {
+				correlationWorker.scan(block);
+				block = nextOffset.getAndIncrement();
 			}
-			return false;
-		}
-
-		@Override
-		public boolean isCancelled() {
-			return cancelled;
-		}
-
-		@Override
-		public boolean isDone() {
-			return cancelled || executorService.isTerminated();
-		}
-
-		@Override
-		public Integer get() throws InterruptedException, ExecutionException {
-			executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
-			return position;
-		}
-
-		@Override
-		public Integer get(long timeout, TimeUnit unit)
-				throws InterruptedException, ExecutionException, TimeoutException {
-			boolean terminated = executorService.awaitTermination(timeout, unit);
-			if (!terminated) {
-				throw new TimeoutException();
+			workerCandidates[worker] = correlationWorker.getCandidates();
+		} finally {
+			// The last worker to finish evaluates the candidates found by all the workers.
+			if (runningWorkers.decrementAndGet() == 0 && !Thread.currentThread().isInterrupted()) {
+				float maximumCorrelation = Float.MIN_VALUE;
+				int position = -1;
+				for (int[] candidates : workerCandidates) {
+					for (int candidate : candidates) {
+						float candidateCorrelation = calcCorrelation(signal, capturedWaveform, candidate);
+						if (isBetter(candidateCorrelation, candidate, maximumCorrelation, position)) {
+							maximumCorrelation = candidateCorrelation;
+							position = candidate;
+						}
+					}
+				}
+				future.setResult(position);
 			}
-			return position;
 		}
-		
+	}
+	
+	/**
+	 * Among equal correlations, the lowest position is chosen, as in a single-threaded scan.
+	 */
+	private static boolean isBetter(float correlation, int position, float maximumCorrelation, int maximumPosition) {
+		return correlation > maximumCorrelation || (correlation == maximumCorrelation && position >= 0 && maximumPosition >= 0 && position < maximumPosition);
+	}
+	
+	static float calcCorrelation(final float[] signal, final float[] capturedWaveform, final int offset) {
+		return CorrelationKernel.correlate(signal, capturedWaveform, offset);
 	}
 	
 }
@@ -0,0 +1,160 @@
+package jpiccoli.mt.crosscorrelation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches for a signal in a waveform stored in a memory mapped file. Works like {@link MTSignalScan},
+ * but the positions are 'long' values, so the waveform is limited only by the size of the file.
+ * <p>
+ * The lags are scanned in windows. Each thread copies the samples of a window from the mapping to its own array,
+ * which costs one read per sample instead of one per sample and lag, and then computes the correlation of the window
+ * with {@link CorrelationKernel} or {@link FFTCorrelation}, so the result is the same as the one of {@link MTSignalScan}
+ * for the same waveform. The windows are distributed by {@link LagRanges}. The kernels are not run straight on the
+ * mapping: a window is read once and then used for many lags, so the copy is a small part of the work, and the same
+ * array-based kernels serve every scanner.
+ * @author Piccoli
+ *
+ */
+public class MappedSignalScan {
+	
+	/**
+	 * Number of FFT blocks scanned in each window by the FFT-based computation.
+	 */
+	private static final int FFT_BLOCKS_PER_WINDOW = 16;
+	
+	private final float[] signal;
+	private final MappedWaveform capturedWaveform;
+	private final long limit;
+	
+	private FFTCorrelation fftTemplate;
+	private int windowLags;
+	private LagRanges windowRanges;
+	private AtomicInteger runningWorkers;
+	private FindSignalFuture<Long> future;
+	// Results of each worker, combined by the last one to finish.
+	private float[] workerCorrelations;
+	private long[] workerPositions;
+	
+	/**
+	 * Creates an instance of the scanner for searching for the specified
+	 * signal in the provided waveform.
+	 * @param signal Array containing the signal for which to search.
+	 * @param capturedWaveform The waveform containing the signal to be searched.
+	 */
+	public MappedSignalScan(final float[] signal, final MappedWaveform capturedWaveform) {
+		this.signal = signal;
+		this.capturedWaveform = capturedWaveform;
+		limit = capturedWaveform.getLength() - signal.length;
+	}
+	
+	/**
+	 * Starts the search. The processing will be executed asynchronously and the
+	 * result will be delivered in the returned Future.
+	 * Important: this method is not thread-safe. Once a scan process was started,
+	 * it can only be restarted after the resulting Future is terminated.
+	 * @param threadsCount The number of threads that will be used for computing the result.
+	 * @return A Future which resolves with the position of the signal in the waveform, or -1 if it was not found.
+	 */
+	public Future<Long> start(int threadsCount) {
+		return start(threadsCount, CorrelationMode.DIRECT);
+	}
+	
+	/**
+	 * Starts the search using the specified method for computing the correlation.
+	 * Important: this method is not thread-safe. Once a scan process was started,
+	 * it can only be restarted after the resulting Future is terminated.
+	 * @param threadsCount The number of threads that will be used for computing the result.
+	 * @param mode The method used for computing the correlation.
+	 * @return A Future which resolves with the position of the signal in the waveform, or -1 if it was not found.
+	 * @see MTSignalScan#start(int, CorrelationMode)
+	 */
+	public Future<Long> start(int threadsCount, CorrelationMode mode) {
+		if (MTSignalScan.resolveMode(mode, signal.length) == CorrelationMode.FFT) {
+			fftTemplate = new FFTCorrelation(signal, new float[0], 0);
+			windowLags = fftTemplate.getLagsPerBlock() * FFT_BLOCKS_PER_WINDOW;
+		} else {
+			fftTemplate = null;
+			windowLags = MTSignalScan.blockLength(signal.length);
+		}
+		long windowsCount = (Math.max(limit, 0) + windowLags - 1) / windowLags;
+		if (windowsCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Waveform is too long: " + capturedWaveform.getLength());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+		windowRanges = new LagRanges((int) windowsCount, threadsCount, 1);
+		runningWorkers = new AtomicInteger(threadsCount);
+		workerCorrelations = new float[threadsCount];
+		workerPositions = new long[threadsCount];
+		future = new FindSignalFuture<>(executor, -1L);
+		for (int index = 0; index < threadsCount; index++) {
+			final int worker = index;
+			executor.submit(() -> mainLoop(worker));
+		}
+		executor.shutdown();
+		return future;
+	}
+	
+	private void mainLoop(int worker) {
+		float localMaxCorrelation = Float.MIN_VALUE;
+		long localPosition = -1;
+		try {
+			float[] window = new float[windowLags + signal.length];
+			float[] correlations = fftTemplate == null ? new float[windowLags] : null;
+			long block = windowRanges.take(worker);
+			while (block != LagRanges.NONE && !Thread.interrupted()) {
+				long windowStart = (long) LagRanges.start(block) * windowLags;
+				int count = (int) Math.min(windowLags, limit - windowStart);
+				capturedWaveform.read(windowStart, window, 0, count + signal.length - 1);
+				if (fftTemplate == null) {
+					CorrelationKernel.correlate(signal, window, 0, count, correlations);
+					for (int index = 0; index < count; index++) {
+						if (isBetter(correlations[index], windowStart + index, localMaxCorrelation, localPosition)) {
+							localMaxCorrelation = correlations[index];
+							localPosition = windowStart + index;
+						}
+					}
+				} else {
+					// The candidates of the transforms are evaluated again with the direct computation, as in MTSignalScan.
+					FFTCorrelation correlation = new FFTCorrelation(fftTemplate, window, count);
+					FFTCorrelation.Worker correlationWorker = correlation.newWorker();
+					for (int fftBlock = 0; fftBlock < correlation.getBlocksCount(); fftBlock++) {
+						correlationWorker.scan(fftBlock);
+					}
+					for (int candidate : correlationWorker.getCandidates()) {
+						float candidateCorrelation = CorrelationKernel.correlate(signal, window, candidate);
+						if (isBetter(candidateCorrelation, windowStart + candidate, localMaxCorrelation, localPosition)) {
+							localMaxCorrelation = candidateCorrelation;
+							localPosition = windowStart + candidate;
+						}
+					}
+				}
+				block = windowRanges.take(worker);
+			}
+		} finally {
+			workerCorrelations[worker] = localMaxCorrelation;
+			workerPositions[worker] = localPosition;
+			if (runningWorkers.decrementAndGet() == 0) {
+				float maximumCorrelation = Float.MIN_VALUE;
+				long position = -1;
+				for (int index = 0; index < workerPositions.length; index++) {
+					if (isBetter(workerCorrelations[index], workerPositions[index], maximumCorrelation, position)) {
+						maximumCorrelation = workerCorrelations[index];
+						position = workerPositions[index];
+					}
+				}
+				future.setResult(position);
+			}
+		}
+	}
+	
+	/**
+	 * Among equal correlations, the lowest position is chosen, as in a single-threaded scan.
+	 */
+	private static boolean isBetter(float correlation, long position, float maximumCorrelation, long maximumPosition) {
+		return correlation > maximumCorrelation || (correlation == maximumCorrelation && position >= 0 && maximumPosition >= 0 && position < maximumPosition);
+	}
+	
+}
@@ -0,0 +1,133 @@
+package jpiccoli.mt.crosscorrelation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Waveform stored in a raw sample file, which is read through memory mappings instead of being loaded in the heap.
+ * A single mapping cannot be longer than 2 GiB, so the file is mapped in consecutive segments which do not overlap.
+ * <p>
+ * The scanners do not compute the correlation straight from the mappings. They copy windows of samples to arrays
+ * with {@link #read(long, float[], int, int)}, which continues across segment boundaries, so the correlation
+ * kernels work on arrays for every kind of waveform.
+ * <p>
+ * Sample indexes are 'long' values. Instances are immutable and can be read by multiple threads.
+ * The mappings are released when the instance is garbage collected.
+ * @author Piccoli
+ *
+ */
+public final class MappedWaveform {
+	
+	/**
+	 * Number of samples of each segment, except the last one.
+	 */
+	static final int SEGMENT_LENGTH = 1 << 26;
+	
+	private final SampleFormat format;
+	private final long length;
+	// Only the array corresponding to the sample format is used.
+	private final FloatBuffer[] floatSegments;
+	private final ShortBuffer[] shortSegments;
+	
+	private MappedWaveform(final SampleFormat format, final long length, final FloatBuffer[] floatSegments, final ShortBuffer[] shortSegments) {
+		this.format = format;
+		this.length = length;
+		this.floatSegments = floatSegments;
+		this.shortSegments = shortSegments;
+	}
+	
+	/**
+	 * Maps the specified file for reading. A trailing incomplete sample is ignored.
+	 * @param path Path of the file.
+	 * @param format Encoding of the samples.
+	 * @return The waveform.
+	 * @throws IOException If the file cannot be opened or mapped.
+	 */
+	public static MappedWaveform open(final Path path, final SampleFormat format) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final int bytesPerSample = format.getBytesPerSample();
+			final long length = channel.size() / bytesPerSample;
+			final int segmentsCount = (int) Math.max((length + SEGMENT_LENGTH - 1) / SEGMENT_LENGTH, 1);
+			final FloatBuffer[] floatSegments = format.isFloatingPoint() ? new FloatBuffer[segmentsCount] : null;
+			final ShortBuffer[] shortSegments = format.isFloatingPoint() ? null : new ShortBuffer[segmentsCount];
+			for (int segment = 0; segment < segmentsCount; segment++) {
+				final long firstSample = (long) segment * SEGMENT_LENGTH;
+				final long samplesCount = Math.min(SEGMENT_LENGTH, length - firstSample);
+				final ByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, firstSample * bytesPerSample, samplesCount * bytesPerSample);
+				mapping.order(format.getByteOrder());
+				if (floatSegments != null) {
+					floatSegments[segment] = mapping.asFloatBuffer();
+				} else {
+					shortSegments[segment] = mapping.asShortBuffer();
+				}
+			}
+			// The mappings remain valid after the channel is closed.
+			return new MappedWaveform(format, length, floatSegments, shortSegments);
+		}
+	}
+	
+	public SampleFormat getFormat() {
+		return format;
+	}
+	
+	/**
+	 * @return Number of samples of the waveform.
+	 */
+	public long getLength() {
+		return length;
+	}
+	
+	/**
+	 * @param index Index of the sample, in the range [0, length).
+	 * @return The value of the sample.
+	 */
+	public float get(final long index) {
+		final int segment = (int) (index / SEGMENT_LENGTH);
+		final int segmentIndex = (int) (index - (long) segment * SEGMENT_LENGTH);
+		if (floatSegments != null) {
+			return floatSegments[segment].get(segmentIndex);
+		}
+		return shortSegments[segment].get(segmentIndex);
+	}
+	
+	/**
+	 * Copies consecutive samples to an array, converting them to float. The samples are read with bulk
+	 * operations when they are stored as float32. A read that crosses the end of a segment continues in the
+	 * following one.
+	 * @param index Index of the first sample.
+	 * @param destination Array which receives the samples.
+	 * @param offset Index of the destination array which receives the first sample.
+	 * @param count Number of samples.
+	 */
+	public void read(long index, final float[] destination, int offset, int count) {
+		if (index < 0 || count < 0 || index > length - count) {
+			throw new IndexOutOfBoundsException("Samples [" + index + ", " + (index + count) + ") are out of the waveform bounds: " + length);
+		}
+		while (count > 0) {
+			final int segment = (int) (index / SEGMENT_LENGTH);
+			final int segmentIndex = (int) (index - (long) segment * SEGMENT_LENGTH);
+			final int segmentCount;
+			if (floatSegments != null) {
+				final FloatBuffer samples = floatSegments[segment].duplicate();
+				segmentCount = Math.min(count, samples.limit() - segmentIndex);
+				samples.position(segmentIndex);
+				samples.get(destination, offset, segmentCount);
+			} else {
+				final ShortBuffer samples = shortSegments[segment];
+				segmentCount = Math.min(count, samples.limit() - segmentIndex);
+				for (int sample = 0; sample < segmentCount; sample++) {
+					destination[offset + sample] = samples.get(segmentIndex + sample);
+				}
+			}
+			index += segmentCount;
+			offset += segmentCount;
+			count -= segmentCount;
+		}
+	}
+	
+}
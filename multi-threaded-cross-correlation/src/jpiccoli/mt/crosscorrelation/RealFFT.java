@@ -0,0 +1,168 @@
+package jpiccoli.mt.crosscorrelation;
+
+/**
+ * Radix-2 Fast Fourier Transform of real sequences. A real sequence of length n is transformed
+ * through a complex transform of length n / 2, whose input holds the even samples in the real parts
+ * and the odd samples in the imaginary parts, followed by a step that separates the spectra of the
+ * two halves. Only the first n / 2 + 1 coefficients are computed, since the others are their conjugates.
+ * <p>
+ * Instances hold only the precomputed tables, so they can be shared by multiple threads.
+ * @author Piccoli
+ *
+ */
+final class RealFFT {
+	
+	private final int length;
+	private final int half;
+	// cos(2 * PI * k / length) and sin(2 * PI * k / length), for k in [0, length / 2).
+	private final double[] cosines;
+	private final double[] sines;
+	private final int[] bitReversal;
+	
+	/**
+	 * @param length Length of the real sequences. Must be a power of two not less than 4.
+	 */
+	RealFFT(final int length) {
+		if (length < 4 || Integer.bitCount(length) != 1) {
+			throw new IllegalArgumentException("Length must be a power of two not less than 4: " + length);
+		}
+		this.length = length;
+		half = length / 2;
+		cosines = new double[half];
+		sines = new double[half];
+		for (int index = 0; index < half; index++) {
+			final double angle = 2 * Math.PI * index / length;
+			cosines[index] = Math.cos(angle);
+			sines[index] = Math.sin(angle);
+		}
+		bitReversal = new int[half];
+		final int bits = Integer.numberOfTrailingZeros(half);
+		for (int index = 0; index < half; index++) {
+			bitReversal[index] = bits == 0 ? 0 : Integer.reverse(index) >>> (Integer.SIZE - bits);
+		}
+	}
+	
+	int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Computes the coefficients [0, length / 2] of the transform of the real input.
+	 * @param input Real sequence, with 'length' elements.
+	 * @param real Receives the real parts of the coefficients. Must have length / 2 + 1 elements.
+	 * @param imaginary Receives the imaginary parts of the coefficients. Must have length / 2 + 1 elements.
+	 */
+	void forward(final double[] input, final double[] real, final double[] imaginary) {
+		for (int index = 0; index < half; index++) {
+			real[index] = input[2 * index];
+			imaginary[index] = input[2 * index + 1];
+		}
+		transform(real, imaginary, false);
+		
+		final double real0 = real[0];
+		final double imaginary0 = imaginary[0];
+		real[0] = real0 + imaginary0;
+		imaginary[0] = 0;
+		real[half] = real0 - imaginary0;
+		imaginary[half] = 0;
+		for (int index = 1; index <= half / 2; index++) {
+			final int mirror = half - index;
+			final double zr = real[index];
+			final double zi = imaginary[index];
+			final double mr = real[mirror];
+			final double mi = imaginary[mirror];
+			// Spectra of the even (e) and odd (o) samples.
+			final double er = (zr + mr) / 2;
+			final double ei = (zi - mi) / 2;
+			final double or = (zi + mi) / 2;
+			final double oi = (mr - zr) / 2;
+			// Odd spectrum multiplied by the twiddle factor exp(-2 * PI * i * index / length).
+			final double cosine = cosines[index];
+			final double sine = sines[index];
+			final double tr = cosine * or + sine * oi;
+			final double ti = cosine * oi - sine * or;
+			real[index] = er + tr;
+			imaginary[index] = ei + ti;
+			real[mirror] = er - tr;
+			imaginary[mirror] = ti - ei;
+		}
+	}
+	
+	/**
+	 * Computes the real sequence whose transform has the coefficients [0, length / 2] provided.
+	 * The contents of the coefficient arrays are destroyed.
+	 * @param real Real parts of the coefficients, with length / 2 + 1 elements.
+	 * @param imaginary Imaginary parts of the coefficients, with length / 2 + 1 elements.
+	 * @param output Receives the real sequence. Must have 'length' elements.
+	 */
+	void inverse(final double[] real, final double[] imaginary, final double[] output) {
+		final double real0 = real[0];
+		final double imaginary0 = imaginary[0];
+		final double realHalf = real[half];
+		final double imaginaryHalf = imaginary[half];
+		real[0] = (real0 + realHalf) / 2 - (imaginary0 + imaginaryHalf) / 2;
+		imaginary[0] = (imaginary0 - imaginaryHalf) / 2 + (real0 - realHalf) / 2;
+		for (int index = 1; index <= half / 2; index++) {
+			final int mirror = half - index;
+			final double xr = real[index];
+			final double xi = imaginary[index];
+			final double mr = real[mirror];
+			final double mi = imaginary[mirror];
+			final double er = (xr + mr) / 2;
+			final double ei = (xi - mi) / 2;
+			final double dr = (xr - mr) / 2;
+			final double di = (xi + mi) / 2;
+			// Odd spectrum, obtained by multiplying by exp(2 * PI * i * index / length).
+			final double cosine = cosines[index];
+			final double sine = sines[index];
+			final double or = dr * cosine - di * sine;
+			final double oi = dr * sine + di * cosine;
+			real[index] = er - oi;
+			imaginary[index] = ei + or;
+			real[mirror] = er + oi;
+			imaginary[mirror] = or - ei;
+		}
+		transform(real, imaginary, true);
+		for (int index = 0; index < half; index++) {
+			output[2 * index] = real[index] / half;
+			output[2 * index + 1] = imaginary[index] / half;
+		}
+	}
+	
+	/**
+	 * In-place iterative radix-2 complex transform of length / 2 elements. The inverse transform is not scaled.
+	 */
+	private void transform(final double[] real, final double[] imaginary, final boolean inverse) {
+		for (int index = 0; index < half; index++) {
+			final int reversed = bitReversal[index];
+			if (reversed > index) {
+				double temp = real[index];
+				real[index] = real[reversed];
+				real[reversed] = temp;
+				temp = imaginary[index];
+				imaginary[index] = imaginary[reversed];
+				imaginary[reversed] = temp;
+			}
+		}
+		final double sign = inverse ? 1 : -1;
+		for (int blockLength = 2; blockLength <= half; blockLength <<= 1) {
+			final int halfBlock = blockLength / 2;
+			final int tableStep = length / blockLength;
+			for (int blockStart = 0; blockStart < half; blockStart += blockLength) {
+				for (int index = 0; index < halfBlock; index++) {
+					final double wr = cosines[index * tableStep];
+					final double wi = sign * sines[index * tableStep];
+					final int first = blockStart + index;
+					final int second = first + halfBlock;
+					final double tr = real[second] * wr - imaginary[second] * wi;
+					final double ti = real[second] * wi + imaginary[second] * wr;
+					real[second] = real[first] - tr;
+					imaginary[second] = imaginary[first] - ti;
+					real[first] += tr;
+					imaginary[first] += ti;
+				}
+			}
+		}
+	}
+	
+}
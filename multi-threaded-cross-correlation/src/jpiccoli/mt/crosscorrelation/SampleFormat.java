@@ -0,0 +1,45 @@
+package jpiccoli.mt.crosscorrelation;
+
+import java.nio.ByteOrder;
+
+/**
+ * Encoding of the samples of a raw waveform file. Samples are stored one after another, with no header.
+ * @author Piccoli
+ *
+ */
+public enum SampleFormat {
+	
+	FLOAT32_LITTLE_ENDIAN(Float.BYTES, ByteOrder.LITTLE_ENDIAN, true),
+	FLOAT32_BIG_ENDIAN(Float.BYTES, ByteOrder.BIG_ENDIAN, true),
+	/**
+	 * Signed 16 bits PCM. Samples are converted to float without scaling, so they range from -32768 to 32767.
+	 */
+	INT16_LITTLE_ENDIAN(Short.BYTES, ByteOrder.LITTLE_ENDIAN, false),
+	/**
+	 * Signed 16 bits PCM. Samples are converted to float without scaling, so they range from -32768 to 32767.
+	 */
+	INT16_BIG_ENDIAN(Short.BYTES, ByteOrder.BIG_ENDIAN, false);
+	
+	private final int bytesPerSample;
+	private final ByteOrder byteOrder;
+	private final boolean floatingPoint;
+	
+	private SampleFormat(final int bytesPerSample, final ByteOrder byteOrder, final boolean floatingPoint) {
+		this.bytesPerSample = bytesPerSample;
+		this.byteOrder = byteOrder;
+		this.floatingPoint = floatingPoint;
+	}
+	
+	public int getBytesPerSample() {
+		return bytesPerSample;
+	}
+	
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+	
+	public boolean isFloatingPoint() {
+		return floatingPoint;
+	}
+	
+}
@@ -1,6 +1,12 @@
 package jpiccoli.mt.crosscorrelation;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -8,9 +14,11 @@ import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Command-line utility used to test the functionality provided by MTSignalScan.
+ * Command-line utility used to test the functionality provided by MTSignalScan and, optionally, by the other scanners.
  * It generates a rectangular signal with a positive interval followed by a negative one.
  * The signal is then attenuated and added to a random-noise-filled waveform.
  * 
@@ -26,6 +34,19 @@ public class ScanSignalTest {
 	private static final int DEFAULT_WAVEFORM_LENGTH = 100000000;
 	private static final float DEFAULT_NOISE_AMPLITUDE = 30.0f;
 	private static final float DEFAULT_SIGNAL_GAIN = 0.7f;
+	private static final int STREAMING_PUSH_LENGTH = 1 << 16;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+	private static final int KERNEL_CHECK_MAXIMUM_SIGNAL_LENGTH = 64;
+	private static final int KERNEL_CHECK_MAXIMUM_LAGS = 1000;
+	private static final int LAG_RANGES_CHECK_MINIMUM_WORKERS = 3;
+	private static final int LAG_RANGES_CHECK_MAXIMUM_WORKERS = 16;
+	private static final int LAG_RANGES_CHECK_MAXIMUM_LAGS = 2000000;
+	private static final int LAG_RANGES_CHECK_MAXIMUM_BLOCK_LENGTH = 5000;
+	private static final long LAG_RANGES_CHECK_SLOW_WORKER_DELAY = 100000;
+	private static final int FFT_CHECK_MAXIMUM_LENGTH = 1024;
+	private static final double FFT_CHECK_TOLERANCE = 1e-9;
+	private static final int FFT_CHECK_WAVEFORM_LENGTH = 300000;
+	private static final int[] FFT_CHECK_SIGNAL_LENGTHS = { 1, 17, 128, 500, 3000 };
 	
 	public static void main(String[] args) throws InterruptedException, ExecutionException, IOException {
 		
@@ -36,6 +57,21 @@ public class ScanSignalTest {
 			return;
 		}
 		
+		if (argumentsList.contains("--check-kernel")) {
+			checkCorrelationKernel();
+			System.out.println();
+		}
+		
+		if (argumentsList.contains("--check-lag-ranges")) {
+			checkLagRanges();
+			System.out.println();
+		}
+		
+		if (argumentsList.contains("--check-fft")) {
+			checkFFT();
+			System.out.println();
+		}
+		
 		int positiveSignalLength = findIntegerParameter(argumentsList, "positive-signal-length").orElse(DEFAULT_POSITIVE_LENGTH);
 		float positiveSignalValue = findFloatParameter(argumentsList, "positive-signal-value").orElse(DEFAULT_POSITIVE_VALUE);
 		int negativeSignalLength = findIntegerParameter(argumentsList, "negative-signal-length").orElse(DEFAULT_NEGATIVE_LENGTH);
@@ -57,6 +93,8 @@ public class ScanSignalTest {
 		addSignalToWaveform(signal, waveform, offset, signalGain);
 		
 		int threads = findIntegerParameter(argumentsList, "threads").orElseGet(() -> Runtime.getRuntime().availableProcessors());
+		CorrelationMode correlationMode = Optional.ofNullable(findParameter(argumentsList, "correlation-mode"))
+				.map(value -> CorrelationMode.valueOf(value.toUpperCase())).orElse(CorrelationMode.AUTO);
 		
 		String imageFilePath = findParameter(argumentsList, "output-image");
 		if (imageFilePath != null) {
@@ -72,6 +110,7 @@ public class ScanSignalTest {
 		System.out.printf("Position of the signal in the waveform: %d\n", offset);
 		System.out.printf("Signal gain: %f\n", signalGain);
 		System.out.printf("Number of threads: %d\n", threads);
+		System.out.printf("Correlation mode: %s\n", correlationMode);
 		System.out.println();
 		System.out.println("Scanning...");
 		
@@ -79,15 +118,198 @@ public class ScanSignalTest {
 		
 		long beforeStartTimestamp = System.currentTimeMillis();
 		
-		Future<Integer> calculatedPositionFuture = mtFindSignal.start(threads);
+		Future<Integer> calculatedPositionFuture = mtFindSignal.start(threads, correlationMode);
 		int calculatedPosition = calculatedPositionFuture.get();
 		
 		long afterFinishTimestamp = System.currentTimeMillis();
 		
 		System.out.printf("Scan result: %d\n", calculatedPosition);
 		System.out.printf("Distance from actual position: %d\n", Math.abs(offset - calculatedPosition));
-		System.out.printf("Ellapsed time: %d ms", afterFinishTimestamp - beforeStartTimestamp);
+		System.out.printf("Ellapsed time: %d ms\n", afterFinishTimestamp - beforeStartTimestamp);
 		
+		if (argumentsList.contains("--streaming")) {
+			System.out.println();
+			System.out.println("Scanning as a stream...");
+			beforeStartTimestamp = System.currentTimeMillis();
+			long streamingPosition;
+			try (StreamingSignalScan streamingScan = new StreamingSignalScan(signal, threads, StreamingSignalScan.DEFAULT_CHUNK_LENGTH, correlationMode, (position, correlation) -> {})) {
+				for (int pushOffset = 0; pushOffset < waveform.length; pushOffset += STREAMING_PUSH_LENGTH) {
+					streamingScan.push(waveform, pushOffset, Math.min(STREAMING_PUSH_LENGTH, waveform.length - pushOffset));
+				}
+				streamingPosition = streamingScan.finish();
+			}
+			afterFinishTimestamp = System.currentTimeMillis();
+			printComparison("Streaming", streamingPosition, calculatedPosition, afterFinishTimestamp - beforeStartTimestamp);
+		}
+		
+		if (argumentsList.contains("--mapped")) {
+			System.out.println();
+			System.out.println("Writing the waveform to a temporary file...");
+			Path waveformFile = writeWaveform(waveform);
+			try {
+				System.out.println("Scanning the mapped file...");
+				beforeStartTimestamp = System.currentTimeMillis();
+				MappedWaveform mappedWaveform = MappedWaveform.open(waveformFile, SampleFormat.FLOAT32_LITTLE_ENDIAN);
+				long mappedPosition = new MappedSignalScan(signal, mappedWaveform).start(threads, correlationMode).get();
+				afterFinishTimestamp = System.currentTimeMillis();
+				printComparison("Mapped", mappedPosition, calculatedPosition, afterFinishTimestamp - beforeStartTimestamp);
+			} finally {
+				Files.delete(waveformFile);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Checks that the correlation of a lag does not depend on how the lags are grouped by CorrelationKernel:
+	 * the blocked computation must deliver exactly the same values as the single-lag one.
+	 */
+	private static void checkCorrelationKernel() {
+		System.out.println("Checking the correlation kernel...");
+		Random random = new Random();
+		for (int signalLength = 1; signalLength <= KERNEL_CHECK_MAXIMUM_SIGNAL_LENGTH; signalLength++) {
+			float[] signal = createWaveform(signalLength, DEFAULT_NOISE_AMPLITUDE);
+			float[] waveform = createWaveform(signalLength + random.nextInt(KERNEL_CHECK_MAXIMUM_LAGS) + 1, DEFAULT_NOISE_AMPLITUDE);
+			int offset = random.nextInt(waveform.length - signalLength + 1);
+			int count = waveform.length - signalLength + 1 - offset;
+			float[] results = new float[count];
+			CorrelationKernel.correlate(signal, waveform, offset, count, results);
+			for (int index = 0; index < count; index++) {
+				float expected = CorrelationKernel.correlate(signal, waveform, offset + index);
+				if (Float.floatToIntBits(results[index]) != Float.floatToIntBits(expected)) {
+					System.out.printf(">>> Lag %d of a signal with %d samples: blocked %f, single %f!\n", offset + index, signalLength, results[index], expected);
+					return;
+				}
+			}
+		}
+		System.out.println("Correlation kernel verified");
+	}
+	
+	/**
+	 * Checks that LagRanges hands every lag to exactly one of several concurrent workers. One of the workers
+	 * is slowed down, so the others exhaust their ranges and steal blocks from it.
+	 */
+	private static void checkLagRanges() throws InterruptedException {
+		System.out.println("Checking the distribution of lags...");
+		Random random = new Random();
+		for (int workers = LAG_RANGES_CHECK_MINIMUM_WORKERS; workers <= LAG_RANGES_CHECK_MAXIMUM_WORKERS; workers++) {
+			for (int limit : new int[] { 0, workers - 1, random.nextInt(LAG_RANGES_CHECK_MAXIMUM_LAGS) + 1 }) {
+				int blockLength = random.nextInt(LAG_RANGES_CHECK_MAXIMUM_BLOCK_LENGTH) + 1;
+				LagRanges lagRanges = new LagRanges(limit, workers, blockLength);
+				AtomicIntegerArray takenCount = new AtomicIntegerArray(limit);
+				Thread[] threads = new Thread[workers];
+				for (int index = 0; index < workers; index++) {
+					final int worker = index;
+					threads[index] = new Thread(() -> {
+						long block = lagRanges.take(worker);
+						while (block != LagRanges.NONE) {
+							for (int lag = LagRanges.start(block); lag < LagRanges.end(block); lag++) {
+								takenCount.incrementAndGet(lag);
+							}
+							if (worker == 0) {
+								LockSupport.parkNanos(LAG_RANGES_CHECK_SLOW_WORKER_DELAY);
+							}
+							block = lagRanges.take(worker);
+						}
+					});
+					threads[index].start();
+				}
+				for (Thread thread : threads) {
+					thread.join();
+				}
+				for (int lag = 0; lag < limit; lag++) {
+					if (takenCount.get(lag) != 1) {
+						System.out.printf(">>> Lag %d of %d was taken %d times by %d workers with blocks of %d lags!\n", lag, limit, takenCount.get(lag), workers, blockLength);
+						return;
+					}
+				}
+			}
+		}
+		System.out.println("Distribution of lags verified");
+	}
+	
+	/**
+	 * Checks the FFT-based correlation: RealFFT must deliver the coefficients of a naive DFT for the small lengths,
+	 * and the inverse of its forward transform must be the input. Then, for signals shorter and longer than the
+	 * threshold of the automatic mode, the FFT mode must find the same position as start(threadsCount).
+	 */
+	private static void checkFFT() throws InterruptedException, ExecutionException {
+		System.out.println("Checking the FFT...");
+		Random random = new Random();
+		for (int length = 4; length <= FFT_CHECK_MAXIMUM_LENGTH; length *= 2) {
+			RealFFT fft = new RealFFT(length);
+			double[] input = new double[length];
+			double magnitude = 0;
+			for (int index = 0; index < length; index++) {
+				input[index] = random.nextDouble() * 2 - 1;
+				magnitude += Math.abs(input[index]);
+			}
+			double[] real = new double[length / 2 + 1];
+			double[] imaginary = new double[length / 2 + 1];
+			fft.forward(input, real, imaginary);
+			for (int frequency = 0; frequency <= length / 2; frequency++) {
+				double expectedReal = 0;
+				double expectedImaginary = 0;
+				for (int index = 0; index < length; index++) {
+					double angle = 2 * Math.PI * ((long) frequency * index % length) / length;
+					expectedReal += input[index] * Math.cos(angle);
+					expectedImaginary -= input[index] * Math.sin(angle);
+				}
+				if (Math.abs(real[frequency] - expectedReal) > FFT_CHECK_TOLERANCE * magnitude
+						|| Math.abs(imaginary[frequency] - expectedImaginary) > FFT_CHECK_TOLERANCE * magnitude) {
+					System.out.printf(">>> Coefficient %d of length %d: FFT %f%+fi, DFT %f%+fi!\n", frequency, length,
+							real[frequency], imaginary[frequency], expectedReal, expectedImaginary);
+					return;
+				}
+			}
+			double[] output = new double[length];
+			fft.inverse(real, imaginary, output);
+			for (int index = 0; index < length; index++) {
+				if (Math.abs(output[index] - input[index]) > FFT_CHECK_TOLERANCE * magnitude) {
+					System.out.printf(">>> Sample %d of length %d: inverse %f, input %f!\n", index, length, output[index], input[index]);
+					return;
+				}
+			}
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int signalLength : FFT_CHECK_SIGNAL_LENGTHS) {
+			float[] signal = createSignal(signalLength - signalLength / 2, DEFAULT_POSITIVE_VALUE, signalLength / 2, DEFAULT_NEGATIVE_VALUE);
+			float[] waveform = createWaveform(FFT_CHECK_WAVEFORM_LENGTH, DEFAULT_NOISE_AMPLITUDE);
+			addSignalToWaveform(signal, waveform, random.nextInt(waveform.length - signal.length), DEFAULT_SIGNAL_GAIN);
+			int directPosition = new MTSignalScan(signal, waveform).start(threads).get();
+			int fftPosition = new MTSignalScan(signal, waveform).start(threads, CorrelationMode.FFT).get();
+			if (fftPosition != directPosition) {
+				System.out.printf(">>> Signal with %d samples: FFT position %d, direct position %d!\n", signalLength, fftPosition, directPosition);
+				return;
+			}
+		}
+		System.out.println("FFT verified");
+	}
+	
+	private static Path writeWaveform(float[] waveform) throws IOException {
+		Path file = Files.createTempFile("waveform", ".raw");
+		ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			for (int index = 0; index < waveform.length; index++) {
+				buffer.putFloat(waveform[index]);
+				if (!buffer.hasRemaining() || index == waveform.length - 1) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					buffer.clear();
+				}
+			}
+		}
+		return file;
+	}
+	
+	private static void printComparison(String scanName, long position, int expectedPosition, long ellapsedTime) {
+		System.out.printf("%s scan result: %d\n", scanName, position);
+		if (position != expectedPosition) {
+			System.out.printf(">>> %s scan result differs from MTSignalScan!\n", scanName);
+		}
+		System.out.printf("Ellapsed time: %d ms\n", ellapsedTime);
 	}
 	
 	private static void printHelp() {
@@ -103,6 +325,12 @@ public class ScanSignalTest {
 		System.out.println("--signal-gain [float-value]: gain to be applied to the signal prior to addition to the waveform");
 		System.out.println("--output-image [string-value]: file path were an imagem with the generated waveform will be stored");
 		System.out.println("--threads [integer-value]: number of threads to be used in the scan process");
+		System.out.println("--correlation-mode [auto|direct|fft]: method used for computing the correlation");
+		System.out.println("--streaming: also scans the waveform with StreamingSignalScan and compares the results");
+		System.out.println("--check-kernel: checks that the blocked correlation kernel delivers the same values as the single-lag one");
+		System.out.println("--check-lag-ranges: checks that every lag is scanned exactly once by 3 to 16 concurrent workers");
+		System.out.println("--check-fft: checks RealFFT against a naive DFT and that the FFT and direct modes find the same positions");
+		System.out.println("--mapped: also writes the waveform to a temporary file, scans it with MappedSignalScan and compares the results");
 	}
 	
 	private static float[] createSignal(int positiveLength, float positiveValue, int negativeLength, float negativeValue) {
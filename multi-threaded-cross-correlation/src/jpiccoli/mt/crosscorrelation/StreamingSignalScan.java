@@ -0,0 +1,344 @@
+package jpiccoli.mt.crosscorrelation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches for a signal in a waveform whose samples are delivered in parts, such as a capture which is still in progress.
+ * The samples are grouped in chunks, which are scanned by a pool of threads while the following samples are received.
+ * Consecutive chunks overlap by the signal length, so that every position is evaluated exactly once and the result
+ * is the same as the one delivered by {@link MTSignalScan} for the whole waveform.
+ * <p>
+ * The best match found so far is reported to a {@link MatchListener} whenever it changes.
+ * Positions are 'long' values, so the waveform is not limited to the length of an array.
+ * @author Piccoli
+ *
+ */
+public class StreamingSignalScan implements AutoCloseable {
+	
+	/**
+	 * Default number of new samples per chunk.
+	 */
+	public static final int DEFAULT_CHUNK_LENGTH = 1 << 20;
+	
+	private static final int MAXIMUM_PENDING_CHUNKS = 2;
+	private static final int DIRECT_LAGS_PER_TASK = 4096;
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+	
+	/**
+	 * Receives the best match found so far.
+	 */
+	@FunctionalInterface
+	public interface MatchListener {
+		
+		/**
+		 * Invoked by one of the scanning threads whenever a better match is found.
+		 * @param position Position of the signal in the waveform.
+		 * @param correlation Correlation between the signal and the waveform at the position.
+		 */
+		void bestMatchUpdated(long position, float correlation);
+		
+	}
+	
+	private final float[] signal;
+	private final int chunkLength;
+	private final CorrelationMode mode;
+	private final MatchListener listener;
+	private final int threadsCount;
+	private final ExecutorService executor;
+	private final Semaphore pendingChunks;
+	private final FFTCorrelation fftTemplate;
+	
+	private float[] currentChunk;
+	private int currentChunkFill;
+	private long currentChunkPosition;
+	
+	private long bestPosition;
+	private float bestCorrelation;
+	private volatile boolean closed;
+	
+	/**
+	 * Creates a scanner which uses chunks of {@link #DEFAULT_CHUNK_LENGTH} samples and chooses the correlation method automatically.
+	 * @param signal Array containing the signal for which to search.
+	 * @param threadsCount The number of threads that will be used for scanning the chunks.
+	 * @param listener Receives the best match found so far.
+	 */
+	public StreamingSignalScan(final float[] signal, final int threadsCount, final MatchListener listener) {
+		this(signal, threadsCount, DEFAULT_CHUNK_LENGTH, CorrelationMode.AUTO, listener);
+	}
+	
+	/**
+	 * @param signal Array containing the signal for which to search.
+	 * @param threadsCount The number of threads that will be used for scanning the chunks.
+	 * @param chunkLength Number of new samples per chunk.
+	 * @param mode The method used for computing the correlation.
+	 * @param listener Receives the best match found so far.
+	 */
+	public StreamingSignalScan(final float[] signal, final int threadsCount, final int chunkLength, final CorrelationMode mode, final MatchListener listener) {
+		if (chunkLength <= 0) {
+			throw new IllegalArgumentException("Chunk length must be positive: " + chunkLength);
+		}
+		this.signal = signal;
+		this.chunkLength = chunkLength;
+		this.mode = MTSignalScan.resolveMode(mode, signal.length);
+		this.listener = listener;
+		this.threadsCount = threadsCount;
+		executor = Executors.newFixedThreadPool(threadsCount);
+		pendingChunks = new Semaphore(MAXIMUM_PENDING_CHUNKS);
+		fftTemplate = this.mode == CorrelationMode.FFT ? new FFTCorrelation(signal, new float[0], 0) : null;
+		currentChunk = new float[signal.length + chunkLength];
+		bestPosition = -1;
+		bestCorrelation = Float.MIN_VALUE;
+	}
+	
+	/**
+	 * Appends samples to the waveform. Full chunks are submitted for scanning. If the scan of previous chunks is
+	 * still in progress, this method waits until one of them is finished.
+	 * Important: this method is not thread-safe. The samples must be delivered by a single thread at a time.
+	 * @param samples Array containing the samples.
+	 * @param offset Index of the first sample in the array.
+	 * @param length Number of samples.
+	 * @throws InterruptedException If the calling thread is interrupted while waiting.
+	 * @throws IllegalStateException If the scanner was closed.
+	 */
+	public void push(final float[] samples, int offset, int length) throws InterruptedException {
+		while (length > 0) {
+			final int count = Math.min(length, currentChunk.length - currentChunkFill);
+			System.arraycopy(samples, offset, currentChunk, currentChunkFill, count);
+			currentChunkFill += count;
+			offset += count;
+			length -= count;
+			if (currentChunkFill == currentChunk.length) {
+				submitCurrentChunk();
+			}
+		}
+	}
+	
+	/**
+	 * Reads float32 samples from the channel until its end and scans them.
+	 * A trailing incomplete sample is ignored.
+	 * @param channel The channel. Must be in blocking mode.
+	 * @param byteOrder Byte order of the samples.
+	 * @return The position of the signal in the whole waveform delivered so far, or -1 if it was not found.
+	 * @throws IOException If the channel cannot be read.
+	 * @throws InterruptedException If the calling thread is interrupted while waiting for the scan.
+	 * @throws IllegalStateException If the scanner was closed.
+	 */
+	public long scan(final ReadableByteChannel channel, final ByteOrder byteOrder) throws IOException, InterruptedException {
+		final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).order(byteOrder);
+		final float[] samples = new float[READ_BUFFER_SIZE / Float.BYTES];
+		while (channel.read(buffer) >= 0) {
+			buffer.flip();
+			final int count = buffer.remaining() / Float.BYTES;
+			buffer.asFloatBuffer().get(samples, 0, count);
+			buffer.position(count * Float.BYTES);
+			buffer.compact();
+			push(samples, 0, count);
+		}
+		return finish();
+	}
+	
+	/**
+	 * Submits the samples which were not scanned yet and waits until the scan of all the chunks is finished.
+	 * More samples can be pushed afterwards.
+	 * @return The position of the signal in the whole waveform delivered so far, or -1 if it was not found.
+	 * @throws InterruptedException If the calling thread is interrupted while waiting.
+	 * @throws IllegalStateException If the scanner was closed.
+	 */
+	public long finish() throws InterruptedException {
+		checkNotClosed();
+		if (currentChunkFill > signal.length) {
+			submitCurrentChunk();
+		}
+		pendingChunks.acquire(MAXIMUM_PENDING_CHUNKS);
+		pendingChunks.release(MAXIMUM_PENDING_CHUNKS);
+		// The chunks abandoned by close() release their permits, so the wait ends but the result is incomplete.
+		checkNotClosed();
+		return getBestPosition();
+	}
+	
+	/**
+	 * @return The position of the best match found so far, or -1 if none was found.
+	 */
+	public synchronized long getBestPosition() {
+		return bestPosition;
+	}
+	
+	/**
+	 * @return The correlation of the best match found so far.
+	 */
+	public synchronized float getBestCorrelation() {
+		return bestCorrelation;
+	}
+	
+	/**
+	 * Stops the scanning threads. Chunks which are still being scanned or waiting to be scanned are abandoned.
+	 * Afterwards, {@link #push(float[], int, int)} and {@link #finish()} throw {@link IllegalStateException},
+	 * including a call of {@link #finish()} which is already waiting for the scan.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executor.shutdownNow();
+		// The abandoned chunks never release their permits, so threads waiting for them are released here.
+		pendingChunks.release(MAXIMUM_PENDING_CHUNKS);
+	}
+	
+	private void checkNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("The scanner is closed");
+		}
+	}
+	
+	private void submitCurrentChunk() throws InterruptedException {
+		checkNotClosed();
+		pendingChunks.acquire();
+		if (closed) {
+			pendingChunks.release();
+			throw new IllegalStateException("The scanner is closed");
+		}
+		final float[] chunk = currentChunk;
+		final int fill = currentChunkFill;
+		final long chunkPosition = currentChunkPosition;
+		// The last samples are kept, since they are needed for evaluating the positions that were not covered by this chunk.
+		final int overlap = Math.min(signal.length, fill);
+		currentChunk = new float[signal.length + chunkLength];
+		System.arraycopy(chunk, fill - overlap, currentChunk, 0, overlap);
+		currentChunkFill = overlap;
+		currentChunkPosition = chunkPosition + fill - overlap;
+		
+		final ChunkScan chunkScan = new ChunkScan(chunk, chunkPosition, fill - signal.length);
+		try {
+			for (int index = 0; index < chunkScan.tasksCount; index++) {
+				executor.submit(chunkScan::run);
+			}
+		} catch (RejectedExecutionException e) {
+			// The scanner was closed concurrently. The tasks of the chunk will not all run, so its permit is released here.
+			pendingChunks.release();
+			throw new IllegalStateException("The scanner is closed", e);
+		}
+	}
+	
+	private synchronized void checkAndSwap(final long position, final float correlation) {
+		if (correlation > bestCorrelation || (correlation == bestCorrelation && position >= 0 && position < bestPosition)) {
+			bestCorrelation = correlation;
+			bestPosition = position;
+			listener.bestMatchUpdated(position, correlation);
+		}
+	}
+	
+	/**
+	 * Scan of the positions [0, limit) of a chunk, split in units which are taken by the tasks.
+	 * The last task to finish reports the best position of the chunk.
+	 */
+	private class ChunkScan {
+		
+		private final float[] chunk;
+		private final long chunkPosition;
+		private final int limit;
+		private final FFTCorrelation fftCorrelation;
+		private final int unitsCount;
+		private final int tasksCount;
+		private final AtomicInteger nextUnit;
+		private final AtomicInteger runningTasks;
+		private final List<int[]> candidates;
+		
+		private ChunkScan(final float[] chunk, final long chunkPosition, final int limit) {
+			this.chunk = chunk;
+			this.chunkPosition = chunkPosition;
+			this.limit = Math.max(limit, 0);
+			if (fftTemplate != null) {
+				fftCorrelation = new FFTCorrelation(fftTemplate, chunk, this.limit);
+				unitsCount = fftCorrelation.getBlocksCount();
+			} else {
+				fftCorrelation = null;
+				unitsCount = (this.limit + DIRECT_LAGS_PER_TASK - 1) / DIRECT_LAGS_PER_TASK;
+			}
+			tasksCount = Math.max(Math.min(threadsCount, unitsCount), 1);
+			nextUnit = new AtomicInteger(0);
+			runningTasks = new AtomicInteger(tasksCount);
+			candidates = new ArrayList<>();
+		}
+		
+		private void run() {
+			try {
+				if (fftCorrelation != null) {
+					scanBlocks();
+				} else {
+					scanLags();
+				}
+			} finally {
+				if (runningTasks.decrementAndGet() == 0) {
+					try {
+						// The direct computation decides between the candidates. Ties are resolved as in MTSignalScan.
+						float maximumCorrelation = Float.MIN_VALUE;
+						int position = -1;
+						for (int[] taskCandidates : getCandidates()) {
+							for (int candidate : taskCandidates) {
+								final float correlation = MTSignalScan.calcCorrelation(signal, chunk, candidate);
+								if (correlation > maximumCorrelation || (correlation == maximumCorrelation && position >= 0 && candidate < position)) {
+									maximumCorrelation = correlation;
+									position = candidate;
+								}
+							}
+						}
+						if (position >= 0) {
+							checkAndSwap(chunkPosition + position, maximumCorrelation);
+						}
+					} finally {
+						pendingChunks.release();
+					}
+				}
+			}
+		}
+		
+		private void scanLags() {
+			float localMaxCorrelation = Float.MIN_VALUE;
+			int localPosition = -1;
+			final float[] correlations = new float[DIRECT_LAGS_PER_TASK];
+			int unit = nextUnit.getAndIncrement();
+			while (unit < unitsCount && !Thread.currentThread().isInterrupted()) {
+				final int start = unit * DIRECT_LAGS_PER_TASK;
+				final int count = Math.min(limit - start, DIRECT_LAGS_PER_TASK);
+				CorrelationKernel.correlate(signal, chunk, start, count, correlations);
+				for (int index = 0; index < count; index++) {
+					if (correlations[index] > localMaxCorrelation) {
+						localMaxCorrelation = correlations[index];
+						localPosition = start + index;
+					}
+				}
+				unit = nextUnit.getAndIncrement();
+			}
+			addCandidates(localPosition >= 0 ? new int[] { localPosition } : new int[0]);
+		}
+		
+		private void scanBlocks() {
+			final FFTCorrelation.Worker worker = fftCorrelation.newWorker();
+			int block = nextUnit.getAndIncrement();
+			while (block < unitsCount && !Thread.currentThread().isInterrupted()) {
+				worker.scan(block);
+				block = nextUnit.getAndIncrement();
+			}
+			addCandidates(worker.getCandidates());
+		}
+		
+		private synchronized void addCandidates(final int[] taskCandidates) {
+			candidates.add(taskCandidates);
+		}
+		
+		private synchronized List<int[]> getCandidates() {
+			return candidates;
+		}
+		
+	}
+	
+}
@@ -1,19 +1,66 @@
 package jpiccoli.mt.sort.test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import jpiccoli.mt.sort.AdaptiveMergeSort;
+import jpiccoli.mt.sort.AutoTuningSort;
+import jpiccoli.mt.sort.ColumnarSort;
+import jpiccoli.mt.sort.CountingComparator;
 import jpiccoli.mt.sort.DefaultArraySort;
+import jpiccoli.mt.sort.DoubleMultiThreadedSort;
+import jpiccoli.mt.sort.DoubleQuickSort;
+import jpiccoli.mt.sort.ExternalSort;
+import jpiccoli.mt.sort.FloatMultiThreadedSort;
+import jpiccoli.mt.sort.FloatQuickSort;
+import jpiccoli.mt.sort.ForkJoinMergeSort;
+import jpiccoli.mt.sort.IntMergeSort;
+import jpiccoli.mt.sort.IntMultiThreadedSort;
+import jpiccoli.mt.sort.IntQuickSort;
+import jpiccoli.mt.sort.IntRadixSort;
+import jpiccoli.mt.sort.IntroSort;
+import jpiccoli.mt.sort.KeyExtractionSort;
+import jpiccoli.mt.sort.LongMultiThreadedSort;
+import jpiccoli.mt.sort.LongQuickSort;
+import jpiccoli.mt.sort.LongRadixSort;
+import jpiccoli.mt.sort.IntSortingAlgorithm;
 import jpiccoli.mt.sort.MergeSort;
 import jpiccoli.mt.sort.MultiThreadedSort;
+import jpiccoli.mt.sort.MultiThreadedSortStrategy;
+import jpiccoli.mt.sort.ParallelSelection;
 import jpiccoli.mt.sort.QuickSort;
+import jpiccoli.mt.sort.RadixSortStrategy;
+import jpiccoli.mt.sort.RecordBufferSort;
+import jpiccoli.mt.sort.RecordCodec;
+import jpiccoli.mt.sort.SortFuture;
+import jpiccoli.mt.sort.SortListener;
+import jpiccoli.mt.sort.SortStatistics;
+import jpiccoli.mt.sort.SortedAppendBuffer;
+import jpiccoli.mt.sort.SortedArrayOperations;
 import jpiccoli.mt.sort.SortingAlgorithm;
 
 public class SortingTest {
 
     private static final int THREADS_COUNT = Runtime.getRuntime().availableProcessors();
     private static final int ARRAY_SIZE = 16111117;
+    // Size of the arrays of the tests that check the results against Arrays.sort.
+    private static final int VERIFICATION_ARRAY_SIZE = 1000003;
 
     private static void testSortingAlgorithm(final SortingAlgorithm<Integer> sortingAlgorithm) {
         System.out.println("Filling integer array with random values");
@@ -38,12 +85,944 @@ public class SortingTest {
         System.out.println("Array verified");
     }
 
+    private static void testIntSortingAlgorithm(final IntSortingAlgorithm sortingAlgorithm) {
+        System.out.println("Filling primitive int array with random values");
+        int[] source = new int[ARRAY_SIZE];
+        final Random random = new Random();
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+        System.out.println("Sorting");
+        long startTimestamp = System.currentTimeMillis();
+        sortingAlgorithm.sort(source);
+        long endTimestamp = System.currentTimeMillis();
+        System.out.println("Finished");
+        System.out.println("Ellapsed time: " + (endTimestamp - startTimestamp));
+        System.out.println("Verifying");
+        for (int i = 1; i < source.length; i++) {
+            if (source[i] < source[i - 1]) {
+                System.out.println(">>> Incorrect order!");
+                break;
+            }
+        }
+        System.out.println("Array verified");
+    }
+
+    private static void testTopK(final ParallelSelection<Integer> selection, final int k) {
+        System.out.println("Filling integer array with random values");
+        Integer[] source = new Integer[ARRAY_SIZE];
+        final Random random = new Random();
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+        System.out.println("Selecting");
+        long startTimestamp = System.currentTimeMillis();
+        final Object[] top = selection.topK(source, 0, source.length, k);
+        long endTimestamp = System.currentTimeMillis();
+        System.out.println("Finished");
+        System.out.println("Ellapsed time: " + (endTimestamp - startTimestamp));
+        System.out.println("Verifying");
+        Arrays.sort(source);
+        for (int i = 0; i < k; i++) {
+            if (!source[i].equals(top[i])) {
+                System.out.println(">>> Incorrect selection!");
+                return;
+            }
+        }
+        System.out.println("Selection verified");
+    }
+
+    /**
+     * Selects the median with a comparator that builds an adversarial input while it is called (McIlroy's
+     * "killer adversary"): the elements start undecided and, whenever two undecided elements are compared,
+     * the one likely to be the pivot is fixed at the smallest value left. Any quickselect with a deterministic
+     * pivot does a quadratic number of comparisons against it, unless it bounds its partitioning depth.
+     */
+    private static void testSelectionAdversary(final ExecutorService executor) {
+        final int length = 30000;
+        final int undecided = length;
+        final int[] values = new int[length];
+        Arrays.fill(values, undecided);
+        final int[] state = new int[3]; // Fixed values count, pivot candidate and comparisons count.
+        state[1] = -1;
+        final Comparator<Integer> adversary = (element1, element2) -> {
+            state[2]++;
+            if (values[element1] == undecided && values[element2] == undecided) {
+                values[element1 == state[1] ? element1 : element2] = state[0]++;
+            }
+            if (values[element1] == undecided) {
+                state[1] = element1;
+            } else if (values[element2] == undecided) {
+                state[1] = element2;
+            }
+            return Integer.compare(values[element1], values[element2]);
+        };
+        final ParallelSelection<Integer> selection = new ParallelSelection<>(new DefaultArraySort<Integer>(adversary), executor);
+        final Integer[] elements = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            elements[i] = i;
+        }
+        final int target = length / 2;
+        System.out.println("Selecting the median of " + length + " adversarial elements");
+        selection.nthElement(elements, 0, length, target);
+        System.out.println("Comparisons: " + state[2]);
+        for (int i = 0; i < length; i++) {
+            final int result = Integer.compare(values[elements[i]], values[elements[target]]);
+            if (i < target ? result > 0 : i > target && result < 0) {
+                System.out.println(">>> Incorrect selection!");
+                return;
+            }
+        }
+        if (state[2] > 100L * length) {
+            System.out.println(">>> Quadratic number of comparisons!");
+            return;
+        }
+        System.out.println("Selection verified");
+    }
+
+    private static Integer[] randomIntegers(final int length, final int bound) {
+        final Integer[] source = new Integer[length];
+        final Random random = new Random();
+        for (int i = 0; i < source.length; i++) {
+            source[i] = bound > 0 ? random.nextInt(bound) : random.nextInt();
+        }
+        return source;
+    }
+
+    /**
+     * @return True if the actual array holds the same elements as the original one, in any order.
+     */
+    private static boolean isPermutation(final Integer[] original, final Integer[] actual) {
+        final Integer[] expected = original.clone();
+        final Integer[] sortedActual = actual.clone();
+        Arrays.sort(expected);
+        Arrays.sort(sortedActual);
+        return Arrays.equals(expected, sortedActual);
+    }
+
+    private static void testAsyncSort(final MultiThreadedSortStrategy strategy) {
+        final ForkJoinPool pool = new ForkJoinPool(THREADS_COUNT);
+        final MultiThreadedSort<Integer> sortingAlgorithm = new MultiThreadedSort<>(new DefaultArraySort<Integer>(Comparator.naturalOrder()), pool, strategy);
+        // More slices than threads, so that some slices are still queued when the sort is cancelled.
+        final int slices = THREADS_COUNT * 4;
+        System.out.println("Sorting asynchronously with 0, 1 and " + slices + " slices");
+        for (final int sliceCount : new int[] { 0, 1, slices }) {
+            final Integer[] original = randomIntegers(VERIFICATION_ARRAY_SIZE, 0);
+            final Integer[] source = original.clone();
+            sortingAlgorithm.sortAsync(source, 0, source.length, sliceCount).join();
+            final Integer[] expected = original.clone();
+            Arrays.sort(expected);
+            if (!Arrays.equals(expected, source)) {
+                System.out.println(">>> Incorrect order with " + sliceCount + " slices!");
+                pool.shutdownNow();
+                return;
+            }
+        }
+        System.out.println("Cancelling asynchronous sorts");
+        for (final int delay : new int[] { 0, 1, 5, 20, 100 }) {
+            final Integer[] original = randomIntegers(VERIFICATION_ARRAY_SIZE, 0);
+            final Integer[] source = original.clone();
+            final SortFuture<Integer> future = sortingAlgorithm.sortAsync(source, 0, source.length, slices);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            future.cancel(false);
+            // The tasks that were already running when the sort was cancelled are left to finish.
+            future.whenTerminated().join();
+            if (!isPermutation(original, source)) {
+                System.out.println(">>> Elements lost after cancelling with a delay of " + delay + " ms!");
+                pool.shutdownNow();
+                return;
+            }
+        }
+        pool.shutdownNow();
+        System.out.println("Asynchronous sorts verified");
+    }
+
+    /**
+     * Sorts low cardinality arrays with the sample sort strategy: a constant array, an array with three
+     * distinct keys and an array where nine in every ten elements share the same key. Each element holds
+     * its original index below the key, so the stability is checked too. The frequent keys are sampled
+     * as equal splitters, and no bucket sorted by a single task may hold half of the elements.
+     */
+    private static void testSampleSortLowCardinality(final ExecutorService executor) {
+        final Random random = new Random();
+        final Comparator<Long> keyComparator = Comparator.comparingLong(element -> element >> 32);
+        final MultiThreadedSort<Long> sortingAlgorithm = new MultiThreadedSort<>(new DefaultArraySort<Long>(keyComparator), executor,
+                MultiThreadedSortStrategy.SAMPLE_SORT);
+        final AtomicInteger longestBucket = new AtomicInteger();
+        sortingAlgorithm.setSortListener(new SortListener() {
+            @Override
+            public void sliceSorted(final int slice, final int length, final long queueWaitNanos, final long runNanos) {
+                longestBucket.accumulateAndGet(length, Math::max);
+            }
+        });
+        final String[] inputs = { "constant", "three keys", "one frequent key" };
+        final int slices = 8;
+        for (int input = 0; input < inputs.length; input++) {
+            System.out.println("Sorting " + inputs[input] + " arrays");
+            final Long[] source = new Long[VERIFICATION_ARRAY_SIZE];
+            for (int i = 0; i < source.length; i++) {
+                final long key;
+                switch (input) {
+                case 0: key = 42; break;
+                case 1: key = random.nextInt(3); break;
+                default: key = random.nextInt(10) == 0 ? random.nextInt() : 42; break;
+                }
+                source[i] = key << 32 | i;
+            }
+            final Long[] expected = source.clone();
+            Arrays.sort(expected);
+            longestBucket.set(0);
+            sortingAlgorithm.sort(source, 0, source.length, slices);
+            if (!Arrays.equals(expected, source)) {
+                System.out.println(">>> Incorrect order!");
+                return;
+            }
+            if (longestBucket.get() >= source.length / 2) {
+                System.out.println(">>> A single bucket of " + longestBucket.get() + " elements was sorted!");
+                return;
+            }
+        }
+        System.out.println("Low cardinality arrays verified");
+    }
+
+    /**
+     * Merges low cardinality arrays with the k-way merge strategy, using the same inputs as the sample sort
+     * test. Each slice of the input is already sorted, so sorting a slice costs one comparison per element and
+     * the merge tasks are the only ones doing more. The tasks run inline in an executor that counts the
+     * comparisons of each one: the frequent keys are sampled as equal splitters, and no merge task may do
+     * as many comparisons as there are elements in half of the array.
+     */
+    private static void testKWayMergeLowCardinality() {
+        final Random random = new Random();
+        final AtomicLong comparisons = new AtomicLong();
+        final AtomicLong mostTaskComparisons = new AtomicLong();
+        final Comparator<Long> keyComparator = (element1, element2) -> {
+            comparisons.incrementAndGet();
+            return Long.compare(element1 >> 32, element2 >> 32);
+        };
+        final Executor countingExecutor = task -> {
+            final long initialComparisons = comparisons.get();
+            task.run();
+            mostTaskComparisons.accumulateAndGet(comparisons.get() - initialComparisons, Math::max);
+        };
+        final MultiThreadedSort<Long> sortingAlgorithm = new MultiThreadedSort<>(new DefaultArraySort<Long>(keyComparator), countingExecutor,
+                MultiThreadedSortStrategy.K_WAY_MERGE);
+        final String[] inputs = { "constant", "three keys", "one frequent key" };
+        final int slices = 8;
+        final int sliceLength = VERIFICATION_ARRAY_SIZE / slices;
+        for (int input = 0; input < inputs.length; input++) {
+            System.out.println("Merging " + inputs[input] + " arrays");
+            final long[] keys = new long[VERIFICATION_ARRAY_SIZE];
+            for (int i = 0; i < keys.length; i++) {
+                switch (input) {
+                case 0: keys[i] = 42; break;
+                case 1: keys[i] = random.nextInt(3); break;
+                default: keys[i] = random.nextInt(10) == 0 ? random.nextInt() : 42; break;
+                }
+            }
+            for (int slice = 0; slice < slices; slice++) {
+                Arrays.sort(keys, slice * sliceLength, slice == slices - 1 ? keys.length : (slice + 1) * sliceLength);
+            }
+            final Long[] source = new Long[keys.length];
+            for (int i = 0; i < source.length; i++) {
+                source[i] = keys[i] << 32 | i;
+            }
+            final Long[] expected = source.clone();
+            Arrays.sort(expected);
+            mostTaskComparisons.set(0);
+            sortingAlgorithm.sort(source, 0, source.length, slices);
+            if (!Arrays.equals(expected, source)) {
+                System.out.println(">>> Incorrect order!");
+                return;
+            }
+            if (mostTaskComparisons.get() >= source.length / 2) {
+                System.out.println(">>> A single merge task did " + mostTaskComparisons.get() + " comparisons!");
+                return;
+            }
+        }
+        System.out.println("Low cardinality arrays verified");
+    }
+
+    /**
+     * Sorts segments laid out back to back: empty segments, many tiny ones and one huge segment
+     * holding most of the elements. The elements before the first offset and after the last one
+     * do not belong to any segment and must not be moved. Each segment is compared with its own
+     * elements sorted by Arrays.sort, so an element crossing a boundary is detected.
+     */
+    private static void testSortSegments(final ExecutorService executor) {
+        final Random random = new Random();
+        final MultiThreadedSort<Integer> sortingAlgorithm = new MultiThreadedSort<>(new DefaultArraySort<Integer>(Comparator.naturalOrder()), executor);
+        final Integer[] original = randomIntegers(VERIFICATION_ARRAY_SIZE, 0);
+        final int hugeSegmentLength = VERIFICATION_ARRAY_SIZE / 2;
+        final List<Integer> offsetList = new ArrayList<>();
+        int offset = 10;
+        offsetList.add(offset);
+        offsetList.add(offset);
+        while (offset < VERIFICATION_ARRAY_SIZE - 1000) {
+            if (offsetList.size() == 1000) {
+                offset += hugeSegmentLength;
+            } else {
+                // Tiny segments, a quarter of them empty.
+                offset += random.nextInt(4);
+            }
+            offsetList.add(offset);
+        }
+        offsetList.add(offset);
+        final int[] offsets = offsetList.stream().mapToInt(Integer::intValue).toArray();
+        System.out.println("Sorting " + (offsets.length - 1) + " segments");
+        for (final int parallelism : new int[] { 1, THREADS_COUNT * 4 }) {
+            final Integer[] source = original.clone();
+            sortingAlgorithm.sortSegments(source, offsets, parallelism);
+            for (int segment = 0; segment < offsets.length - 1; segment++) {
+                final Integer[] expected = Arrays.copyOfRange(original, offsets[segment], offsets[segment + 1]);
+                Arrays.sort(expected);
+                if (!Arrays.equals(expected, Arrays.copyOfRange(source, offsets[segment], offsets[segment + 1]))) {
+                    System.out.println(">>> Incorrect order in segment " + segment + " with parallelism " + parallelism + "!");
+                    return;
+                }
+            }
+            if (!Arrays.equals(Arrays.copyOfRange(original, 0, offsets[0]), Arrays.copyOfRange(source, 0, offsets[0]))
+                    || !Arrays.equals(Arrays.copyOfRange(original, offset, original.length), Arrays.copyOfRange(source, offset, source.length))) {
+                System.out.println(">>> Elements outside the segments were moved with parallelism " + parallelism + "!");
+                return;
+            }
+        }
+        System.out.println("Segments verified");
+    }
+
+    /**
+     * Sorts rows stored as a key column and payload columns of several types. Every payload is derived
+     * from the original row index, which is itself a payload column, so each output row can be checked
+     * against its original one. The keys have few distinct values, so the stability is checked too.
+     * The long keys are sorted from an offset through sortPermutation and permute. A single array of
+     * objects must be taken as one column, and an invalid column must be rejected before anything moves.
+     */
+    private static void testColumnarSort(final ExecutorService executor) {
+        final Random random = new Random();
+        final ColumnarSort columnarSort = new ColumnarSort(executor);
+        final int rows = VERIFICATION_ARRAY_SIZE;
+        for (final boolean longKeys : new boolean[] { false, true }) {
+            final int position = longKeys ? 1000 : 0;
+            final int length = rows - position - (longKeys ? 1000 : 0);
+            System.out.println("Sorting " + length + " rows with " + (longKeys ? "long" : "int") + " keys");
+            final int[] intKeys = new int[rows];
+            final long[] longKeyColumn = new long[rows];
+            final int[] rowIndexes = new int[rows];
+            final long[] longs = new long[rows];
+            final double[] doubles = new double[rows];
+            final byte[] bytes = new byte[rows];
+            final String[] strings = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                intKeys[row] = random.nextInt(1000) - 500;
+                longKeyColumn[row] = intKeys[row] * 0x100000001L;
+                rowIndexes[row] = row;
+                longs[row] = row * 3L;
+                doubles[row] = row / 2.0;
+                bytes[row] = (byte) row;
+                strings[row] = "row " + row;
+            }
+            final int[] originalKeys = intKeys.clone();
+            if (longKeys) {
+                final int[] permutation = columnarSort.sortPermutation(longKeyColumn, position, length);
+                for (final Object column : new Object[] { rowIndexes, longs, doubles, bytes, strings }) {
+                    columnarSort.permute(column, position, permutation);
+                }
+            } else {
+                columnarSort.sort(intKeys, rowIndexes, longs, doubles, bytes, strings);
+            }
+            final boolean[] seen = new boolean[rows];
+            for (int row = 0; row < rows; row++) {
+                final int originalRow = rowIndexes[row];
+                final long key = longKeys ? longKeyColumn[row] : intKeys[row];
+                final long expectedKey = longKeys ? originalKeys[originalRow] * 0x100000001L : originalKeys[originalRow];
+                final boolean inside = row >= position && row < position + length;
+                if (seen[originalRow] || key != expectedKey || longs[row] != originalRow * 3L || doubles[row] != originalRow / 2.0
+                        || bytes[row] != (byte) originalRow || !strings[row].equals("row " + originalRow) || (!inside && originalRow != row)) {
+                    System.out.println(">>> Row " + row + " does not match its original row!");
+                    return;
+                }
+                seen[originalRow] = true;
+                if (inside && row > position) {
+                    final long previousKey = longKeys ? longKeyColumn[row - 1] : intKeys[row - 1];
+                    if (previousKey > key || (previousKey == key && rowIndexes[row - 1] > originalRow)) {
+                        System.out.println(">>> Incorrect order at row " + row + "!");
+                        return;
+                    }
+                }
+            }
+        }
+        System.out.println("Sorting with a single object column");
+        final int[] keys = { 3, 1, 2 };
+        final String[] names = { "c", "a", "b" };
+        columnarSort.sort(keys, names);
+        if (!Arrays.equals(new int[] { 1, 2, 3 }, keys) || !Arrays.equals(new String[] { "a", "b", "c" }, names)) {
+            System.out.println(">>> Incorrect single column result!");
+            return;
+        }
+        System.out.println("Sorting with an invalid column");
+        final int[] unsortedKeys = { 3, 1, 2 };
+        final int[] payload = { 30, 10, 20 };
+        try {
+            columnarSort.sort(unsortedKeys, payload, new int[2]);
+            System.out.println(">>> The short column was not rejected!");
+            return;
+        } catch (IllegalArgumentException e) {
+            if (!Arrays.equals(new int[] { 3, 1, 2 }, unsortedKeys) || !Arrays.equals(new int[] { 30, 10, 20 }, payload)) {
+                System.out.println(">>> Columns were reordered before the invalid column was rejected!");
+                return;
+            }
+        }
+        System.out.println("Columns verified");
+    }
+
+    /**
+     * Appends batches of several lengths to buffers with different growth policies and compares the
+     * contents after every append with all the elements appended so far, sorted by Arrays.sort. Each
+     * element holds a key in its upper half and its sequence number in the lower one, so the expected
+     * order also places equal keys in the order they were appended. Some batches fall entirely below
+     * or above the stored range, the others interleave with it.
+     */
+    private static void testSortedAppendBuffer(final ExecutorService executor) {
+        final Random random = new Random();
+        final Comparator<Long> keyComparator = Comparator.comparingLong(element -> element >> 32);
+        final SortedAppendBuffer.GrowthPolicy addingPolicy = (currentCapacity, requiredCapacity) -> requiredCapacity + 1000;
+        final SortedAppendBuffer.GrowthPolicy[] policies = { SortedAppendBuffer.GrowthPolicy.DOUBLING, SortedAppendBuffer.GrowthPolicy.EXACT, addingPolicy };
+        final String[] policyNames = { "doubling", "exact", "adding" };
+        for (int policy = 0; policy < policies.length; policy++) {
+            System.out.println("Appending with the " + policyNames[policy] + " growth policy");
+            final SortedAppendBuffer<Long> buffer = new SortedAppendBuffer<>(new DefaultArraySort<Long>(keyComparator), keyComparator, executor,
+                    policies[policy], policy);
+            final List<Long> appended = new ArrayList<>();
+            for (int batchIndex = 0; batchIndex < 40; batchIndex++) {
+                final int length = batchIndex % 10 == 0 ? 0 : random.nextInt(batchIndex % 3 == 0 ? 50000 : 100);
+                final int keyBase = batchIndex % 7 == 3 ? -2000 : batchIndex % 7 == 5 ? 2000 : 0;
+                // Spare elements around the batch, which must not be appended.
+                final Long[] batch = new Long[length + 2];
+                batch[0] = Long.MIN_VALUE;
+                batch[length + 1] = Long.MAX_VALUE;
+                for (int i = 1; i <= length; i++) {
+                    batch[i] = ((long) (keyBase + random.nextInt(1000)) << 32) | (appended.size() + i - 1);
+                }
+                final Long[] batchCopy = batch.clone();
+                final int previousCapacity = buffer.capacity();
+                buffer.append(batch, 1, length);
+                appended.addAll(Arrays.asList(batch).subList(1, length + 1));
+                final Long[] expected = appended.toArray(new Long[0]);
+                Arrays.sort(expected);
+                if (!Arrays.equals(batchCopy, batch) || buffer.size() != expected.length || !Arrays.equals(expected, buffer.toArray())) {
+                    System.out.println(">>> Incorrect contents after batch " + batchIndex + "!");
+                    return;
+                }
+                final int expectedCapacity = expected.length <= previousCapacity ? previousCapacity
+                        : policies[policy].newCapacity(previousCapacity, expected.length);
+                if (buffer.capacity() != expectedCapacity) {
+                    System.out.println(">>> Capacity " + buffer.capacity() + " after batch " + batchIndex + ", expected " + expectedCapacity + "!");
+                    return;
+                }
+            }
+            final int capacity = buffer.capacity();
+            buffer.clear();
+            buffer.append(new Long[] { 2L << 32, 1L << 32 });
+            if (buffer.size() != 2 || buffer.get(0) != 1L << 32 || buffer.get(1) != 2L << 32 || buffer.capacity() != capacity) {
+                System.out.println(">>> Incorrect contents after clearing!");
+                return;
+            }
+        }
+        System.out.println("Appends verified");
+    }
+
+    /**
+     * Creates a sorted array whose elements hold a key in their upper half and, in the lower one, the
+     * array identifier and their index. One in every 'sharedKeyPeriod' elements, on average, has the
+     * same key, which makes a group longer than the range of one task when the period is short.
+     */
+    private static Long[] sortedKeyedArray(final int length, final int keyBound, final int sharedKeyPeriod, final int arrayId) {
+        final Random random = new Random();
+        final long[] keys = new long[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = random.nextInt(sharedKeyPeriod) == 0 ? keyBound / 2 : random.nextInt(keyBound);
+        }
+        Arrays.sort(keys);
+        final Long[] elements = new Long[length];
+        for (int i = 0; i < length; i++) {
+            elements[i] = keys[i] << 32 | (long) arrayId << 30 | i;
+        }
+        return elements;
+    }
+
+    /**
+     * Computes the expected result of a multiset operation by walking the groups of equal keys of both
+     * arrays sequentially. The operation receives the groups and adds its output to the result.
+     */
+    private static <R> List<R> expectedGroupResult(final Long[] elements1, final Long[] elements2,
+            final TriConsumer<List<Long>, List<Long>, List<R>> operation) {
+        final List<R> result = new ArrayList<>();
+        int index1 = 0;
+        int index2 = 0;
+        while (index1 < elements1.length || index2 < elements2.length) {
+            final long key1 = index1 < elements1.length ? elements1[index1] >> 32 : Long.MAX_VALUE;
+            final long key2 = index2 < elements2.length ? elements2[index2] >> 32 : Long.MAX_VALUE;
+            final long key = Math.min(key1, key2);
+            final List<Long> group1 = new ArrayList<>();
+            final List<Long> group2 = new ArrayList<>();
+            while (index1 < elements1.length && elements1[index1] >> 32 == key) {
+                group1.add(elements1[index1++]);
+            }
+            while (index2 < elements2.length && elements2[index2] >> 32 == key) {
+                group2.add(elements2[index2++]);
+            }
+            operation.accept(group1, group2, result);
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface TriConsumer<A, B, C> {
+        void accept(A a, B b, C c);
+    }
+
+    /**
+     * Runs the multiset operations and the merge-join on arrays with many duplicated keys on both
+     * sides and compares their results, including which input each element was taken from, with
+     * sequential computations over the groups of equal keys: a key occurring n1 and n2 times must
+     * occur max(n1, n2) times in the union, min(n1, n2) times in the intersection, max(0, n1 - n2)
+     * times in the difference, once in the distinct elements and n1 * n2 times in the join.
+     */
+    private static void testSortedArrayOperations(final ExecutorService executor) {
+        final SortedArrayOperations<Long> operations = new SortedArrayOperations<>(Comparator.comparingLong(element -> element >> 32), executor);
+        final Long[] elements1 = sortedKeyedArray(VERIFICATION_ARRAY_SIZE / 4, 20000, 5, 1);
+        final Long[] elements2 = sortedKeyedArray(VERIFICATION_ARRAY_SIZE / 5, 30000, 5, 2);
+        final Long[] empty = new Long[0];
+        System.out.println("Running the multiset operations");
+        for (final Long[][] inputs : new Long[][][] { { elements1, elements2 }, { elements2, elements1 }, { elements1, empty }, { empty, elements1 } }) {
+            final Long[] input1 = inputs[0];
+            final Long[] input2 = inputs[1];
+            final List<Long> union = expectedGroupResult(input1, input2, (group1, group2, result) -> {
+                result.addAll(group1);
+                if (group2.size() > group1.size()) {
+                    result.addAll(group2.subList(group1.size(), group2.size()));
+                }
+            });
+            final List<Long> intersection = expectedGroupResult(input1, input2,
+                    (group1, group2, result) -> result.addAll(group1.subList(0, Math.min(group1.size(), group2.size()))));
+            final List<Long> difference = expectedGroupResult(input1, input2,
+                    (group1, group2, result) -> result.addAll(group1.subList(Math.min(group1.size(), group2.size()), group1.size())));
+            final List<Long> distinct = expectedGroupResult(input1, empty, (group1, group2, result) -> result.add(group1.get(0)));
+            if (!Arrays.equals(union.toArray(), operations.union(input1, input2))
+                    || !Arrays.equals(intersection.toArray(), operations.intersection(input1, input2))
+                    || !Arrays.equals(difference.toArray(), operations.difference(input1, input2))
+                    || !Arrays.equals(distinct.toArray(), operations.distinct(input1))) {
+                System.out.println(">>> Incorrect multiset operation result with inputs of " + input1.length + " and " + input2.length + " elements!");
+                return;
+            }
+        }
+        System.out.println("Running the merge-join");
+        // Shorter arrays and a smaller shared key group, since the equal keys are joined with each other.
+        final Long[] joined1 = sortedKeyedArray(12000, 2000, 50, 1);
+        final Long[] joined2 = sortedKeyedArray(10000, 2000, 50, 2);
+        final List<Long[]> join = expectedGroupResult(joined1, joined2, (group1, group2, result) -> {
+            for (final Long element1 : group1) {
+                for (final Long element2 : group2) {
+                    result.add(new Long[] { element1, element2 });
+                }
+            }
+        });
+        final Long[][] actualJoin = operations.mergeJoin(joined1, joined2, (element1, element2) -> new Long[] { element1, element2 }, Long[][]::new);
+        if (!Arrays.deepEquals(join.toArray(), actualJoin)) {
+            System.out.println(">>> Incorrect merge-join result!");
+            return;
+        }
+        System.out.println("Operations verified, " + actualJoin.length + " joined pairs");
+    }
+
+    /**
+     * Sorts 24-byte records by keys of 3 and 12 bytes, in heap and direct buffers, both in place and into
+     * a target buffer. Each record holds its original index before the key and a payload derived from it
+     * after the key. The key bytes are taken from a few values around the sign boundary, so many records
+     * share their prefixes and the unsigned order is exercised. Every output record must be byte for byte
+     * the record expected by a stable sort of the original ones, and the bytes outside the position and
+     * the limit of the buffers must not change.
+     */
+    private static void testRecordBufferSort(final ExecutorService executor) {
+        final Random random = new Random();
+        final RecordBufferSort recordBufferSort = new RecordBufferSort(executor);
+        final int recordLength = 24;
+        final int keyOffset = 4;
+        final int records = VERIFICATION_ARRAY_SIZE / 4;
+        final byte[] keyBytes = { 0x00, 0x01, 0x7f, (byte) 0x80, (byte) 0xfe, (byte) 0xff };
+        final byte[] original = new byte[records * recordLength];
+        final ByteBuffer originalBuffer = ByteBuffer.wrap(original);
+        for (int record = 0; record < records; record++) {
+            originalBuffer.putInt(record);
+            for (int i = 0; i < 12; i++) {
+                originalBuffer.put(keyBytes[random.nextInt(keyBytes.length)]);
+            }
+            originalBuffer.putLong(record * 0x9E3779B97F4A7C15L);
+        }
+        // Spare bytes around the records, which must not be changed.
+        final int margin = 5;
+        for (final int keyLength : new int[] { 3, 12 }) {
+            final Integer[] expectedOrder = new Integer[records];
+            for (int record = 0; record < records; record++) {
+                expectedOrder[record] = record;
+            }
+            Arrays.sort(expectedOrder, (record1, record2) -> {
+                for (int i = keyOffset; i < keyOffset + keyLength; i++) {
+                    final int result = Integer.compare(original[record1 * recordLength + i] & 0xff, original[record2 * recordLength + i] & 0xff);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return 0;
+            });
+            final byte[] expected = new byte[original.length];
+            for (int record = 0; record < records; record++) {
+                System.arraycopy(original, expectedOrder[record] * recordLength, expected, record * recordLength, recordLength);
+            }
+            for (final boolean direct : new boolean[] { false, true }) {
+                for (final boolean inPlace : new boolean[] { true, false }) {
+                    System.out.println("Sorting " + records + " records by " + keyLength + "-byte keys " + (inPlace ? "in place" : "into a target")
+                            + " in " + (direct ? "direct" : "heap") + " buffers");
+                    final ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(original.length + 2 * margin) : ByteBuffer.allocate(original.length + 2 * margin);
+                    buffer.position(margin);
+                    buffer.put(original);
+                    buffer.position(margin).limit(margin + original.length);
+                    final ByteBuffer result;
+                    if (inPlace) {
+                        recordBufferSort.sort(buffer, recordLength, keyOffset, keyLength);
+                        result = buffer;
+                    } else {
+                        result = direct ? ByteBuffer.allocateDirect(original.length + 2 * margin) : ByteBuffer.allocate(original.length + 2 * margin);
+                        result.position(margin).limit(margin + original.length);
+                        recordBufferSort.sort(buffer, result, recordLength, keyOffset, keyLength);
+                    }
+                    if (buffer.position() != margin || buffer.limit() != margin + original.length
+                            || result.position() != margin || result.limit() != margin + original.length) {
+                        System.out.println(">>> Buffer position or limit changed!");
+                        return;
+                    }
+                    final ByteBuffer whole = result.duplicate();
+                    whole.clear();
+                    final byte[] actual = new byte[whole.remaining()];
+                    whole.get(actual);
+                    if (!Arrays.equals(expected, Arrays.copyOfRange(actual, margin, margin + original.length))) {
+                        System.out.println(">>> Incorrect records!");
+                        return;
+                    }
+                    if (!Arrays.equals(new byte[margin], Arrays.copyOf(actual, margin))
+                            || !Arrays.equals(new byte[margin], Arrays.copyOfRange(actual, margin + original.length, actual.length))) {
+                        System.out.println(">>> Bytes outside the records were changed!");
+                        return;
+                    }
+                }
+            }
+        }
+        System.out.println("Records verified");
+    }
+
+    /**
+     * Sorts regions of int, long, float and double arrays with the primitive multi-threaded sorts, using
+     * an odd number of slices so that a merge round also merges three partitions at once. The elements
+     * outside the regions must not be moved.
+     */
+    private static void testPrimitiveMultiThreadedSorts(final ExecutorService executor) {
+        final Random random = new Random();
+        final int[] ints = new int[VERIFICATION_ARRAY_SIZE];
+        final long[] longs = new long[ints.length];
+        final float[] floats = new float[ints.length];
+        final double[] doubles = new double[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = random.nextInt();
+            longs[i] = random.nextLong();
+            floats[i] = random.nextFloat() - 0.5f;
+            doubles[i] = random.nextGaussian();
+        }
+        final int position = 1000;
+        final int length = ints.length - 2000;
+        final int[] expectedInts = ints.clone();
+        final long[] expectedLongs = longs.clone();
+        final float[] expectedFloats = floats.clone();
+        final double[] expectedDoubles = doubles.clone();
+        Arrays.sort(expectedInts, position, position + length);
+        Arrays.sort(expectedLongs, position, position + length);
+        Arrays.sort(expectedFloats, position, position + length);
+        Arrays.sort(expectedDoubles, position, position + length);
+        System.out.println("Sorting regions of " + length + " elements in 7 slices");
+        new IntMultiThreadedSort(new IntQuickSort(), executor).sort(ints, position, length, 7);
+        new LongMultiThreadedSort(new LongQuickSort(), executor).sort(longs, position, length, 7);
+        new FloatMultiThreadedSort(new FloatQuickSort(), executor).sort(floats, position, length, 7);
+        new DoubleMultiThreadedSort(new DoubleQuickSort(), executor).sort(doubles, position, length, 7);
+        if (!Arrays.equals(expectedInts, ints) || !Arrays.equals(expectedLongs, longs)
+                || !Arrays.equals(expectedFloats, floats) || !Arrays.equals(expectedDoubles, doubles)) {
+            System.out.println(">>> Incorrect order!");
+            return;
+        }
+        System.out.println("Arrays verified");
+    }
+
+    /**
+     * Sorts int and long arrays whose elements share their most significant digits with the MSD radix
+     * sort: non-negative values below 2^24, negative values above -2^20, a constant array and an array
+     * where half of the elements are equal. The executor counts its tasks: after the first digit, which
+     * is the same for all the elements of the first arrays, the next digit must still be distributed
+     * in parallel instead of leaving the single bucket to one task.
+     */
+    private static void testMostSignificantDigitFirstRadixSort(final ExecutorService executor) {
+        final Random random = new Random();
+        final AtomicInteger tasks = new AtomicInteger();
+        final Executor countingExecutor = task -> {
+            tasks.incrementAndGet();
+            executor.execute(task);
+        };
+        final int slices = 8;
+        final IntRadixSort intRadixSort = new IntRadixSort(countingExecutor, RadixSortStrategy.MOST_SIGNIFICANT_DIGIT_FIRST);
+        final LongRadixSort longRadixSort = new LongRadixSort(countingExecutor, RadixSortStrategy.MOST_SIGNIFICANT_DIGIT_FIRST);
+        final String[] inputs = { "values below 2^24", "values above -2^20", "constant", "half equal" };
+        for (int input = 0; input < inputs.length; input++) {
+            System.out.println("Sorting " + inputs[input] + " arrays");
+            final int[] ints = new int[VERIFICATION_ARRAY_SIZE];
+            for (int i = 0; i < ints.length; i++) {
+                switch (input) {
+                case 0: ints[i] = random.nextInt(1 << 24); break;
+                case 1: ints[i] = -random.nextInt(1 << 20) - 1; break;
+                case 2: ints[i] = 42; break;
+                default: ints[i] = random.nextBoolean() ? 42 : random.nextInt(); break;
+                }
+            }
+            final long[] longs = new long[ints.length];
+            for (int i = 0; i < ints.length; i++) {
+                longs[i] = ints[i];
+            }
+            final int[] expectedInts = ints.clone();
+            final long[] expectedLongs = longs.clone();
+            Arrays.sort(expectedInts);
+            Arrays.sort(expectedLongs);
+            tasks.set(0);
+            intRadixSort.sort(ints, 0, ints.length, slices);
+            final int intTasks = tasks.getAndSet(0);
+            longRadixSort.sort(longs, 0, longs.length, slices);
+            final int longTasks = tasks.get();
+            if (!Arrays.equals(expectedInts, ints) || !Arrays.equals(expectedLongs, longs)) {
+                System.out.println(">>> Incorrect order!");
+                return;
+            }
+            if (input < 2 && (intTasks <= 2 * slices || longTasks <= 2 * slices)) {
+                System.out.println(">>> Only " + intTasks + " and " + longTasks + " tasks, the shared digits were not followed by a parallel pass!");
+                return;
+            }
+        }
+        System.out.println("Arrays verified");
+    }
+
+    /**
+     * Sorts inputs that degrade a quick sort with a poorly chosen pivot: sorted, reverse sorted,
+     * constant and low cardinality arrays, besides random ones.
+     */
+    private static void testPrimitiveQuickSorts() {
+        final Random random = new Random();
+        final String[] inputs = { "random", "sorted", "reverse sorted", "constant", "low cardinality" };
+        for (int input = 0; input < inputs.length; input++) {
+            System.out.println("Sorting " + inputs[input] + " arrays");
+            final int[] ints = new int[VERIFICATION_ARRAY_SIZE];
+            for (int i = 0; i < ints.length; i++) {
+                switch (input) {
+                case 0: ints[i] = random.nextInt(); break;
+                case 1: ints[i] = i; break;
+                case 2: ints[i] = ints.length - i; break;
+                case 3: ints[i] = 42; break;
+                default: ints[i] = random.nextInt(4); break;
+                }
+            }
+            final long[] longs = new long[ints.length];
+            final float[] floats = new float[ints.length];
+            final double[] doubles = new double[ints.length];
+            for (int i = 0; i < ints.length; i++) {
+                longs[i] = ints[i] * 0x100000001L;
+                floats[i] = ints[i] / 3.0f;
+                doubles[i] = ints[i] / 3.0;
+            }
+            final int[] expectedInts = ints.clone();
+            final long[] expectedLongs = longs.clone();
+            final float[] expectedFloats = floats.clone();
+            final double[] expectedDoubles = doubles.clone();
+            Arrays.sort(expectedInts);
+            Arrays.sort(expectedLongs);
+            Arrays.sort(expectedFloats);
+            Arrays.sort(expectedDoubles);
+            new IntQuickSort().sort(ints);
+            new LongQuickSort().sort(longs);
+            new FloatQuickSort().sort(floats);
+            new DoubleQuickSort().sort(doubles);
+            if (!Arrays.equals(expectedInts, ints) || !Arrays.equals(expectedLongs, longs)
+                    || !Arrays.equals(expectedFloats, floats) || !Arrays.equals(expectedDoubles, doubles)) {
+                System.out.println(">>> Incorrect order!");
+                return;
+            }
+        }
+        System.out.println("Arrays verified");
+    }
+
+    /**
+     * Sorts only regions long enough for the parallel path and checks that the calibration profile
+     * received the measured costs, both in the stable and in the unstable modes.
+     */
+    private static void testAutoTuningCalibration(final ExecutorService executor) {
+        for (final boolean stable : new boolean[] { true, false }) {
+            System.out.println("Sorting with stable = " + stable);
+            final AutoTuningSort<Integer> sortingAlgorithm = new AutoTuningSort<Integer>(Comparator.naturalOrder(), executor, stable);
+            for (int round = 0; round < 4; round++) {
+                final Integer[] source = randomIntegers(VERIFICATION_ARRAY_SIZE, 0);
+                final Integer[] expected = source.clone();
+                Arrays.sort(expected);
+                sortingAlgorithm.sort(source);
+                if (!Arrays.equals(expected, source)) {
+                    System.out.println(">>> Incorrect order!");
+                    return;
+                }
+            }
+            try {
+                final Path profileDirectory = Files.createTempDirectory("profile");
+                final Path profileFile = profileDirectory.resolve("profile.properties");
+                final Properties profile = new Properties();
+                try {
+                    // Saved twice, so the second save replaces an existing profile.
+                    sortingAlgorithm.saveProfile(profileFile);
+                    sortingAlgorithm.saveProfile(profileFile);
+                    try (InputStream inputStream = Files.newInputStream(profileFile)) {
+                        profile.load(inputStream);
+                    }
+                    try (Stream<Path> files = Files.list(profileDirectory)) {
+                        if (files.count() != 1) {
+                            System.out.println(">>> Temporary profile files were left behind!");
+                            return;
+                        }
+                    }
+                } finally {
+                    Files.deleteIfExists(profileFile);
+                    Files.delete(profileDirectory);
+                }
+                if (!profile.stringPropertyNames().stream().anyMatch(name -> name.startsWith("cost."))) {
+                    System.out.println(">>> No cost was measured!");
+                    return;
+                }
+                System.out.println("Profile: " + profile);
+            } catch (IOException e) {
+                System.out.println(">>> Profile could not be saved: " + e);
+                return;
+            }
+        }
+        System.out.println("Calibration verified");
+    }
+
+    /**
+     * Record codec for longs. Throws after the given number of writes, or never when it is negative.
+     */
+    private static RecordCodec<Long> longCodec(final int failingWrite) {
+        final AtomicInteger writes = new AtomicInteger();
+        return new RecordCodec<Long>() {
+            @Override
+            public int getRecordLength() {
+                return Long.BYTES;
+            }
+            @Override
+            public Long read(final ByteBuffer buffer) {
+                return buffer.getLong();
+            }
+            @Override
+            public void write(final Long record, final ByteBuffer buffer) {
+                if (writes.incrementAndGet() == failingWrite) {
+                    throw new IllegalStateException("Simulated failure");
+                }
+                buffer.putLong(record);
+            }
+        };
+    }
+
+    /**
+     * Sorts a file with runs of a thousand records and a merge fan-in of four, so that the runs are
+     * spilled and merged in several passes. Each record holds a key in its upper half and its original
+     * position in the lower one, so a stable sort by key yields the natural order of the records.
+     * Checks the order and that no run file is left behind, also when the sort fails while writing
+     * the runs or while merging them.
+     */
+    private static void testExternalSort() {
+        final int records = 100003;
+        final Random random = new Random();
+        final long[] original = new long[records];
+        for (int i = 0; i < records; i++) {
+            original[i] = ((long) random.nextInt(1000) << 32) | i;
+        }
+        final Comparator<Long> keyComparator = Comparator.comparingLong(record -> record >>> 32);
+        try {
+            final Path directory = Files.createTempDirectory("external-sort");
+            final Path input = Files.createTempFile("input", ".bin");
+            final Path output = Files.createTempFile("output", ".bin");
+            try {
+                final ByteBuffer inputBytes = ByteBuffer.allocate(records * Long.BYTES);
+                inputBytes.asLongBuffer().put(original);
+                Files.write(input, inputBytes.array());
+                for (final int failingWrite : new int[] { -1, records / 20, records + records / 2 }) {
+                    final ExternalSort<Long> externalSort = new ExternalSort<>(longCodec(failingWrite), new MergeSort<Long>(keyComparator));
+                    externalSort.setRunLength(1000);
+                    externalSort.setMergeFanIn(4);
+                    externalSort.setBufferSize(256);
+                    externalSort.setTemporaryDirectory(directory);
+                    System.out.println(failingWrite < 0 ? "Sorting " + records + " records" : "Failing after " + failingWrite + " writes");
+                    try {
+                        externalSort.sort(input, output);
+                        if (failingWrite >= 0) {
+                            System.out.println(">>> The failure was not reported!");
+                            return;
+                        }
+                        final LongBuffer sorted = ByteBuffer.wrap(Files.readAllBytes(output)).asLongBuffer();
+                        final long[] actual = new long[sorted.remaining()];
+                        sorted.get(actual);
+                        final long[] expected = original.clone();
+                        Arrays.sort(expected);
+                        if (!Arrays.equals(expected, actual)) {
+                            System.out.println(">>> Incorrect order!");
+                            return;
+                        }
+                    } catch (RuntimeException e) {
+                        // Failures of the I/O thread are wrapped in a SortingException.
+                        if (failingWrite < 0) {
+                            throw e;
+                        }
+                    }
+                    try (Stream<Path> leftovers = Files.list(directory)) {
+                        if (leftovers.findAny().isPresent()) {
+                            System.out.println(">>> Run files were left behind!");
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(input);
+                Files.deleteIfExists(output);
+                Files.deleteIfExists(directory);
+            }
+        } catch (IOException e) {
+            System.out.println(">>> External sort failed: " + e);
+            return;
+        }
+        System.out.println("External sort verified");
+    }
+
     public static void main(String[] args) {
 
         System.out.println("---- Single threaded merge sort ----");
         testSortingAlgorithm(new MergeSort<Integer>(Comparator.naturalOrder()));
         System.out.println();
 
+        System.out.println("---- Single threaded adaptive merge sort ----");
+        testSortingAlgorithm(new AdaptiveMergeSort<Integer>(Comparator.naturalOrder()));
+        System.out.println();
+
         System.out.println("---- Single threaded Arrays.sort ----");
         testSortingAlgorithm(new DefaultArraySort<Integer>(Comparator.naturalOrder()));
         System.out.println();
@@ -52,12 +1031,37 @@ public class SortingTest {
         testSortingAlgorithm(new QuickSort<Integer>(Comparator.naturalOrder()));
         System.out.println();
 
+        System.out.println("---- Single threaded introsort ----");
+        testSortingAlgorithm(new IntroSort<Integer>(Comparator.naturalOrder()));
+        System.out.println();
+
+        System.out.println("---- Fork-join introsort ----");
+        testSortingAlgorithm(new IntroSort<Integer>(Comparator.naturalOrder(), ForkJoinPool.commonPool()));
+        System.out.println();
+
+        System.out.println("---- Fork-join merge sort ----");
+        testSortingAlgorithm(new ForkJoinMergeSort<Integer>(Comparator.naturalOrder()));
+        System.out.println();
+
         ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
 
         System.out.println("---- Multi threaded merge sort ----");
         testSortingAlgorithm(new MultiThreadedSort<>(new MergeSort<Integer>(Comparator.naturalOrder()), executor));
         System.out.println();
 
+        System.out.println("---- Multi threaded merge sort with statistics ----");
+        final CountingComparator<Integer> countingComparator = new CountingComparator<Integer>(Comparator.naturalOrder());
+        final MultiThreadedSort<Integer> instrumentedSort = new MultiThreadedSort<>(new MergeSort<>(countingComparator), executor);
+        final SortStatistics statistics = new SortStatistics();
+        instrumentedSort.setSortListener(statistics);
+        testSortingAlgorithm(instrumentedSort);
+        System.out.println("Statistics: " + statistics.snapshot());
+        System.out.println();
+
+        System.out.println("---- Multi threaded adaptive merge sort ----");
+        testSortingAlgorithm(new MultiThreadedSort<>(new AdaptiveMergeSort<Integer>(Comparator.naturalOrder()), executor));
+        System.out.println();
+
         System.out.println("---- Multi threaded Arrays.sort ----");
         testSortingAlgorithm(new MultiThreadedSort<>(new DefaultArraySort<Integer>(Comparator.naturalOrder()), executor));
         System.out.println();
@@ -66,6 +1070,111 @@ public class SortingTest {
         testSortingAlgorithm(new MultiThreadedSort<>(new QuickSort<Integer>(Comparator.naturalOrder()), executor));
         System.out.println();
 
+        System.out.println("---- Multi threaded sample sort with Arrays.sort ----");
+        testSortingAlgorithm(new MultiThreadedSort<>(new DefaultArraySort<Integer>(Comparator.naturalOrder()), executor, MultiThreadedSortStrategy.SAMPLE_SORT));
+        System.out.println();
+
+        System.out.println("---- Multi threaded k-way merge with Arrays.sort ----");
+        testSortingAlgorithm(new MultiThreadedSort<>(new DefaultArraySort<Integer>(Comparator.naturalOrder()), executor, MultiThreadedSortStrategy.K_WAY_MERGE));
+        System.out.println();
+
+        System.out.println("---- Multi threaded sample sort on low cardinality arrays ----");
+        testSampleSortLowCardinality(executor);
+        System.out.println();
+
+        System.out.println("---- Multi threaded k-way merge on low cardinality arrays ----");
+        testKWayMergeLowCardinality();
+        System.out.println();
+
+        System.out.println("---- Multi threaded segmented sort ----");
+        testSortSegments(executor);
+        System.out.println();
+
+        System.out.println("---- Asynchronous multi threaded merge sort ----");
+        testAsyncSort(MultiThreadedSortStrategy.PAIRWISE_MERGE);
+        System.out.println();
+
+        System.out.println("---- Asynchronous multi threaded sample sort ----");
+        testAsyncSort(MultiThreadedSortStrategy.SAMPLE_SORT);
+        System.out.println();
+
+        System.out.println("---- Auto-tuning sort ----");
+        testSortingAlgorithm(new AutoTuningSort<Integer>(Comparator.naturalOrder(), executor));
+        System.out.println();
+
+        System.out.println("---- Auto-tuning sort calibration ----");
+        testAutoTuningCalibration(executor);
+        System.out.println();
+
+        System.out.println("---- External merge sort ----");
+        testExternalSort();
+        System.out.println();
+
+        System.out.println("---- Multi threaded selection: top 1000 elements ----");
+        testTopK(new ParallelSelection<>(new DefaultArraySort<Integer>(Comparator.naturalOrder()), executor), 1000);
+        System.out.println();
+
+        System.out.println("---- Selection against an adversarial comparator ----");
+        testSelectionAdversary(executor);
+        System.out.println();
+
+        System.out.println("---- Multi threaded key extraction radix sort ----");
+        final KeyExtractionSort keyExtractionSort = new KeyExtractionSort(executor);
+        testSortingAlgorithm((elements, position, length) -> keyExtractionSort.sortByInt(elements, position, length, Integer::intValue));
+        System.out.println();
+
+        System.out.println("---- Sorted append buffer ----");
+        testSortedAppendBuffer(executor);
+        System.out.println();
+
+        System.out.println("---- Multi threaded sorted array operations ----");
+        testSortedArrayOperations(executor);
+        System.out.println();
+
+        System.out.println("---- Multi threaded columnar sort ----");
+        testColumnarSort(executor);
+        System.out.println();
+
+        System.out.println("---- Multi threaded record buffer sort ----");
+        testRecordBufferSort(executor);
+        System.out.println();
+
+        System.out.println("---- Single threaded primitive int merge sort ----");
+        testIntSortingAlgorithm(new IntMergeSort());
+        System.out.println();
+
+        System.out.println("---- Single threaded primitive int quick sort ----");
+        testIntSortingAlgorithm(new IntQuickSort());
+        System.out.println();
+
+        System.out.println("---- Single threaded primitive quick sorts on adversarial inputs ----");
+        testPrimitiveQuickSorts();
+        System.out.println();
+
+        System.out.println("---- Multi threaded primitive int merge sort ----");
+        testIntSortingAlgorithm(new IntMultiThreadedSort(new IntMergeSort(), executor));
+        System.out.println();
+
+        System.out.println("---- Multi threaded primitive int quick sort ----");
+        testIntSortingAlgorithm(new IntMultiThreadedSort(new IntQuickSort(), executor));
+        System.out.println();
+
+        System.out.println("---- Multi threaded primitive sorts of every type ----");
+        testPrimitiveMultiThreadedSorts(executor);
+        System.out.println();
+
+        System.out.println("---- Multi threaded LSD radix sort ----");
+        testIntSortingAlgorithm(new IntRadixSort(executor));
+        System.out.println();
+
+        System.out.println("---- Multi threaded MSD radix sort ----");
+        testIntSortingAlgorithm(new IntRadixSort(executor, RadixSortStrategy.MOST_SIGNIFICANT_DIGIT_FIRST));
+        System.out.println();
+
+        System.out.println("---- Multi threaded MSD radix sorts on shared high digits ----");
+        testMostSignificantDigitFirstRadixSort(executor);
+        System.out.println();
+
         executor.shutdownNow();
 
     }
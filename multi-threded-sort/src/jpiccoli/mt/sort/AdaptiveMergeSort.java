@@ -0,0 +1,344 @@
+package jpiccoli.mt.sort;
+
+import java.util.Comparator;
+
+/**
+ * Adaptive, stable merge sort that takes advantage of the order already present in the input.
+ * The array region is scanned for natural runs: ascending runs are kept as they are and strictly
+ * descending runs are reversed. Runs shorter than a minimum length are extended with binary
+ * insertion sort. The runs are kept in a stack and merged so that merged runs have similar
+ * lengths, and the merges use galloping (exponential search) to copy long sequences of
+ * elements from the same run at once.
+ * <p>
+ * An already sorted region is recognized as a single run and sorted with length - 1 comparisons,
+ * and regions with few out-of-order elements are sorted in close to linear time.
+ * The algorithm can be used as the per-slice algorithm of {@link MultiThreadedSort}.
+ *
+ * @author Juliano Piccoli
+ */
+public class AdaptiveMergeSort<T> extends AbstractSortingAlgorithm<T> {
+
+	// Runs shorter than this are extended with binary insertion sort.
+	private static final int MINIMUM_MERGE = 32;
+	// Number of consecutive elements taken from the same run before switching to galloping mode.
+	private static final int MINIMUM_GALLOP = 7;
+
+	private final ScratchBufferPool bufferPool;
+
+	public AdaptiveMergeSort(final Comparator<T> comparator) {
+		this(comparator, ScratchBufferPool.NONE);
+	}
+
+	/**
+	 * Creates an instance that borrows its auxiliary array from the specified pool.
+	 * @param comparator The comparator.
+	 * @param bufferPool The pool of auxiliary arrays.
+	 */
+	public AdaptiveMergeSort(final Comparator<T> comparator, final ScratchBufferPool bufferPool) {
+		super(comparator);
+		this.bufferPool = bufferPool;
+	}
+
+	@Override
+	public void sort(final T[] elements, final int position, final int length) {
+
+		if (length < 2) {
+			return;
+		}
+
+		final int end = position + length;
+		final int minimumRunLength = minimumRunLength(length);
+		final int[] runPositions = new int[49];
+		final int[] runLengths = new int[49];
+		int runs = 0;
+		T[] buffer = null;
+
+		int index = position;
+		while (index < end) {
+			int runLength = countRunAndMakeAscending(elements, index, end);
+			if (runLength < minimumRunLength) {
+				final int extendedLength = Math.min(minimumRunLength, end - index);
+				binaryInsertionSort(elements, index, index + extendedLength, index + runLength);
+				runLength = extendedLength;
+			}
+			runPositions[runs] = index;
+			runLengths[runs] = runLength;
+			runs++;
+			index += runLength;
+
+			// The run stack is collapsed until the lengths of the topmost runs decrease faster
+			// than the Fibonacci sequence, which keeps the merges balanced and the stack short.
+			while (runs > 1) {
+				int mergeIndex = runs - 2;
+				if ((mergeIndex > 0 && runLengths[mergeIndex - 1] <= runLengths[mergeIndex] + runLengths[mergeIndex + 1])
+						|| (mergeIndex > 1 && runLengths[mergeIndex - 2] <= runLengths[mergeIndex - 1] + runLengths[mergeIndex])) {
+					if (runLengths[mergeIndex - 1] < runLengths[mergeIndex + 1]) {
+						mergeIndex--;
+					}
+				} else if (runLengths[mergeIndex] > runLengths[mergeIndex + 1]) {
+					break;
+				}
+				buffer = mergeRuns(elements, runPositions, runLengths, mergeIndex, buffer);
+				runs = removeRun(runPositions, runLengths, runs, mergeIndex);
+			}
+		}
+
+		while (runs > 1) {
+			int mergeIndex = runs - 2;
+			if (mergeIndex > 0 && runLengths[mergeIndex - 1] < runLengths[mergeIndex + 1]) {
+				mergeIndex--;
+			}
+			buffer = mergeRuns(elements, runPositions, runLengths, mergeIndex, buffer);
+			runs = removeRun(runPositions, runLengths, runs, mergeIndex);
+		}
+
+		if (buffer != null) {
+			bufferPool.release(buffer, buffer.length);
+		}
+
+	}
+
+	/**
+	 * Computes the minimum run length: a value between MINIMUM_MERGE / 2 and MINIMUM_MERGE for which
+	 * length / minimumRunLength is a power of two or slightly less than one, so the final merges are balanced.
+	 */
+	private static int minimumRunLength(int length) {
+		int remainder = 0;
+		while (length >= MINIMUM_MERGE) {
+			remainder |= length & 1;
+			length >>= 1;
+		}
+		return length + remainder;
+	}
+
+	/**
+	 * Finds the length of the run starting at the specified index. A strictly descending run is
+	 * reversed in place, so that equal elements never change their relative order.
+	 * @return Length of the run.
+	 */
+	private int countRunAndMakeAscending(final T[] elements, final int position, final int end) {
+		int index = position + 1;
+		if (index == end) {
+			return 1;
+		}
+		if (comparator.compare(elements[index], elements[position]) < 0) {
+			index++;
+			while (index < end && comparator.compare(elements[index], elements[index - 1]) < 0) {
+				index++;
+			}
+			reverse(elements, position, index);
+		} else {
+			index++;
+			while (index < end && comparator.compare(elements[index], elements[index - 1]) >= 0) {
+				index++;
+			}
+		}
+		return index - position;
+	}
+
+	private static <T> void reverse(final T[] elements, int low, int high) {
+		high--;
+		while (low < high) {
+			final T element = elements[low];
+			elements[low] = elements[high];
+			elements[high] = element;
+			low++;
+			high--;
+		}
+	}
+
+	/**
+	 * Sorts the interval [position, end) with binary insertion sort, given that the interval
+	 * [position, sortedEnd) is already sorted.
+	 */
+	private void binaryInsertionSort(final T[] elements, final int position, final int end, final int sortedEnd) {
+		for (int index = sortedEnd; index < end; index++) {
+			final T element = elements[index];
+			int low = position;
+			int high = index;
+			// Equal elements are inserted after the existing ones to keep the sort stable.
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (comparator.compare(element, elements[middle]) < 0) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			System.arraycopy(elements, low, elements, low + 1, index - low);
+			elements[low] = element;
+		}
+	}
+
+	private static int removeRun(final int[] runPositions, final int[] runLengths, final int runs, final int mergeIndex) {
+		runLengths[mergeIndex] += runLengths[mergeIndex + 1];
+		if (mergeIndex == runs - 3) {
+			runPositions[mergeIndex + 1] = runPositions[mergeIndex + 2];
+			runLengths[mergeIndex + 1] = runLengths[mergeIndex + 2];
+		}
+		return runs - 1;
+	}
+
+	/**
+	 * Merges the runs at the specified stack index and at the following one. Elements of the
+	 * first run that are already in place, and elements of the second run that are already in
+	 * place, are found by galloping and excluded from the merge. Only the first run is copied to
+	 * the auxiliary buffer.
+	 * @return The auxiliary buffer, which may have been replaced by a longer one.
+	 */
+	private T[] mergeRuns(final T[] elements, final int[] runPositions, final int[] runLengths, final int mergeIndex, T[] buffer) {
+
+		int position1 = runPositions[mergeIndex];
+		int length1 = runLengths[mergeIndex];
+		final int position2 = runPositions[mergeIndex + 1];
+		int length2 = runLengths[mergeIndex + 1];
+
+		// Elements of the first run that are not greater than the first element of the second run are already in place.
+		final int skipped = gallopRight(elements[position2], elements, position1, length1);
+		position1 += skipped;
+		length1 -= skipped;
+		if (length1 == 0) {
+			return buffer;
+		}
+		// Elements of the second run that are not less than the last element of the first run are already in place.
+		length2 = gallopLeft(elements[position1 + length1 - 1], elements, position2, length2);
+		if (length2 == 0) {
+			return buffer;
+		}
+
+		if (buffer == null || buffer.length < length1) {
+			if (buffer != null) {
+				bufferPool.release(buffer, buffer.length);
+			}
+			buffer = bufferPool.borrow(length1);
+		}
+		System.arraycopy(elements, position1, buffer, 0, length1);
+
+		int bufferIndex = 0;
+		final int bufferEnd = length1;
+		int index2 = position2;
+		final int end2 = position2 + length2;
+		int destination = position1;
+		int minimumGallop = MINIMUM_GALLOP;
+
+		outer:
+		while (true) {
+			// One element at a time, counting how many times in a row each run wins.
+			int wins1 = 0;
+			int wins2 = 0;
+			do {
+				if (comparator.compare(elements[index2], buffer[bufferIndex]) < 0) {
+					elements[destination++] = elements[index2++];
+					wins2++;
+					wins1 = 0;
+					if (index2 == end2) {
+						break outer;
+					}
+				} else {
+					elements[destination++] = buffer[bufferIndex++];
+					wins1++;
+					wins2 = 0;
+					if (bufferIndex == bufferEnd) {
+						break outer;
+					}
+				}
+			} while ((wins1 | wins2) < minimumGallop);
+
+			// Galloping: the position of the next element of each run is searched in the other
+			// run and all the elements before it are copied at once.
+			do {
+				wins1 = gallopRight(elements[index2], buffer, bufferIndex, bufferEnd - bufferIndex);
+				if (wins1 != 0) {
+					System.arraycopy(buffer, bufferIndex, elements, destination, wins1);
+					destination += wins1;
+					bufferIndex += wins1;
+					if (bufferIndex == bufferEnd) {
+						break outer;
+					}
+				}
+				elements[destination++] = elements[index2++];
+				if (index2 == end2) {
+					break outer;
+				}
+				wins2 = gallopLeft(buffer[bufferIndex], elements, index2, end2 - index2);
+				if (wins2 != 0) {
+					System.arraycopy(elements, index2, elements, destination, wins2);
+					destination += wins2;
+					index2 += wins2;
+					if (index2 == end2) {
+						break outer;
+					}
+				}
+				elements[destination++] = buffer[bufferIndex++];
+				if (bufferIndex == bufferEnd) {
+					break outer;
+				}
+				minimumGallop--;
+			} while (wins1 >= MINIMUM_GALLOP || wins2 >= MINIMUM_GALLOP);
+			minimumGallop = Math.max(minimumGallop, 0) + 2;
+		}
+
+		// Remaining elements of the second run are already in place.
+		if (bufferIndex < bufferEnd) {
+			System.arraycopy(buffer, bufferIndex, elements, destination, bufferEnd - bufferIndex);
+		}
+		return buffer;
+
+	}
+
+	/**
+	 * Counts the elements of the sorted interval that are less than the key, using exponential
+	 * search followed by binary search.
+	 */
+	private int gallopLeft(final T key, final T[] elements, final int position, final int length) {
+		int lastOffset = 0;
+		int offset = 1;
+		while (offset <= length && comparator.compare(elements[position + offset - 1], key) < 0) {
+			lastOffset = offset;
+			offset = offset * 2 + 1;
+			if (offset <= 0) {
+				offset = length;
+			}
+		}
+		int low = lastOffset;
+		int high = Math.min(offset, length);
+		// The answer is in the interval [low, high].
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (comparator.compare(elements[position + middle], key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Counts the elements of the sorted interval that are not greater than the key, using exponential
+	 * search followed by binary search.
+	 */
+	private int gallopRight(final T key, final T[] elements, final int position, final int length) {
+		int lastOffset = 0;
+		int offset = 1;
+		while (offset <= length && comparator.compare(elements[position + offset - 1], key) <= 0) {
+			lastOffset = offset;
+			offset = offset * 2 + 1;
+			if (offset <= 0) {
+				offset = length;
+			}
+		}
+		int low = lastOffset;
+		int high = Math.min(offset, length);
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (comparator.compare(elements[position + middle], key) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
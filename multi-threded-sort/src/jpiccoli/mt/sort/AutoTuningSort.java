@@ -0,0 +1,336 @@
+package jpiccoli.mt.sort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sorting facade that chooses, for each call, the sequential algorithm and whether (and in how many
+ * slices) the sort is executed by {@link MultiThreadedSort}. The choice is based on:
+ * <ul>
+ * <li>the length of the region: short regions are sorted by the calling thread, since handing
+ * work over to other threads would cost more than the sort itself;</li>
+ * <li>a cheap presortedness sample: regions that are mostly in ascending or descending order are
+ * sorted by {@link AdaptiveMergeSort}, which takes advantage of existing runs;</li>
+ * <li>the measured cost of the previous sorts: an exponentially weighted moving average of the time
+ * per n * log2(n) of every algorithm, and the speedup observed in parallel sorts, which moves the
+ * length from which the parallel sort is used. The costs are measured on sequential sorts and on
+ * each slice of the parallel sorts, so a workload made only of long regions is calibrated too.
+ * Sorts of presorted regions are not measured, since they would make the adaptive merge sort look
+ * cheaper than it is on unordered regions.</li>
+ * </ul>
+ * The measurements form a small calibration profile that can be saved to and loaded from a
+ * properties file. When a profile file is provided to the constructor, the profile is loaded from it
+ * and saved back periodically, so a new process starts from the values learned by the previous one.
+ * <p>
+ * When created as stable (the default), only stable algorithms are chosen, so the result is the
+ * same as the one of {@link java.util.Arrays#sort(Object[], Comparator)}. The measured costs then
+ * choose between {@link java.util.Arrays#sort(Object[], Comparator)} and {@link AdaptiveMergeSort}:
+ * {@link IntroSort}, which is not stable, is only a candidate of the instances created as not stable.
+ *
+ * @author Juliano Piccoli
+ */
+public class AutoTuningSort<T> extends AbstractSortingAlgorithm<T> {
+
+	private enum Candidate {
+		ADAPTIVE_MERGE, ARRAYS, INTROSORT
+	}
+
+	// Weight of the newest measurement in the moving averages.
+	private static final double SMOOTHING = 0.2;
+	// Regions shorter than this are always sorted sequentially and are not measured, since the timer resolution would dominate.
+	private static final int MINIMUM_MEASURED_LENGTH = 1 << 12;
+	private static final int MINIMUM_PARALLEL_THRESHOLD = 1 << 12;
+	private static final int MAXIMUM_PARALLEL_THRESHOLD = 1 << 26;
+	private static final int SAMPLED_PAIRS = 64;
+	// Fraction of sampled descents (or ascents) below which a region is considered presorted.
+	private static final double PRESORTED_RATIO = 0.1;
+
+	// Number of measurements between two automatic saves of the profile.
+	private static final int PROFILE_SAVE_INTERVAL = 64;
+
+	private static final String PARALLEL_THRESHOLD_PROPERTY = "parallelThreshold";
+	private static final String COST_PROPERTY_PREFIX = "cost.";
+
+	private final boolean stable;
+	private final int processors;
+	private final Executor executor;
+	private final Path profileFile;
+	private final AtomicBoolean profileSaveInProgress = new AtomicBoolean();
+	private final Map<Candidate, SortingAlgorithm<T>> sequentialAlgorithms = new EnumMap<>(Candidate.class);
+	private final Map<Candidate, MultiThreadedSort<T>> parallelAlgorithms = new EnumMap<>(Candidate.class);
+	// Parallel sort of presorted regions, which reports no measurements.
+	private final MultiThreadedSort<T> presortedParallelAlgorithm;
+
+	// Calibration profile, guarded by 'this'.
+	private final double[] costs = new double[Candidate.values().length];
+	private int parallelThreshold = 1 << 15;
+	private int unsavedMeasurements;
+
+	public AutoTuningSort(final Comparator<T> comparator, final Executor executor) {
+		this(comparator, executor, true);
+	}
+
+	/**
+	 * @param comparator Comparator that defines the order of the elements.
+	 * @param executor Executor used by the parallel sorts.
+	 * @param stable Whether only stable algorithms can be chosen.
+	 */
+	public AutoTuningSort(final Comparator<T> comparator, final Executor executor, final boolean stable) {
+		this(comparator, executor, stable, null);
+	}
+
+	/**
+	 * Creates an instance whose calibration profile is kept in the specified file. The profile is loaded
+	 * from the file when it exists, and is saved to it by the executor after every few measurements.
+	 * Failures to read or write the file are ignored, since the profile only affects the performance.
+	 * @param comparator Comparator that defines the order of the elements.
+	 * @param executor Executor used by the parallel sorts and for saving the profile.
+	 * @param stable Whether only stable algorithms can be chosen.
+	 * @param profileFile Properties file containing the profile, or null for not persisting it.
+	 */
+	public AutoTuningSort(final Comparator<T> comparator, final Executor executor, final boolean stable, final Path profileFile) {
+		super(comparator);
+		this.stable = stable;
+		this.processors = Runtime.getRuntime().availableProcessors();
+		this.executor = executor;
+		this.profileFile = profileFile;
+		sequentialAlgorithms.put(Candidate.ADAPTIVE_MERGE, new AdaptiveMergeSort<>(comparator));
+		sequentialAlgorithms.put(Candidate.ARRAYS, new DefaultArraySort<>(comparator));
+		sequentialAlgorithms.put(Candidate.INTROSORT, new IntroSort<>(comparator));
+		for (final Candidate candidate : Candidate.values()) {
+			final MultiThreadedSort<T> parallelAlgorithm = new MultiThreadedSort<>(sequentialAlgorithms.get(candidate), comparator, executor);
+			// Each slice is a sequential sort by the candidate, so it is measured like one.
+			parallelAlgorithm.setSortListener(new SortListener() {
+				@Override
+				public void sliceSorted(final int slice, final int length, final long queueWaitNanos, final long runNanos) {
+					if (length >= MINIMUM_MEASURED_LENGTH) {
+						recordCost(candidate, length, runNanos);
+					}
+				}
+			});
+			parallelAlgorithms.put(candidate, parallelAlgorithm);
+		}
+		presortedParallelAlgorithm = new MultiThreadedSort<>(sequentialAlgorithms.get(Candidate.ADAPTIVE_MERGE), comparator, executor);
+		if (profileFile != null && Files.exists(profileFile)) {
+			try {
+				loadProfile(profileFile);
+			} catch (IOException e) {
+				// The sort starts without a profile.
+			}
+		}
+	}
+
+	@Override
+	public void sort(final T[] elements, final int position, final int length) {
+		if (length < 2) {
+			return;
+		}
+		final int slices = chooseSlices(length);
+		if (isPresorted(elements, position, length)) {
+			if (slices > 1) {
+				presortedParallelAlgorithm.sort(elements, position, length, slices);
+			} else {
+				sequentialAlgorithms.get(Candidate.ADAPTIVE_MERGE).sort(elements, position, length);
+			}
+			return;
+		}
+		final Candidate candidate = chooseCandidate(length);
+		final long startTimestamp = System.nanoTime();
+		if (slices > 1) {
+			parallelAlgorithms.get(candidate).sort(elements, position, length, slices);
+		} else {
+			sequentialAlgorithms.get(candidate).sort(elements, position, length);
+		}
+		if (length >= MINIMUM_MEASURED_LENGTH) {
+			final long elapsedNanos = System.nanoTime() - startTimestamp;
+			if (slices > 1) {
+				recordSpeedup(candidate, length, slices, elapsedNanos);
+			} else {
+				recordCost(candidate, length, elapsedNanos);
+			}
+		}
+	}
+
+	/**
+	 * Loads a calibration profile previously saved by {@link #saveProfile(Path)}. Missing or invalid
+	 * values keep their current values.
+	 * @param file Properties file containing the profile.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public void loadProfile(final Path file) throws IOException {
+		final Properties properties = new Properties();
+		try (InputStream inputStream = Files.newInputStream(file)) {
+			properties.load(inputStream);
+		}
+		synchronized (this) {
+			try {
+				final int threshold = Integer.parseInt(properties.getProperty(PARALLEL_THRESHOLD_PROPERTY, String.valueOf(parallelThreshold)));
+				parallelThreshold = Math.max(MINIMUM_PARALLEL_THRESHOLD, Math.min(MAXIMUM_PARALLEL_THRESHOLD, threshold));
+			} catch (NumberFormatException e) {
+				// The current value is kept.
+			}
+			for (final Candidate candidate : Candidate.values()) {
+				try {
+					final double cost = Double.parseDouble(properties.getProperty(COST_PROPERTY_PREFIX + candidate.name(), "0"));
+					if (cost > 0 && !Double.isInfinite(cost)) {
+						costs[candidate.ordinal()] = cost;
+					}
+				} catch (NumberFormatException e) {
+					// The current value is kept.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Saves the current calibration profile. The profile is written to a temporary file in the same
+	 * directory, which then replaces the file atomically.
+	 * @param file Properties file where the profile will be stored.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void saveProfile(final Path file) throws IOException {
+		final Properties properties = new Properties();
+		synchronized (this) {
+			properties.setProperty(PARALLEL_THRESHOLD_PROPERTY, String.valueOf(parallelThreshold));
+			for (final Candidate candidate : Candidate.values()) {
+				if (costs[candidate.ordinal()] > 0) {
+					properties.setProperty(COST_PROPERTY_PREFIX + candidate.name(), String.valueOf(costs[candidate.ordinal()]));
+				}
+			}
+		}
+		// The profile is written to a temporary file that replaces the previous one at once, so a failure
+		// while writing never leaves a truncated profile behind.
+		final Path absoluteFile = file.toAbsolutePath();
+		final Path temporaryFile = Files.createTempFile(absoluteFile.getParent(), absoluteFile.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+				properties.store(outputStream, "Calibration profile of " + AutoTuningSort.class.getName());
+			}
+			Files.move(temporaryFile, absoluteFile, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * Chooses the algorithm of a region which is not presorted: the candidate with the lowest measured
+	 * cost, among the stable ones when the instance is stable. Candidates not measured yet are tried first.
+	 */
+	private Candidate chooseCandidate(final int length) {
+		final Candidate alternative = stable ? Candidate.ADAPTIVE_MERGE : Candidate.INTROSORT;
+		if (length < MINIMUM_MEASURED_LENGTH) {
+			return stable ? Candidate.ARRAYS : Candidate.INTROSORT;
+		}
+		synchronized (this) {
+			final double arraysCost = costs[Candidate.ARRAYS.ordinal()];
+			final double alternativeCost = costs[alternative.ordinal()];
+			if (arraysCost == 0) {
+				return Candidate.ARRAYS;
+			} else if (alternativeCost == 0) {
+				return alternative;
+			}
+			return alternativeCost < arraysCost ? alternative : Candidate.ARRAYS;
+		}
+	}
+
+	/**
+	 * Compares pairs of adjacent elements at evenly spaced positions of the region. The region is
+	 * considered presorted when almost all the pairs are ascending or almost all are descending.
+	 */
+	private boolean isPresorted(final T[] elements, final int position, final int length) {
+		if (length < SAMPLED_PAIRS * 4) {
+			return false;
+		}
+		final int step = (length - 1) / SAMPLED_PAIRS;
+		int descents = 0;
+		int ascents = 0;
+		for (int pair = 0; pair < SAMPLED_PAIRS; pair++) {
+			final int index = position + pair * step;
+			final int result = comparator.compare(elements[index], elements[index + 1]);
+			if (result > 0) {
+				descents++;
+			} else if (result < 0) {
+				ascents++;
+			}
+		}
+		final int limit = (int) (SAMPLED_PAIRS * PRESORTED_RATIO);
+		return descents <= limit || ascents <= limit;
+	}
+
+	private int chooseSlices(final int length) {
+		final int threshold;
+		synchronized (this) {
+			threshold = parallelThreshold;
+		}
+		if (processors < 2 || length < threshold) {
+			return 1;
+		}
+		return Math.max(2, ParallelTasks.slices(length, processors));
+	}
+
+	/**
+	 * Updates the cost of the candidate with the measurement of a sequential sort or of a slice of a parallel sort.
+	 */
+	private synchronized void recordCost(final Candidate candidate, final int length, final long elapsedNanos) {
+		final double cost = elapsedNanos / work(length);
+		final int index = candidate.ordinal();
+		costs[index] = costs[index] == 0 ? cost : SMOOTHING * cost + (1 - SMOOTHING) * costs[index];
+		measurementRecorded();
+	}
+
+	/**
+	 * Updates the parallel threshold with the speedup of a parallel sort over the cost predicted for a sequential sort.
+	 */
+	private synchronized void recordSpeedup(final Candidate candidate, final int length, final int slices, final long elapsedNanos) {
+		final int index = candidate.ordinal();
+		if (costs[index] == 0) {
+			return;
+		}
+		final double speedup = costs[index] / (elapsedNanos / work(length));
+		if (speedup < 1.2) {
+			// The hand-off did not pay off at this length: parallel sorts start at longer regions.
+			parallelThreshold = (int) Math.min(MAXIMUM_PARALLEL_THRESHOLD, Math.max((long) parallelThreshold * 2, length * 2L));
+		} else if (speedup > slices * 0.5) {
+			parallelThreshold = Math.max(MINIMUM_PARALLEL_THRESHOLD, parallelThreshold - parallelThreshold / 4);
+		}
+		measurementRecorded();
+	}
+
+	private static double work(final int length) {
+		return length * (Math.log(length) / Math.log(2));
+	}
+
+	/**
+	 * Saves the profile to the profile file, if there is one, after every {@link #PROFILE_SAVE_INTERVAL} measurements.
+	 * The file is written by the executor, so the sorting thread does not wait for it.
+	 */
+	private void measurementRecorded() {
+		if (profileFile == null || ++unsavedMeasurements < PROFILE_SAVE_INTERVAL) {
+			return;
+		}
+		unsavedMeasurements = 0;
+		// Concurrent saves would interleave their writes to the file.
+		if (profileSaveInProgress.compareAndSet(false, true)) {
+			executor.execute(() -> {
+				try {
+					saveProfile(profileFile);
+				} catch (IOException e) {
+					// The profile is saved again after the next measurements.
+				} finally {
+					profileSaveInProgress.set(false);
+				}
+			});
+		}
+	}
+
+}
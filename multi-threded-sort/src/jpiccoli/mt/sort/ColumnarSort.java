@@ -0,0 +1,204 @@
+package jpiccoli.mt.sort;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Sorts columnar data, made of a primitive key column and any number of payload columns stored
+ * as separate arrays, without materializing row objects. The key column is sorted by a parallel
+ * radix sort along with the original row indexes, resulting in a permutation that is then applied
+ * to the payload columns in parallel.
+ * <p>
+ * The payload columns can be arrays of any primitive type or of objects. The sort is stable:
+ * rows with equal keys keep their relative order.
+ *
+ * @author Juliano Piccoli
+ * @see IntRadixSort#sort(int[], int[], int, int, int)
+ * @see LongRadixSort#sort(long[], int[], int, int, int)
+ */
+public class ColumnarSort {
+
+	private final Executor executor;
+	private final IntRadixSort intRadixSort;
+	private final LongRadixSort longRadixSort;
+
+	public ColumnarSort(final Executor executor) {
+		this.executor = executor;
+		this.intRadixSort = new IntRadixSort(executor);
+		this.longRadixSort = new LongRadixSort(executor);
+	}
+
+	/**
+	 * Sorts the key column and reorders the payload columns accordingly. The columns must be at least
+	 * as long as the key column. All the columns are checked before anything is reordered.
+	 * The first payload column is a separate parameter, so that a single array of objects is taken as
+	 * one column instead of as the array of columns.
+	 * @param keys Key column
+	 * @param column First payload column
+	 * @param otherColumns Other payload columns
+	 */
+	public void sort(final int[] keys, final Object column, final Object... otherColumns) {
+		checkColumns(keys.length, column, otherColumns);
+		permuteColumns(sortPermutation(keys, 0, keys.length), column, otherColumns);
+	}
+
+	/**
+	 * Sorts the key column and reorders the payload columns accordingly. The columns must be at least
+	 * as long as the key column. All the columns are checked before anything is reordered.
+	 * The first payload column is a separate parameter, so that a single array of objects is taken as
+	 * one column instead of as the array of columns.
+	 * @param keys Key column
+	 * @param column First payload column
+	 * @param otherColumns Other payload columns
+	 */
+	public void sort(final long[] keys, final Object column, final Object... otherColumns) {
+		checkColumns(keys.length, column, otherColumns);
+		permuteColumns(sortPermutation(keys, 0, keys.length), column, otherColumns);
+	}
+
+	/**
+	 * Sorts the specified interval of the key column and returns the permutation applied to it.
+	 * The i-th element of the permutation is the index, relative to 'position', that the i-th sorted
+	 * key had before the sort.
+	 * @param keys Key column
+	 * @param position Index of the first key to be sorted
+	 * @param length Number of keys to be sorted
+	 * @return The permutation, with 'length' elements
+	 */
+	public int[] sortPermutation(final int[] keys, final int position, final int length) {
+		final int[] permutation = identity(length);
+		if (length < 2) {
+			return permutation;
+		}
+		// The radix sort expects the companion values at the same indexes as their keys.
+		if (position == 0) {
+			intRadixSort.sort(keys, permutation, 0, length, ParallelTasks.slices(length));
+		} else {
+			final int[] regionKeys = Arrays.copyOfRange(keys, position, position + length);
+			intRadixSort.sort(regionKeys, permutation, 0, length, ParallelTasks.slices(length));
+			System.arraycopy(regionKeys, 0, keys, position, length);
+		}
+		return permutation;
+	}
+
+	/**
+	 * Sorts the specified interval of the key column and returns the permutation applied to it.
+	 * The i-th element of the permutation is the index, relative to 'position', that the i-th sorted
+	 * key had before the sort.
+	 * @param keys Key column
+	 * @param position Index of the first key to be sorted
+	 * @param length Number of keys to be sorted
+	 * @return The permutation, with 'length' elements
+	 */
+	public int[] sortPermutation(final long[] keys, final int position, final int length) {
+		final int[] permutation = identity(length);
+		if (length < 2) {
+			return permutation;
+		}
+		// The radix sort expects the companion values at the same indexes as their keys.
+		if (position == 0) {
+			longRadixSort.sort(keys, permutation, 0, length, ParallelTasks.slices(length));
+		} else {
+			final long[] regionKeys = Arrays.copyOfRange(keys, position, position + length);
+			longRadixSort.sort(regionKeys, permutation, 0, length, ParallelTasks.slices(length));
+			System.arraycopy(regionKeys, 0, keys, position, length);
+		}
+		return permutation;
+	}
+
+	/**
+	 * Reorders the interval [position, position + permutation.length) of the column so that its i-th
+	 * element becomes the element that was at the index position + permutation[i]. The elements are
+	 * gathered in parallel into an auxiliary array and then copied back in parallel.
+	 * @param column Array of a primitive type or of objects
+	 * @param position Index of the first element of the column to be reordered
+	 * @param permutation Permutation returned by one of the sortPermutation methods
+	 */
+	public void permute(final Object column, final int position, final int[] permutation) {
+		checkColumn(column, position, permutation.length);
+		final int length = permutation.length;
+		final Object auxiliary = Array.newInstance(column.getClass().getComponentType(), length);
+		final int slices = ParallelTasks.slices(length);
+		ParallelTasks.forEachSlice(executor, length, slices, (start, end) -> gather(column, position, permutation, auxiliary, start, end));
+		ParallelTasks.forEachSlice(executor, length, slices, (start, end) -> System.arraycopy(auxiliary, start, column, position + start, end - start));
+	}
+
+	private void permuteColumns(final int[] permutation, final Object column, final Object[] otherColumns) {
+		permute(column, 0, permutation);
+		for (final Object otherColumn : otherColumns) {
+			permute(otherColumn, 0, permutation);
+		}
+	}
+
+	private static void checkColumns(final int length, final Object column, final Object[] otherColumns) {
+		checkColumn(column, 0, length);
+		for (final Object otherColumn : otherColumns) {
+			checkColumn(otherColumn, 0, length);
+		}
+	}
+
+	/**
+	 * Checks that the column is an array holding the interval [position, position + length).
+	 */
+	private static void checkColumn(final Object column, final int position, final int length) {
+		if (column == null || !column.getClass().isArray()) {
+			throw new IllegalArgumentException("Column is not an array: " + column);
+		}
+		if (position < 0 || position + length > Array.getLength(column)) {
+			throw new IllegalArgumentException("Column is shorter than the permutation");
+		}
+	}
+
+	/**
+	 * Copies the elements of the column selected by the interval [start, end) of the permutation into
+	 * the same interval of the auxiliary array.
+	 */
+	private static void gather(final Object column, final int position, final int[] permutation, final Object auxiliary, final int start, final int end) {
+		if (column instanceof int[]) {
+			final int[] source = (int[]) column;
+			final int[] destination = (int[]) auxiliary;
+			for (int index = start; index < end; index++) {
+				destination[index] = source[position + permutation[index]];
+			}
+		} else if (column instanceof long[]) {
+			final long[] source = (long[]) column;
+			final long[] destination = (long[]) auxiliary;
+			for (int index = start; index < end; index++) {
+				destination[index] = source[position + permutation[index]];
+			}
+		} else if (column instanceof float[]) {
+			final float[] source = (float[]) column;
+			final float[] destination = (float[]) auxiliary;
+			for (int index = start; index < end; index++) {
+				destination[index] = source[position + permutation[index]];
+			}
+		} else if (column instanceof double[]) {
+			final double[] source = (double[]) column;
+			final double[] destination = (double[]) auxiliary;
+			for (int index = start; index < end; index++) {
+				destination[index] = source[position + permutation[index]];
+			}
+		} else if (column instanceof Object[]) {
+			final Object[] source = (Object[]) column;
+			final Object[] destination = (Object[]) auxiliary;
+			for (int index = start; index < end; index++) {
+				destination[index] = source[position + permutation[index]];
+			}
+		} else {
+			// Less common primitive types (byte, short, char and boolean) are copied through reflection.
+			for (int index = start; index < end; index++) {
+				Array.set(auxiliary, index, Array.get(column, position + permutation[index]));
+			}
+		}
+	}
+
+	private static int[] identity(final int length) {
+		final int[] permutation = new int[length];
+		for (int index = 0; index < length; index++) {
+			permutation[index] = index;
+		}
+		return permutation;
+	}
+
+}
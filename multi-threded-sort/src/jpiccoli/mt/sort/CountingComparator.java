@@ -0,0 +1,42 @@
+package jpiccoli.mt.sort;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Comparator that counts the calls to an underlying comparator. The counter is striped, so it can be
+ * shared by the threads of a multi-threaded sort with little contention. For the comparisons of the
+ * slice sorts to be counted, the same instance must be provided to the underlying sorting algorithm
+ * and to the {@link MultiThreadedSort}, which happens when the algorithm is created with it and the
+ * {@link MultiThreadedSort#MultiThreadedSort(AbstractSortingAlgorithm, java.util.concurrent.Executor)}
+ * constructor is used.
+ *
+ * @author Juliano Piccoli
+ */
+public class CountingComparator<T> implements Comparator<T> {
+
+	private final Comparator<T> comparator;
+	private final LongAdder count = new LongAdder();
+
+	public CountingComparator(final Comparator<T> comparator) {
+		this.comparator = comparator;
+	}
+
+	@Override
+	public int compare(final T element1, final T element2) {
+		count.increment();
+		return comparator.compare(element1, element2);
+	}
+
+	/**
+	 * @return Number of comparisons executed since the creation or the last reset.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	public void reset() {
+		count.reset();
+	}
+
+}
@@ -0,0 +1,92 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Implementation of the bottom-up merge sort algorithm for arrays of primitive double values.
+ * 
+ * @author Juliano Piccoli
+ * @see MergeSort
+ */
+public class DoubleMergeSort implements DoubleSortingAlgorithm {
+	
+	/**
+	 * Merge the contents of the two ordered sub-arrays contained in the source argument and stores
+	 * the resulting sorted array in the destination argument.
+	 * 
+	 * @param source Array containing the two source sorted arrays to be merged
+	 * @param destination Array where the merged contents of the two source arrays will be stored
+	 * @param position Index in the source array where the two sorted sub-arrays start.
+	 * @param length1 Length of the first sub-array
+	 * @param length2 length of the second sub-array
+	 */
+	void merge(final double[] source, final double[] destination, final int position, final int length1, final int length2) {
+		
+		final int indexLimit1 = position + length1;
+		final int indexLimit2 = indexLimit1 + length2;
+		int sourceIndex1 = position;
+		int sourceIndex2 = indexLimit1;
+		int destinationIndex = position;
+		
+		while(sourceIndex1 < indexLimit1 && sourceIndex2 < indexLimit2) {
+			if (Double.compare(source[sourceIndex1], source[sourceIndex2]) > 0) {
+				destination[destinationIndex] = source[sourceIndex2];
+				sourceIndex2++;
+			} else {
+				destination[destinationIndex] = source[sourceIndex1];
+				sourceIndex1++;
+			}
+			destinationIndex++;
+		}
+		while(sourceIndex1 < indexLimit1) {
+			destination[destinationIndex] = source[sourceIndex1];
+			sourceIndex1++;
+			destinationIndex++;
+		}
+		while(sourceIndex2 < indexLimit2) {
+			destination[destinationIndex] = source[sourceIndex2];
+			sourceIndex2++;
+			destinationIndex++;
+		}
+		
+	}
+	
+	@Override
+	public void sort(final double[] elements, final int position, final int length) {
+
+		double[] source = elements;
+		double[] aux = new double[length];
+		
+		// Avoiding an arraycopy when the full array is being sorted.
+		if (position != 0 || length != elements.length) {
+			source = new double[length];
+			System.arraycopy(elements, position, source, 0, length);
+		}
+		
+		int arrayLength = 1;
+		int segmentLength = 2;
+		while(segmentLength <= length) {
+			int index = 0;
+			int nextIndex = index + segmentLength;
+			for (; nextIndex <= length; index += segmentLength, nextIndex += segmentLength) {
+				merge(source, aux, index, arrayLength, arrayLength);
+			}
+			// Same handling of the remaining elements as in MergeSort: they are merged with the last sorted segment.
+			int remaining = length - index;
+			if (remaining > 0) {
+				int lastSortedSegmentIndex = index - segmentLength;
+				System.arraycopy(aux, lastSortedSegmentIndex, source, lastSortedSegmentIndex, segmentLength);
+				merge(source, aux, lastSortedSegmentIndex, segmentLength, remaining);
+			}
+			double[] temp = source;
+			source = aux;
+			aux = temp;
+			arrayLength *= 2;
+			segmentLength = arrayLength * 2;
+		}
+		
+		if (source != elements) {
+			System.arraycopy(source, 0, elements, position, length);
+		}
+		
+	}
+
+}
@@ -0,0 +1,403 @@
+package jpiccoli.mt.sort;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts files of fixed-width records that may be much larger than the available heap.
+ * <p>
+ * The input file is processed in runs of a configurable number of records. Each run is read
+ * from its region of the file with positional reads, sorted in memory by the provided sorting
+ * algorithm (usually a {@link MultiThreadedSort}) and written to a temporary file. Reading and
+ * writing are executed by a dedicated I/O thread, so the next run is read and the previous one is
+ * written while the current run is being sorted. Up to three runs are kept in memory at a time.
+ * <p>
+ * The sorted runs are then merged with a tournament tree of losers through buffered reads. When
+ * there are more runs than the configured merge fan-in, groups of runs are first merged into longer
+ * temporary runs. Temporary files are closed and deleted before the sort returns or throws. The input
+ * is not memory mapped, since a mapping would only be released when it is garbage collected.
+ * 
+ * @author Juliano Piccoli
+ *
+ * @param <T> The type of the object that represents a record
+ */
+public class ExternalSort<T> {
+
+	private static final int DEFAULT_RUN_LENGTH = 1 << 20;
+	private static final int DEFAULT_MERGE_FAN_IN = 64;
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private final RecordCodec<T> codec;
+	private final SortingAlgorithm<T> sortingAlgorithm;
+	private final Comparator<T> comparator;
+
+	private int runLength = DEFAULT_RUN_LENGTH;
+	private int mergeFanIn = DEFAULT_MERGE_FAN_IN;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private Path temporaryDirectory;
+
+	public ExternalSort(final RecordCodec<T> codec, final AbstractSortingAlgorithm<T> sortingAlgorithm) {
+		this(codec, sortingAlgorithm, sortingAlgorithm.getComparator());
+	}
+
+	public ExternalSort(final RecordCodec<T> codec, final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator) {
+		this.codec = codec;
+		this.sortingAlgorithm = sortingAlgorithm;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Defines the number of records sorted in memory at once. Defaults to 1048576.
+	 * @param runLength Number of records of each run. The run is read into a single array,
+	 * so its size in bytes cannot exceed Integer.MAX_VALUE.
+	 */
+	public void setRunLength(final int runLength) {
+		if (runLength < 1 || (long) runLength * codec.getRecordLength() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid run length: " + runLength);
+		}
+		this.runLength = runLength;
+	}
+
+	/**
+	 * Defines the maximum number of runs merged at once. Defaults to 64.
+	 * @param mergeFanIn Maximum number of runs of each merge. Must be at least two.
+	 */
+	public void setMergeFanIn(final int mergeFanIn) {
+		if (mergeFanIn < 2) {
+			throw new IllegalArgumentException("Invalid merge fan-in: " + mergeFanIn);
+		}
+		this.mergeFanIn = mergeFanIn;
+	}
+
+	/**
+	 * Defines the size of the buffers used for reading and writing the runs while merging. Defaults to 65536 bytes.
+	 * @param bufferSize Size of each buffer in bytes. Must be able to hold at least one record.
+	 */
+	public void setBufferSize(final int bufferSize) {
+		if (bufferSize < codec.getRecordLength()) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Defines the directory where the temporary run files are created. Defaults to the system temporary directory.
+	 * @param temporaryDirectory The directory, or null for using the system temporary directory.
+	 */
+	public void setTemporaryDirectory(final Path temporaryDirectory) {
+		this.temporaryDirectory = temporaryDirectory;
+	}
+
+	/**
+	 * Sorts the records of the input file and stores them in the output file.
+	 * The output file is created or truncated. It must not be the input file.
+	 * @param input File containing the records to be sorted.
+	 * @param output File where the sorted records will be stored.
+	 * @throws IOException If an I/O error occurs or if the input size is not a multiple of the record length.
+	 */
+	public void sort(final Path input, final Path output) throws IOException {
+		final List<Path> temporaryFiles = new ArrayList<>();
+		final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+		Throwable failure = null;
+		try {
+			final List<Path> runFiles = new ArrayList<>();
+			final boolean singleRun = createRuns(input, output, runFiles, temporaryFiles, ioExecutor);
+			if (!singleRun) {
+				mergeRuns(runFiles, temporaryFiles, output);
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			deleteTemporaryFiles(temporaryFiles, ioExecutor, failure);
+		}
+	}
+
+	/**
+	 * Stops the I/O thread and deletes the temporary files. The I/O thread is awaited first, since a
+	 * pending write would otherwise create its run file again after it was deleted. When the sort
+	 * failed, the errors of the cleanup are added to its exception instead of replacing it.
+	 */
+	private void deleteTemporaryFiles(final List<Path> temporaryFiles, final ExecutorService ioExecutor, final Throwable failure) throws IOException {
+		IOException cleanupFailure = null;
+		ioExecutor.shutdownNow();
+		try {
+			while (!ioExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// Interrupted channel operations close their channels, so the tasks finish promptly.
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (final Path temporaryFile : temporaryFiles) {
+			try {
+				Files.deleteIfExists(temporaryFile);
+			} catch (IOException e) {
+				if (failure != null) {
+					failure.addSuppressed(e);
+				} else if (cleanupFailure == null) {
+					cleanupFailure = e;
+				} else {
+					cleanupFailure.addSuppressed(e);
+				}
+			}
+		}
+		if (cleanupFailure != null) {
+			throw cleanupFailure;
+		}
+	}
+
+	/**
+	 * Reads, sorts and writes the runs. The I/O of the neighbour runs is executed by the I/O
+	 * executor while the current run is sorted.
+	 * @return True if the input fits in a single run, in which case it was written directly to the output.
+	 */
+	private boolean createRuns(final Path input, final Path output, final List<Path> runFiles, final List<Path> temporaryFiles,
+			final ExecutorService ioExecutor) throws IOException {
+		try (FileChannel inputChannel = FileChannel.open(input, StandardOpenOption.READ)) {
+
+			final int recordLength = codec.getRecordLength();
+			final long size = inputChannel.size();
+			if (size % recordLength != 0) {
+				throw new IOException("File size " + size + " is not a multiple of the record length " + recordLength);
+			}
+			final long records = size / recordLength;
+			final long runs = Math.max(1, (records + runLength - 1) / runLength);
+
+			final ByteBuffer readBuffer = ByteBuffer.allocateDirect(bufferSize - bufferSize % recordLength);
+			Future<T[]> nextRun = ioExecutor.submit(() -> readRun(inputChannel, readBuffer, 0, records));
+			final List<Future<?>> writes = new ArrayList<>();
+			for (long run = 0; run < runs; run++) {
+				final T[] elements = await(nextRun);
+				if (run + 1 < runs) {
+					final long nextRecord = (run + 1) * runLength;
+					nextRun = ioExecutor.submit(() -> readRun(inputChannel, readBuffer, nextRecord, records));
+				}
+				sortingAlgorithm.sort(elements);
+				if (runs == 1) {
+					writeRecords(elements, output);
+					return true;
+				}
+				final Path runFile = createTemporaryFile(temporaryFiles);
+				runFiles.add(runFile);
+				writes.add(ioExecutor.submit(() -> {
+					writeRecords(elements, runFile);
+					return null;
+				}));
+			}
+			for (final Future<?> write : writes) {
+				await(write);
+			}
+			return false;
+
+		}
+	}
+
+	/**
+	 * Reads the records of a run through the buffer, which holds a whole number of records and is only
+	 * used by the I/O thread.
+	 */
+	@SuppressWarnings("unchecked")
+	private T[] readRun(final FileChannel channel, final ByteBuffer buffer, final long firstRecord, final long records) throws IOException {
+		final int recordLength = codec.getRecordLength();
+		final int length = (int) Math.min(runLength, records - firstRecord);
+		final T[] elements = (T[]) new Object[length];
+		long filePosition = firstRecord * recordLength;
+		int index = 0;
+		while (index < length) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), (long) (length - index) * recordLength));
+			while (buffer.hasRemaining()) {
+				final int read = channel.read(buffer, filePosition);
+				if (read < 0) {
+					throw new IOException("Unexpected end of file at position " + filePosition);
+				}
+				filePosition += read;
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				elements[index++] = codec.read(buffer);
+			}
+		}
+		return elements;
+	}
+
+	private void writeRecords(final T[] elements, final Path file) throws IOException {
+		try (RunWriter writer = new RunWriter(file)) {
+			for (final T element : elements) {
+				writer.write(element);
+			}
+		}
+	}
+
+	/**
+	 * Merges consecutive groups of at most 'mergeFanIn' runs into longer runs until the remaining
+	 * runs can be merged directly into the output. The order of the runs is preserved, so the
+	 * external sort is stable when the in-memory sorting algorithm is stable.
+	 */
+	private void mergeRuns(final List<Path> runFiles, final List<Path> temporaryFiles, final Path output) throws IOException {
+		List<Path> currentRuns = runFiles;
+		while (currentRuns.size() > mergeFanIn) {
+			final List<Path> mergedRuns = new ArrayList<>();
+			for (int first = 0; first < currentRuns.size(); first += mergeFanIn) {
+				final List<Path> group = currentRuns.subList(first, Math.min(first + mergeFanIn, currentRuns.size()));
+				if (group.size() == 1) {
+					mergedRuns.add(group.get(0));
+					continue;
+				}
+				final Path mergedFile = createTemporaryFile(temporaryFiles);
+				merge(group, mergedFile);
+				for (final Path runFile : group) {
+					Files.delete(runFile);
+				}
+				mergedRuns.add(mergedFile);
+			}
+			currentRuns = mergedRuns;
+		}
+		merge(currentRuns, output);
+	}
+
+	private void merge(final List<Path> runFiles, final Path output) throws IOException {
+		final List<RunReader> readers = new ArrayList<>();
+		try (RunWriter writer = new RunWriter(output)) {
+			for (final Path runFile : runFiles) {
+				readers.add(new RunReader(runFile));
+			}
+			final LoserTree loserTree = new LoserTree(readers.size()) {
+				@Override
+				protected int compareHeads(final int source1, final int source2) {
+					return comparator.compare(readers.get(source1).head, readers.get(source2).head);
+				}
+				@Override
+				protected boolean isExhausted(final int source) {
+					return readers.get(source).head == null;
+				}
+			};
+			loserTree.initialize();
+			while (true) {
+				final RunReader reader = readers.get(loserTree.winner());
+				if (reader.head == null) {
+					break;
+				}
+				writer.write(reader.head);
+				reader.advance();
+				loserTree.replayWinner();
+			}
+		} finally {
+			for (final RunReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	private Path createTemporaryFile(final List<Path> temporaryFiles) throws IOException {
+		final Path file = temporaryDirectory == null ? Files.createTempFile("sort-run", ".tmp") : Files.createTempFile(temporaryDirectory, "sort-run", ".tmp");
+		temporaryFiles.add(file);
+		return file;
+	}
+
+	private static <V> V await(final Future<V> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SortingException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new SortingException(e.getCause());
+		}
+	}
+
+	/**
+	 * Sequential buffered reader of the records of a run. The current record is kept in the
+	 * 'head' field, which is null when the run is exhausted.
+	 */
+	private class RunReader implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private T head;
+
+		private RunReader(final Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			buffer = ByteBuffer.allocateDirect(bufferSize - bufferSize % codec.getRecordLength());
+			buffer.flip();
+			try {
+				advance();
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		private void advance() throws IOException {
+			if (buffer.remaining() < codec.getRecordLength()) {
+				buffer.compact();
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+					// Fills the buffer until the end of the file.
+				}
+				buffer.flip();
+			}
+			head = buffer.remaining() >= codec.getRecordLength() ? codec.read(buffer) : null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+	/**
+	 * Sequential buffered writer of records.
+	 */
+	private class RunWriter implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+
+		private RunWriter(final Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			buffer = ByteBuffer.allocateDirect(bufferSize - bufferSize % codec.getRecordLength());
+		}
+
+		private void write(final T record) throws IOException {
+			if (buffer.remaining() < codec.getRecordLength()) {
+				flush();
+			}
+			codec.write(record, buffer);
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,31 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Interface for sorting algorithms that operate directly on arrays of
+ * primitive float values, without boxing and without a {@link java.util.Comparator}.
+ * Elements are sorted in ascending order as defined by {@link Float#compare}, so -0.0 is
+ * placed before 0.0 and NaN values are placed at the end.
+ * 
+ * @author Juliano Piccoli
+ *
+ */
+@FunctionalInterface
+public interface FloatSortingAlgorithm {
+	
+	/**
+	 * Sorts the contents of the specified interval of the 'elements' array.
+	 * @param elements Array containing the elements to be sorted
+	 * @param position Index of the first element of the source array to be sorted
+	 * @param length Length of the elements of the source array to be sorted
+	 */
+	void sort(final float[] elements, final int position, final int length);
+	
+	/**
+	 * Sorts the full contents of the specified array.
+	 * @param elements Array containing the elements to be sorted
+	 */
+	default void sort(final float[] elements) {
+		sort(elements, 0, elements.length);
+	}
+
+}
@@ -0,0 +1,146 @@
+package jpiccoli.mt.sort;
+
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recursive merge sort executed in a {@link ForkJoinPool}. Both halves of every region
+ * are sorted in parallel and the merge of the two halves is itself split into independent
+ * ranges by co-ranking, so every merge level keeps all the workers busy, including the last one.
+ * <p>
+ * The algorithm alternates the roles of the sorted array and of an auxiliary array between
+ * recursion levels, so no copy is needed after the merges. Regions shorter than a threshold
+ * are sorted by the underlying sorting algorithm provided in the constructor.
+ *
+ * @author Juliano Piccoli
+ * @see MergeSort#coRank(int, Object[], int, int, Object[], int, int)
+ */
+public class ForkJoinMergeSort<T> extends AbstractSortingAlgorithm<T> {
+
+	private final SortingAlgorithm<T> sortingAlgorithm;
+	private final ForkJoinPool pool;
+	private final MergeSort<T> mergeSort;
+
+	public ForkJoinMergeSort(final Comparator<T> comparator) {
+		this(new DefaultArraySort<>(comparator), ForkJoinPool.commonPool());
+	}
+
+	public ForkJoinMergeSort(final AbstractSortingAlgorithm<T> sortingAlgorithm, final ForkJoinPool pool) {
+		this(sortingAlgorithm, sortingAlgorithm.getComparator(), pool);
+	}
+
+	public ForkJoinMergeSort(final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator, final ForkJoinPool pool) {
+		super(comparator);
+		this.sortingAlgorithm = sortingAlgorithm;
+		this.pool = pool;
+		this.mergeSort = new MergeSort<>(comparator);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void sort(final T[] elements, final int position, final int length) {
+		if (length < 2) {
+			return;
+		}
+		// Splitting the work in a few tasks per worker is enough for balancing the load.
+		final int sortThreshold = Math.max(ParallelTasks.MINIMUM_SLICE_LENGTH, length / (pool.getParallelism() * 4));
+		final T[] auxiliary = (T[]) new Object[length];
+		pool.invoke(new SortTask(elements, position, auxiliary, 0, length, false, sortThreshold));
+	}
+
+	/**
+	 * Sorts a region of the elements array. The result is stored either in the elements array or, when
+	 * 'intoAuxiliary' is true, in the corresponding region of the auxiliary array. The two halves are
+	 * sorted into the opposite array, so the final merge writes the result directly into its target.
+	 */
+	private class SortTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final T[] elements;
+		private final int position;
+		private final T[] auxiliary;
+		private final int auxiliaryPosition;
+		private final int length;
+		private final boolean intoAuxiliary;
+		private final int sortThreshold;
+
+		private SortTask(final T[] elements, final int position, final T[] auxiliary, final int auxiliaryPosition, final int length,
+				final boolean intoAuxiliary, final int sortThreshold) {
+			this.elements = elements;
+			this.position = position;
+			this.auxiliary = auxiliary;
+			this.auxiliaryPosition = auxiliaryPosition;
+			this.length = length;
+			this.intoAuxiliary = intoAuxiliary;
+			this.sortThreshold = sortThreshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (length <= sortThreshold) {
+				sortingAlgorithm.sort(elements, position, length);
+				if (intoAuxiliary) {
+					System.arraycopy(elements, position, auxiliary, auxiliaryPosition, length);
+				}
+				return;
+			}
+			final int length1 = length / 2;
+			final int length2 = length - length1;
+			invokeAll(new SortTask(elements, position, auxiliary, auxiliaryPosition, length1, !intoAuxiliary, sortThreshold),
+					new SortTask(elements, position + length1, auxiliary, auxiliaryPosition + length1, length2, !intoAuxiliary, sortThreshold));
+			if (intoAuxiliary) {
+				new MergeTask(elements, position, length1, position + length1, length2, auxiliary, auxiliaryPosition).compute();
+			} else {
+				new MergeTask(auxiliary, auxiliaryPosition, length1, auxiliaryPosition + length1, length2, elements, position).compute();
+			}
+		}
+
+	}
+
+	/**
+	 * Merges two adjacent sorted regions of the source array into the destination array. Long merges are
+	 * split in two halves of the output: the co-rank of the middle of the output defines which elements
+	 * of each region belong to each half, and both halves are merged in parallel.
+	 */
+	private class MergeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final T[] source;
+		private final int position1;
+		private final int length1;
+		private final int position2;
+		private final int length2;
+		private final T[] destination;
+		private final int destinationPosition;
+
+		private MergeTask(final T[] source, final int position1, final int length1, final int position2, final int length2,
+				final T[] destination, final int destinationPosition) {
+			this.source = source;
+			this.position1 = position1;
+			this.length1 = length1;
+			this.position2 = position2;
+			this.length2 = length2;
+			this.destination = destination;
+			this.destinationPosition = destinationPosition;
+		}
+
+		@Override
+		protected void compute() {
+			final int length = length1 + length2;
+			if (length <= ParallelTasks.MINIMUM_SLICE_LENGTH) {
+				mergeSort.merge(source, position1, length1, source, position2, length2, destination, destinationPosition);
+				return;
+			}
+			final int rank = length / 2;
+			final int count1 = mergeSort.coRank(rank, source, position1, length1, source, position2, length2);
+			final int count2 = rank - count1;
+			invokeAll(new MergeTask(source, position1, count1, position2, count2, destination, destinationPosition),
+					new MergeTask(source, position1 + count1, length1 - count1, position2 + count2, length2 - count2, destination, destinationPosition + rank));
+		}
+
+	}
+
+}
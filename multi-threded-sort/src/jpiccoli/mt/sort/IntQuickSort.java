@@ -0,0 +1,84 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Implementation of the quick sort algorithm for arrays of primitive int values.
+ * The pivot is the median of three elements, or the median of three medians of three (ninther)
+ * on long regions, so sorted and reverse sorted regions are split evenly. The partitioning is
+ * three-way, so the elements equal to the pivot are excluded from further partitioning and
+ * regions with many duplicated values do not degrade to quadratic time. Only the shorter side of
+ * each partition is sorted recursively, which bounds the recursion depth to O(log n).
+ *
+ * @author Juliano Piccoli
+ * @see QuickSort
+ */
+public class IntQuickSort implements IntSortingAlgorithm {
+
+	// Regions at least this long choose their pivot from nine elements instead of three.
+	private static final int NINTHER_THRESHOLD = 128;
+
+	@Override
+	public void sort(final int[] elements, int position, int length) {
+		while (length > SortingNetworks.LEAF_LENGTH) {
+			final int pivot = choosePivot(elements, position, length);
+			// Three-way partition: [position, less) holds the elements less than the pivot,
+			// [less, index) the ones equal to it and (great, position + length) the greater ones.
+			int less = position;
+			int index = position;
+			int great = position + length - 1;
+			while (index <= great) {
+				final int element = elements[index];
+				if (element < pivot) {
+					elements[index++] = elements[less];
+					elements[less++] = element;
+				} else if (element > pivot) {
+					elements[index] = elements[great];
+					elements[great--] = element;
+				} else {
+					index++;
+				}
+			}
+			final int lowerHalfLength = less - position;
+			final int higherHalfLength = position + length - great - 1;
+			if (lowerHalfLength < higherHalfLength) {
+				sort(elements, position, lowerHalfLength);
+				position = great + 1;
+				length = higherHalfLength;
+			} else {
+				sort(elements, great + 1, higherHalfLength);
+				length = lowerHalfLength;
+			}
+		}
+		// Short partitions are sorted by a sorting network, avoiding the mispredicted branches of partitioning them.
+		SortingNetworks.sort(elements, position, length);
+	}
+
+	/**
+	 * Selects the pivot of the array region: the median of its first, middle and last elements,
+	 * or the median of three such medians on long regions.
+	 * 
+	 * @param elements Array containing the elements to be sorted.
+	 * @param position Index of the first element to be sorted.
+	 * @param length Number of elements that should be sorted.
+	 * @return The value of the pivot.
+	 */
+	private int choosePivot(final int[] elements, final int position, final int length) {
+		final int last = position + length - 1;
+		final int middle = position + (length >>> 1);
+		if (length < NINTHER_THRESHOLD) {
+			return medianOfThree(elements[position], elements[middle], elements[last]);
+		}
+		final int step = length >>> 3;
+		return medianOfThree(
+				medianOfThree(elements[position], elements[position + step], elements[position + 2 * step]),
+				medianOfThree(elements[middle - step], elements[middle], elements[middle + step]),
+				medianOfThree(elements[last - 2 * step], elements[last - step], elements[last]));
+	}
+
+	private static int medianOfThree(final int element1, final int element2, final int element3) {
+		if (element1 > element2) {
+			return element2 >= element3 ? element2 : element1 > element3 ? element3 : element1;
+		}
+		return element1 >= element3 ? element1 : element2 > element3 ? element3 : element2;
+	}
+	
+}
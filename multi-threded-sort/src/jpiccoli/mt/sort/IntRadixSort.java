@@ -0,0 +1,392 @@
+package jpiccoli.mt.sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Parallel radix sort for arrays of primitive int values. Keys are processed in 8-bit digits.
+ * Each pass computes one digit histogram per slice in parallel, derives the scatter offsets of
+ * each slice from those histograms (prefix sum over the digits and over the preceding slices)
+ * and then scatters the elements in parallel. Passes in which every element has the same digit
+ * are skipped.
+ * <p>
+ * The sort runs in linear time and, in its least significant digit first form, is stable.
+ * It uses the same {@link Executor} model as {@link MultiThreadedSort}.
+ *
+ * @author Juliano Piccoli
+ * @see RadixSortStrategy
+ */
+public class IntRadixSort implements IntSortingAlgorithm {
+
+	private static final int DIGIT_BITS = 8;
+	private static final int RADIX = 1 << DIGIT_BITS;
+	private static final int DIGIT_MASK = RADIX - 1;
+	private static final int KEY_BITS = Integer.SIZE;
+	private static final int MOST_SIGNIFICANT_SHIFT = KEY_BITS - DIGIT_BITS;
+	// Flipping the highest bit of the most significant digit places negative values before the positive ones.
+	private static final int SIGN_FLIP = RADIX >>> 1;
+	private static final int INSERTION_SORT_THRESHOLD = 64;
+
+	private final Executor executor;
+	private final RadixSortStrategy strategy;
+
+	public IntRadixSort(final Executor executor) {
+		this(executor, RadixSortStrategy.LEAST_SIGNIFICANT_DIGIT_FIRST);
+	}
+
+	public IntRadixSort(final Executor executor, final RadixSortStrategy strategy) {
+		this.executor = executor;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Sorts the specified array using a number of slices that is equal to the number
+	 * of logical processing cores available to the JVM.
+	 *
+	 * @see {@link #sort(int[], int, int, int)}
+	 */
+	@Override
+	public void sort(final int[] elements, final int position, final int length) {
+		sort(elements, position, length, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sorts the specified array region using multiple threads. The number of slices
+	 * is reduced when the region is too short for being split in the requested number of slices.
+	 *
+	 * @param elements Array containing the elements to be sorted.
+	 * @param position Index of the first element to be sorted.
+	 * @param length   Number of elements to be sorted.
+	 * @param slices   Number of slices in which the array will be divided.
+	 */
+	public void sort(final int[] elements, final int position, final int length, final int slices) {
+		if (length < 2) {
+			return;
+		}
+		final int effectiveSlices = ParallelTasks.slices(length, slices);
+		final int[] auxiliary = new int[length];
+		if (strategy == RadixSortStrategy.MOST_SIGNIFICANT_DIGIT_FIRST) {
+			sortMostSignificantDigitFirst(elements, position, length, auxiliary, 0, effectiveSlices, MOST_SIGNIFICANT_SHIFT);
+		} else {
+			sortLeastSignificantDigitFirst(elements, position, length, auxiliary, effectiveSlices);
+		}
+	}
+
+	/**
+	 * Sorts the specified region of the keys array and applies the same reordering to the same
+	 * region of the companion array. For example, when the companion region initially holds the
+	 * indexes 0, 1, 2..., it ends up holding the permutation that sorts the keys. The sort is
+	 * always executed least significant digit first, so it is stable: companion values of equal
+	 * keys keep their relative order.
+	 *
+	 * @param keys      Array containing the keys to be sorted.
+	 * @param companion Array containing the values that follow their keys.
+	 * @param position  Index of the first element to be sorted in both arrays.
+	 * @param length    Number of elements to be sorted.
+	 * @param slices    Number of slices in which the arrays will be divided.
+	 */
+	public void sort(final int[] keys, final int[] companion, final int position, final int length, final int slices) {
+		if (length < 2) {
+			return;
+		}
+		final int effectiveSlices = ParallelTasks.slices(length, slices);
+		final int[][] histograms = new int[effectiveSlices][RADIX];
+		final int[] totals = new int[RADIX];
+
+		int[] source = keys;
+		int[] companionSource = companion;
+		int sourcePosition = position;
+		int[] destination = new int[length];
+		int[] companionDestination = new int[length];
+		int destinationPosition = 0;
+
+		for (int shift = 0; shift < KEY_BITS; shift += DIGIT_BITS) {
+			if (distribute(source, companionSource, sourcePosition, destination, companionDestination, destinationPosition,
+					length, effectiveSlices, shift, histograms, totals)) {
+				int[] temp = source;
+				source = destination;
+				destination = temp;
+				int[] companionTemp = companionSource;
+				companionSource = companionDestination;
+				companionDestination = companionTemp;
+				int tempPosition = sourcePosition;
+				sourcePosition = destinationPosition;
+				destinationPosition = tempPosition;
+			}
+		}
+
+		if (source != keys) {
+			System.arraycopy(source, 0, keys, position, length);
+			System.arraycopy(companionSource, 0, companion, position, length);
+		}
+	}
+
+	private void sortLeastSignificantDigitFirst(final int[] elements, final int position, final int length, final int[] auxiliary, final int slices) {
+
+		final int[][] histograms = new int[slices][RADIX];
+		final int[] totals = new int[RADIX];
+
+		int[] source = elements;
+		int sourcePosition = position;
+		int[] destination = auxiliary;
+		int destinationPosition = 0;
+
+		for (int shift = 0; shift < KEY_BITS; shift += DIGIT_BITS) {
+			if (distribute(source, null, sourcePosition, destination, null, destinationPosition, length, slices, shift, histograms, totals)) {
+				// The roles of the two arrays are exchanged after every pass that moved the elements.
+				int[] temp = source;
+				source = destination;
+				destination = temp;
+				int tempPosition = sourcePosition;
+				sourcePosition = destinationPosition;
+				destinationPosition = tempPosition;
+			}
+		}
+
+		if (source != elements) {
+			System.arraycopy(source, 0, elements, position, length);
+		}
+
+	}
+
+	/**
+	 * Parallel most significant digit first pass over the region, starting at the specified digit.
+	 * The buckets shorter than the share of one slice are grouped and sorted sequentially by their own
+	 * tasks. A longer bucket, including the whole region when every element has the same digit, is
+	 * sorted by another parallel pass over the next digit, so data sharing its highest digits is not
+	 * left to a single thread.
+	 *
+	 * @param elements Array containing the region.
+	 * @param position Index of the first element of the region.
+	 * @param length Number of elements of the region.
+	 * @param auxiliary Auxiliary storage with at least 'length' elements starting at 'auxiliaryPosition'.
+	 * @param auxiliaryPosition Index of the first usable element of the auxiliary storage.
+	 * @param slices Number of slices processed in parallel.
+	 * @param shift Position of the lowest bit of the digit to be processed.
+	 */
+	private void sortMostSignificantDigitFirst(final int[] elements, final int position, final int length, final int[] auxiliary,
+			final int auxiliaryPosition, final int slices, final int shift) {
+
+		if (shift < 0) {
+			return;
+		}
+		if (slices <= 1 && shift != MOST_SIGNIFICANT_SHIFT) {
+			sortBucket(elements, position, length, auxiliary, auxiliaryPosition, shift);
+			return;
+		}
+
+		final int[][] histograms = new int[slices][RADIX];
+		final int[] totals = new int[RADIX];
+
+		if (!distribute(elements, null, position, auxiliary, null, auxiliaryPosition, length, slices, shift, histograms, totals)) {
+			// Every element has the same digit, so the region is a single bucket of the next digit.
+			sortMostSignificantDigitFirst(elements, position, length, auxiliary, auxiliaryPosition, slices, shift - DIGIT_BITS);
+			return;
+		}
+
+		final int[] bucketPositions = new int[RADIX];
+		for (int digit = 1; digit < RADIX; digit++) {
+			bucketPositions[digit] = bucketPositions[digit - 1] + totals[digit - 1];
+		}
+
+		// Buckets larger than the target length are copied back by their own task and sorted afterwards
+		// by a parallel pass. Consecutive smaller buckets are grouped until the group reaches the target length.
+		final int targetLength = (length + slices - 1) / slices;
+		final List<int[]> groups = new ArrayList<>();
+		int groupFirstDigit = 0;
+		int groupLength = 0;
+		for (int digit = 0; digit < RADIX; digit++) {
+			if (totals[digit] >= targetLength) {
+				if (groupLength > 0) {
+					groups.add(new int[] { groupFirstDigit, digit });
+				}
+				groups.add(new int[] { digit, digit + 1 });
+				groupFirstDigit = digit + 1;
+				groupLength = 0;
+			} else {
+				groupLength += totals[digit];
+				if (groupLength >= targetLength) {
+					groups.add(new int[] { groupFirstDigit, digit + 1 });
+					groupFirstDigit = digit + 1;
+					groupLength = 0;
+				}
+			}
+		}
+		if (groupLength > 0) {
+			groups.add(new int[] { groupFirstDigit, RADIX });
+		}
+
+		ParallelTasks.forEach(executor, groups.size(), groupIndex -> {
+			final int[] group = groups.get(groupIndex);
+			for (int digit = group[0]; digit < group[1]; digit++) {
+				final int bucketPosition = bucketPositions[digit];
+				final int bucketLength = totals[digit];
+				if (bucketLength > 0) {
+					System.arraycopy(auxiliary, auxiliaryPosition + bucketPosition, elements, position + bucketPosition, bucketLength);
+					if (bucketLength < targetLength) {
+						sortBucket(elements, position + bucketPosition, bucketLength, auxiliary, auxiliaryPosition + bucketPosition, shift - DIGIT_BITS);
+					}
+				}
+			}
+		});
+
+		for (int digit = 0; digit < RADIX; digit++) {
+			final int bucketLength = totals[digit];
+			if (bucketLength >= targetLength) {
+				sortMostSignificantDigitFirst(elements, position + bucketPositions[digit], bucketLength, auxiliary,
+						auxiliaryPosition + bucketPositions[digit], ParallelTasks.slices(bucketLength, slices), shift - DIGIT_BITS);
+			}
+		}
+
+	}
+
+	/**
+	 * Executes one parallel counting pass over the specified digit, moving the elements of the
+	 * source region into the destination region.
+	 *
+	 * @param source Array containing the elements to be distributed.
+	 * @param companionSource Array containing values that are moved along with the elements, or null.
+	 * @param sourcePosition Index of the first element in the source arrays.
+	 * @param destination Array where the distributed elements will be stored.
+	 * @param companionDestination Array where the values that follow the elements will be stored, or null.
+	 * @param destinationPosition Index of the first element in the destination arrays.
+	 * @param length Number of elements.
+	 * @param slices Number of slices processed in parallel.
+	 * @param shift Position of the lowest bit of the digit.
+	 * @param histograms Storage for the per-slice histograms.
+	 * @param totals Receives the number of elements with each digit value.
+	 * @return False if the pass was skipped because every element has the same digit.
+	 */
+	private boolean distribute(final int[] source, final int[] companionSource, final int sourcePosition, final int[] destination,
+			final int[] companionDestination, final int destinationPosition, final int length, final int slices, final int shift, final int[][] histograms, final int[] totals) {
+
+		final int flip = shift == MOST_SIGNIFICANT_SHIFT ? SIGN_FLIP : 0;
+		final int sliceLength = length / slices;
+
+		ParallelTasks.forEach(executor, slices, slice -> {
+			final int[] histogram = histograms[slice];
+			Arrays.fill(histogram, 0);
+			final int start = sourcePosition + slice * sliceLength;
+			final int end = slice == slices - 1 ? sourcePosition + length : start + sliceLength;
+			for (int index = start; index < end; index++) {
+				histogram[((source[index] >>> shift) & DIGIT_MASK) ^ flip]++;
+			}
+		});
+
+		Arrays.fill(totals, 0);
+		for (int slice = 0; slice < slices; slice++) {
+			final int[] histogram = histograms[slice];
+			for (int digit = 0; digit < RADIX; digit++) {
+				totals[digit] += histogram[digit];
+			}
+		}
+		for (int digit = 0; digit < RADIX; digit++) {
+			if (totals[digit] == length) {
+				return false;
+			}
+		}
+
+		ParallelTasks.forEach(executor, slices, slice -> {
+			// Each slice computes its own offsets: the elements of a digit go after the elements
+			// of all smaller digits and after the elements of the same digit in preceding slices.
+			final int[] offsets = new int[RADIX];
+			int digitPosition = destinationPosition;
+			for (int digit = 0; digit < RADIX; digit++) {
+				int offset = digitPosition;
+				for (int previousSlice = 0; previousSlice < slice; previousSlice++) {
+					offset += histograms[previousSlice][digit];
+				}
+				offsets[digit] = offset;
+				digitPosition += totals[digit];
+			}
+			final int start = sourcePosition + slice * sliceLength;
+			final int end = slice == slices - 1 ? sourcePosition + length : start + sliceLength;
+			if (companionSource == null) {
+				for (int index = start; index < end; index++) {
+					final int value = source[index];
+					destination[offsets[((value >>> shift) & DIGIT_MASK) ^ flip]++] = value;
+				}
+			} else {
+				for (int index = start; index < end; index++) {
+					final int value = source[index];
+					final int offset = offsets[((value >>> shift) & DIGIT_MASK) ^ flip]++;
+					destination[offset] = value;
+					companionDestination[offset] = companionSource[index];
+				}
+			}
+		});
+
+		return true;
+
+	}
+
+	/**
+	 * Sequential most significant digit first radix sort of a single bucket. All elements of
+	 * the bucket share the digits above the specified shift.
+	 *
+	 * @param elements Array containing the bucket.
+	 * @param position Index of the first element of the bucket.
+	 * @param length Number of elements of the bucket.
+	 * @param scratch Auxiliary storage with at least 'length' elements starting at 'scratchPosition'.
+	 * @param scratchPosition Index of the first usable element of the auxiliary storage.
+	 * @param shift Position of the lowest bit of the digit to be processed.
+	 */
+	private static void sortBucket(final int[] elements, final int position, final int length, final int[] scratch, final int scratchPosition, final int shift) {
+
+		if (length < INSERTION_SORT_THRESHOLD) {
+			insertionSort(elements, position, length);
+			return;
+		}
+		if (shift < 0) {
+			return;
+		}
+
+		final int end = position + length;
+		final int[] counts = new int[RADIX];
+		for (int index = position; index < end; index++) {
+			counts[((elements[index] >>> shift) & DIGIT_MASK)]++;
+		}
+		for (int digit = 0; digit < RADIX; digit++) {
+			if (counts[digit] == length) {
+				sortBucket(elements, position, length, scratch, scratchPosition, shift - DIGIT_BITS);
+				return;
+			}
+		}
+
+		final int[] offsets = new int[RADIX];
+		for (int digit = 1; digit < RADIX; digit++) {
+			offsets[digit] = offsets[digit - 1] + counts[digit - 1];
+		}
+		for (int index = position; index < end; index++) {
+			final int value = elements[index];
+			scratch[scratchPosition + offsets[((value >>> shift) & DIGIT_MASK)]++] = value;
+		}
+		System.arraycopy(scratch, scratchPosition, elements, position, length);
+
+		int bucketPosition = 0;
+		for (int digit = 0; digit < RADIX; digit++) {
+			final int bucketLength = counts[digit];
+			if (bucketLength > 1) {
+				sortBucket(elements, position + bucketPosition, bucketLength, scratch, scratchPosition + bucketPosition, shift - DIGIT_BITS);
+			}
+			bucketPosition += bucketLength;
+		}
+
+	}
+
+	private static void insertionSort(final int[] elements, final int position, final int length) {
+		final int end = position + length;
+		for (int index = position + 1; index < end; index++) {
+			final int value = elements[index];
+			int insertionIndex = index - 1;
+			while (insertionIndex >= position && elements[insertionIndex] > value) {
+				elements[insertionIndex + 1] = elements[insertionIndex];
+				insertionIndex--;
+			}
+			elements[insertionIndex + 1] = value;
+		}
+	}
+
+}
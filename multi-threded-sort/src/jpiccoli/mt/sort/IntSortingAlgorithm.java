@@ -0,0 +1,30 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Interface for sorting algorithms that operate directly on arrays of
+ * primitive int values, without boxing and without a {@link java.util.Comparator}.
+ * Elements are sorted in ascending numerical order.
+ * 
+ * @author Juliano Piccoli
+ *
+ */
+@FunctionalInterface
+public interface IntSortingAlgorithm {
+	
+	/**
+	 * Sorts the contents of the specified interval of the 'elements' array.
+	 * @param elements Array containing the elements to be sorted
+	 * @param position Index of the first element of the source array to be sorted
+	 * @param length Length of the elements of the source array to be sorted
+	 */
+	void sort(final int[] elements, final int position, final int length);
+	
+	/**
+	 * Sorts the full contents of the specified array.
+	 * @param elements Array containing the elements to be sorted
+	 */
+	default void sort(final int[] elements) {
+		sort(elements, 0, elements.length);
+	}
+
+}
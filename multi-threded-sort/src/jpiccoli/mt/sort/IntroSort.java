@@ -0,0 +1,322 @@
+package jpiccoli.mt.sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Introspective quick sort that is robust against adversarial and already ordered input.
+ * <ul>
+ * <li>Two pivots are chosen as the second and fourth of five sorted candidates spread over the region.
+ * On long regions each candidate is the median of three neighbouring elements.</li>
+ * <li>The region is split in three partitions around the two pivots (dual-pivot partitioning).
+ * When both pivots are equal, the region is split in elements less than, equal to and greater
+ * than the pivot, so regions with many duplicates are handled in linear time.</li>
+ * <li>Short regions are sorted with insertion sort.</li>
+ * <li>When the recursion depth exceeds a limit proportional to log2(length), the region is sorted
+ * with heap sort, which bounds the running time at O(n log n).</li>
+ * <li>Only the shorter partitions are sorted recursively, while the longest one is processed in a loop,
+ * so the stack depth is O(log n).</li>
+ * </ul>
+ * When a {@link ForkJoinPool} is provided, partitions longer than the parallel threshold are forked
+ * as new tasks instead of being sorted by the current thread, so the work is split dynamically
+ * according to the actual partition sizes instead of fixed pre-sliced regions.
+ *
+ * @author Juliano Piccoli
+ * @see QuickSort
+ */
+public class IntroSort<T> extends AbstractSortingAlgorithm<T> {
+
+	private static final int INSERTION_SORT_THRESHOLD = 24;
+	private static final int NINTHER_THRESHOLD = 256;
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 13;
+
+	private final ForkJoinPool pool;
+	private final int parallelThreshold;
+
+	/**
+	 * Creates an instance that sorts in the calling thread.
+	 * @param comparator The comparator.
+	 */
+	public IntroSort(final Comparator<T> comparator) {
+		this(comparator, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates an instance that sorts in the specified pool, forking partitions longer than 8192 elements.
+	 * @param comparator The comparator.
+	 * @param pool The pool that will execute the sort.
+	 */
+	public IntroSort(final Comparator<T> comparator, final ForkJoinPool pool) {
+		this(comparator, pool, DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Creates an instance that sorts in the specified pool.
+	 * @param comparator The comparator.
+	 * @param pool The pool that will execute the sort, or null for sorting in the calling thread.
+	 * @param parallelThreshold Partitions longer than this are sorted by new tasks.
+	 */
+	public IntroSort(final Comparator<T> comparator, final ForkJoinPool pool, final int parallelThreshold) {
+		super(comparator);
+		this.pool = pool;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	@Override
+	public void sort(final T[] elements, final int position, final int length) {
+		if (length < 2) {
+			return;
+		}
+		final int depthLimit = 2 * (31 - Integer.numberOfLeadingZeros(length));
+		if (pool == null || length <= parallelThreshold) {
+			sortRange(elements, position, position + length, depthLimit, null);
+		} else {
+			pool.invoke(new SortTask(elements, position, position + length, depthLimit));
+		}
+	}
+
+	/**
+	 * Sorts the interval [low, high) of the array.
+	 * @param forkedTasks List that receives the tasks forked for long partitions, or null if no task should be forked.
+	 */
+	private void sortRange(final T[] elements, int low, int high, int depthLimit, final List<SortTask> forkedTasks) {
+		// Bounds of the partitions produced by each partitioning step: [start, end) pairs.
+		final int[] partitions = new int[6];
+		while (true) {
+			final int length = high - low;
+			if (length <= INSERTION_SORT_THRESHOLD) {
+				insertionSort(elements, low, high);
+				return;
+			}
+			if (depthLimit == 0) {
+				heapSort(elements, low, high);
+				return;
+			}
+			depthLimit--;
+
+			final int partitionsCount = partition(elements, low, high, partitions);
+
+			// The longest partition is processed by the next iteration of the loop.
+			int longest = 0;
+			for (int index = 1; index < partitionsCount; index++) {
+				if (partitions[index * 2 + 1] - partitions[index * 2] > partitions[longest * 2 + 1] - partitions[longest * 2]) {
+					longest = index;
+				}
+			}
+			for (int index = 0; index < partitionsCount; index++) {
+				if (index == longest) {
+					continue;
+				}
+				final int start = partitions[index * 2];
+				final int end = partitions[index * 2 + 1];
+				if (forkedTasks != null && end - start > parallelThreshold) {
+					final SortTask task = new SortTask(elements, start, end, depthLimit);
+					task.fork();
+					forkedTasks.add(task);
+				} else if (end - start > 1) {
+					sortRange(elements, start, end, depthLimit, forkedTasks);
+				}
+			}
+			low = partitions[longest * 2];
+			high = partitions[longest * 2 + 1];
+		}
+	}
+
+	/**
+	 * Partitions the interval [low, high) of the array around two pivots.
+	 * @param partitions Receives the bounds of the partitions that still need to be sorted.
+	 * @return The number of partitions.
+	 */
+	private int partition(final T[] elements, final int low, final int high, final int[] partitions) {
+
+		final int last = high - 1;
+		final int length = high - low;
+		final int step = length / 6;
+		final int[] candidates = { low + step, low + step * 2, low + step * 3, low + step * 4, low + step * 5 };
+		if (length >= NINTHER_THRESHOLD) {
+			final int neighbourDistance = step / 2;
+			for (final int candidate : candidates) {
+				medianOfThree(elements, candidate - neighbourDistance, candidate, candidate + neighbourDistance);
+			}
+		}
+		// Insertion sort of the five candidates.
+		for (int index = 1; index < candidates.length; index++) {
+			final T candidate = elements[candidates[index]];
+			int insertionIndex = index - 1;
+			while (insertionIndex >= 0 && comparator.compare(elements[candidates[insertionIndex]], candidate) > 0) {
+				elements[candidates[insertionIndex + 1]] = elements[candidates[insertionIndex]];
+				insertionIndex--;
+			}
+			elements[candidates[insertionIndex + 1]] = candidate;
+		}
+
+		if (comparator.compare(elements[candidates[1]], elements[candidates[3]]) == 0) {
+			return partitionAroundSinglePivot(elements, low, high, elements[candidates[2]], partitions);
+		}
+
+		swap(elements, low, candidates[1]);
+		swap(elements, last, candidates[3]);
+		final T pivot1 = elements[low];
+		final T pivot2 = elements[last];
+
+		// Invariant: [low + 1, less) < pivot1, [less, index) between the pivots, (great, last) > pivot2.
+		int less = low + 1;
+		int great = last - 1;
+		for (int index = less; index <= great; index++) {
+			final T element = elements[index];
+			if (comparator.compare(element, pivot1) < 0) {
+				swap(elements, index, less);
+				less++;
+			} else if (comparator.compare(element, pivot2) > 0) {
+				while (index < great && comparator.compare(elements[great], pivot2) > 0) {
+					great--;
+				}
+				swap(elements, index, great);
+				great--;
+				if (comparator.compare(elements[index], pivot1) < 0) {
+					swap(elements, index, less);
+					less++;
+				}
+			}
+		}
+		less--;
+		great++;
+		swap(elements, low, less);
+		swap(elements, last, great);
+
+		partitions[0] = low;
+		partitions[1] = less;
+		partitions[2] = less + 1;
+		partitions[3] = great;
+		partitions[4] = great + 1;
+		partitions[5] = high;
+		return 3;
+
+	}
+
+	/**
+	 * Partitions the interval [low, high) in elements less than, equal to and greater than the pivot.
+	 * Only the first and last partitions need to be sorted.
+	 */
+	private int partitionAroundSinglePivot(final T[] elements, final int low, final int high, final T pivot, final int[] partitions) {
+		int less = low;
+		int index = low;
+		int great = high - 1;
+		while (index <= great) {
+			final int result = comparator.compare(elements[index], pivot);
+			if (result < 0) {
+				swap(elements, less, index);
+				less++;
+				index++;
+			} else if (result > 0) {
+				swap(elements, index, great);
+				great--;
+			} else {
+				index++;
+			}
+		}
+		partitions[0] = low;
+		partitions[1] = less;
+		partitions[2] = great + 1;
+		partitions[3] = high;
+		return 2;
+	}
+
+	/**
+	 * Places the median of the three elements at the middle index.
+	 */
+	private void medianOfThree(final T[] elements, final int index1, final int index2, final int index3) {
+		if (comparator.compare(elements[index1], elements[index2]) > 0) {
+			swap(elements, index1, index2);
+		}
+		if (comparator.compare(elements[index2], elements[index3]) > 0) {
+			swap(elements, index2, index3);
+			if (comparator.compare(elements[index1], elements[index2]) > 0) {
+				swap(elements, index1, index2);
+			}
+		}
+	}
+
+	private void insertionSort(final T[] elements, final int low, final int high) {
+		for (int index = low + 1; index < high; index++) {
+			final T element = elements[index];
+			int insertionIndex = index - 1;
+			while (insertionIndex >= low && comparator.compare(elements[insertionIndex], element) > 0) {
+				elements[insertionIndex + 1] = elements[insertionIndex];
+				insertionIndex--;
+			}
+			elements[insertionIndex + 1] = element;
+		}
+	}
+
+	private void heapSort(final T[] elements, final int low, final int high) {
+		final int length = high - low;
+		for (int node = length / 2 - 1; node >= 0; node--) {
+			siftDown(elements, low, node, length);
+		}
+		for (int heapLength = length - 1; heapLength > 0; heapLength--) {
+			swap(elements, low, low + heapLength);
+			siftDown(elements, low, 0, heapLength);
+		}
+	}
+
+	private void siftDown(final T[] elements, final int low, int node, final int heapLength) {
+		final T element = elements[low + node];
+		while (true) {
+			int child = node * 2 + 1;
+			if (child >= heapLength) {
+				break;
+			}
+			if (child + 1 < heapLength && comparator.compare(elements[low + child + 1], elements[low + child]) > 0) {
+				child++;
+			}
+			if (comparator.compare(elements[low + child], element) <= 0) {
+				break;
+			}
+			elements[low + node] = elements[low + child];
+			node = child;
+		}
+		elements[low + node] = element;
+	}
+
+	private static <T> void swap(final T[] elements, final int index1, final int index2) {
+		final T element = elements[index1];
+		elements[index1] = elements[index2];
+		elements[index2] = element;
+	}
+
+	/**
+	 * Sorts an interval of the array in the pool. Partitions longer than the parallel threshold
+	 * are forked as new tasks, which are joined before the task finishes.
+	 */
+	private class SortTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final T[] elements;
+		private final int low;
+		private final int high;
+		private final int depthLimit;
+
+		private SortTask(final T[] elements, final int low, final int high, final int depthLimit) {
+			this.elements = elements;
+			this.low = low;
+			this.high = high;
+			this.depthLimit = depthLimit;
+		}
+
+		@Override
+		protected void compute() {
+			final List<SortTask> forkedTasks = new ArrayList<>();
+			sortRange(elements, low, high, depthLimit, forkedTasks);
+			for (final SortTask task : forkedTasks) {
+				task.join();
+			}
+		}
+
+	}
+
+}
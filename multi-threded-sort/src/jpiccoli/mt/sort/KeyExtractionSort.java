@@ -0,0 +1,114 @@
+package jpiccoli.mt.sort;
+
+import java.util.concurrent.Executor;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sorts arrays of objects by a primitive int or long key without calling a {@link java.util.Comparator}
+ * on the hot path. The keys are extracted once, in parallel, into a primitive array. The keys are
+ * then sorted along with the original indexes of their elements by a parallel radix sort, and the
+ * resulting permutation is applied to the object array in parallel.
+ * <p>
+ * The sort is stable: elements with equal keys keep their relative order. The int and long
+ * variants have different names, like {@link java.util.Comparator#comparingInt} and
+ * {@link java.util.Comparator#comparingLong}, so that lambda expressions are not ambiguous.
+ *
+ * @author Juliano Piccoli
+ * @see IntRadixSort#sort(int[], int[], int, int, int)
+ * @see LongRadixSort#sort(long[], int[], int, int, int)
+ */
+public class KeyExtractionSort {
+
+	private final Executor executor;
+	private final IntRadixSort intRadixSort;
+	private final LongRadixSort longRadixSort;
+
+	public KeyExtractionSort(final Executor executor) {
+		this.executor = executor;
+		this.intRadixSort = new IntRadixSort(executor);
+		this.longRadixSort = new LongRadixSort(executor);
+	}
+
+	/**
+	 * Sorts the full contents of the specified array in ascending order of the extracted int keys.
+	 * @param elements Array containing the elements to be sorted
+	 * @param keyExtractor Function that extracts the sort key of an element
+	 */
+	public <T> void sortByInt(final T[] elements, final ToIntFunction<? super T> keyExtractor) {
+		sortByInt(elements, 0, elements.length, keyExtractor);
+	}
+
+	/**
+	 * Sorts the contents of the specified interval of the 'elements' array in ascending order of the extracted int keys.
+	 * @param elements Array containing the elements to be sorted
+	 * @param position Index of the first element of the array to be sorted
+	 * @param length Number of elements to be sorted
+	 * @param keyExtractor Function that extracts the sort key of an element
+	 */
+	public <T> void sortByInt(final T[] elements, final int position, final int length, final ToIntFunction<? super T> keyExtractor) {
+		if (length < 2) {
+			return;
+		}
+		final int slices = ParallelTasks.slices(length);
+		final int[] keys = new int[length];
+		final int[] indexes = new int[length];
+		ParallelTasks.forEachSlice(executor, length, slices, (start, end) -> {
+			for (int index = start; index < end; index++) {
+				keys[index] = keyExtractor.applyAsInt(elements[position + index]);
+				indexes[index] = index;
+			}
+		});
+		intRadixSort.sort(keys, indexes, 0, length, slices);
+		applyPermutation(elements, position, length, indexes, slices);
+	}
+
+	/**
+	 * Sorts the full contents of the specified array in ascending order of the extracted long keys.
+	 * @param elements Array containing the elements to be sorted
+	 * @param keyExtractor Function that extracts the sort key of an element
+	 */
+	public <T> void sortByLong(final T[] elements, final ToLongFunction<? super T> keyExtractor) {
+		sortByLong(elements, 0, elements.length, keyExtractor);
+	}
+
+	/**
+	 * Sorts the contents of the specified interval of the 'elements' array in ascending order of the extracted long keys.
+	 * @param elements Array containing the elements to be sorted
+	 * @param position Index of the first element of the array to be sorted
+	 * @param length Number of elements to be sorted
+	 * @param keyExtractor Function that extracts the sort key of an element
+	 */
+	public <T> void sortByLong(final T[] elements, final int position, final int length, final ToLongFunction<? super T> keyExtractor) {
+		if (length < 2) {
+			return;
+		}
+		final int slices = ParallelTasks.slices(length);
+		final long[] keys = new long[length];
+		final int[] indexes = new int[length];
+		ParallelTasks.forEachSlice(executor, length, slices, (start, end) -> {
+			for (int index = start; index < end; index++) {
+				keys[index] = keyExtractor.applyAsLong(elements[position + index]);
+				indexes[index] = index;
+			}
+		});
+		longRadixSort.sort(keys, indexes, 0, length, slices);
+		applyPermutation(elements, position, length, indexes, slices);
+	}
+
+	/**
+	 * Reorders the region so that its i-th element becomes the element that was at the region index
+	 * permutation[i]. The elements are gathered in parallel into an auxiliary array and then copied back.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> void applyPermutation(final T[] elements, final int position, final int length, final int[] permutation, final int slices) {
+		final T[] auxiliary = (T[]) new Object[length];
+		ParallelTasks.forEachSlice(executor, length, slices, (start, end) -> {
+			for (int index = start; index < end; index++) {
+				auxiliary[index] = elements[position + permutation[index]];
+			}
+		});
+		ParallelTasks.forEachSlice(executor, length, slices, (start, end) -> System.arraycopy(auxiliary, start, elements, position + start, end - start));
+	}
+
+}
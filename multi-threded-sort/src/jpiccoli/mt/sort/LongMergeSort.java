@@ -0,0 +1,78 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Implementation of the bottom-up merge sort algorithm for arrays of primitive long values.
+ * The initial blocks are sorted and merged by the branch-free kernels of {@link SortingNetworks}.
+ * 
+ * @author Juliano Piccoli
+ * @see MergeSort
+ */
+public class LongMergeSort implements LongSortingAlgorithm {
+	
+	/**
+	 * Merge the contents of the two ordered sub-arrays contained in the source argument and stores
+	 * the resulting sorted array in the destination argument.
+	 * 
+	 * @param source Array containing the two source sorted arrays to be merged
+	 * @param destination Array where the merged contents of the two source arrays will be stored
+	 * @param position Index in the source array where the two sorted sub-arrays start.
+	 * @param length1 Length of the first sub-array
+	 * @param length2 length of the second sub-array
+	 */
+	void merge(final long[] source, final long[] destination, final int position, final int length1, final int length2) {
+		SortingNetworks.merge(source, destination, position, length1, length2);
+	}
+	
+	@Override
+	public void sort(final long[] elements, final int position, final int length) {
+
+		long[] source = elements;
+		long[] aux = new long[length];
+		
+		// Avoiding an arraycopy when the full array is being sorted.
+		if (position != 0 || length != elements.length) {
+			source = new long[length];
+			System.arraycopy(elements, position, source, 0, length);
+		}
+		
+		// Blocks of SortingNetworks.LEAF_LENGTH elements are sorted by a sorting network, so the
+		// merge rounds start from sorted blocks of this length instead of single elements.
+		for (int index = 0; index < length; index += SortingNetworks.LEAF_LENGTH) {
+			SortingNetworks.sort(source, index, Math.min(SortingNetworks.LEAF_LENGTH, length - index));
+		}
+		int arrayLength = SortingNetworks.LEAF_LENGTH;
+		int segmentLength = arrayLength * 2;
+		// As in the merge rounds, a trailing partial block is merged with the last full block.
+		final int partialBlockLength = length % arrayLength;
+		if (partialBlockLength > 0 && length > arrayLength) {
+			final int lastBlockIndex = length - partialBlockLength - arrayLength;
+			merge(source, aux, lastBlockIndex, arrayLength, partialBlockLength);
+			System.arraycopy(aux, lastBlockIndex, source, lastBlockIndex, arrayLength + partialBlockLength);
+		}
+		while(segmentLength <= length) {
+			int index = 0;
+			int nextIndex = index + segmentLength;
+			for (; nextIndex <= length; index += segmentLength, nextIndex += segmentLength) {
+				merge(source, aux, index, arrayLength, arrayLength);
+			}
+			// Same handling of the remaining elements as in MergeSort: they are merged with the last sorted segment.
+			int remaining = length - index;
+			if (remaining > 0) {
+				int lastSortedSegmentIndex = index - segmentLength;
+				System.arraycopy(aux, lastSortedSegmentIndex, source, lastSortedSegmentIndex, segmentLength);
+				merge(source, aux, lastSortedSegmentIndex, segmentLength, remaining);
+			}
+			long[] temp = source;
+			source = aux;
+			aux = temp;
+			arrayLength *= 2;
+			segmentLength = arrayLength * 2;
+		}
+		
+		if (source != elements) {
+			System.arraycopy(source, 0, elements, position, length);
+		}
+		
+	}
+
+}
@@ -0,0 +1,65 @@
+package jpiccoli.mt.sort;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Sorting algorithm capable of using multiple threads to sort arrays of primitive
+ * long values. Relies on a provided {@link LongSortingAlgorithm} for sorting each slice.
+ *
+ * @author Juliano Piccoli
+ * @see MultiThreadedSort
+ */
+public class LongMultiThreadedSort extends PrimitiveMultiThreadedSort<long[]> implements LongSortingAlgorithm {
+
+	private final LongSortingAlgorithm sortingAlgorithm;
+	private final LongMergeSort mergeSort;
+
+	public LongMultiThreadedSort(final LongSortingAlgorithm sortingAlgorithm, final Executor executor) {
+		super(executor);
+		this.sortingAlgorithm = sortingAlgorithm;
+		this.mergeSort = new LongMergeSort();
+	}
+
+	/**
+	 * Sorts the specified array using a number of slices that is equal to the number
+	 * of logical processing cores available to the JVM.
+	 *
+	 * @see {@link #sort(long[], int, int, int)}
+	 */
+	@Override
+	public void sort(final long[] source, final int position, final int length) {
+		sort(source, position, length, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sorts the specified array region using multiple threads. The array is divided into
+	 * the provided number of slices and each slice is sorted independently using the
+	 * underlying sorting algorithm provided in the constructor. The ordered slices are
+	 * then merged using the same approach as the merge-sort algorithm.
+	 *
+	 * @param source   Array containing the elements to be sorted.
+	 * @param position Index of the first element to be sorted.
+	 * @param length   Number of elements to be sorted.
+	 * @param slices   Number of slices in which the array will be divided.
+	 * @see {@link MultiThreadedSort#sort(Object[], int, int, int)}
+	 */
+	public void sort(final long[] source, final int position, final int length, final int slices) {
+		sortRegion(source, position, length, slices);
+	}
+
+	@Override
+	void sortSlice(final long[] elements, final int position, final int length) {
+		sortingAlgorithm.sort(elements, position, length);
+	}
+
+	@Override
+	void merge(final long[] source, final long[] destination, final int position, final int length1, final int length2) {
+		mergeSort.merge(source, destination, position, length1, length2);
+	}
+
+	@Override
+	long[] newArray(final int length) {
+		return new long[length];
+	}
+
+}
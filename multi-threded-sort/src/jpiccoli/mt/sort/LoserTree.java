@@ -0,0 +1,99 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Tournament tree of losers used for merging k sorted sources in a single pass.
+ * Every internal node stores the source that lost the match played at that node, and the
+ * overall winner is kept apart. After the winner's head element is consumed, only the matches
+ * on the path from its leaf to the root are replayed, so each output element costs
+ * about log2(k) comparisons.
+ * <p>
+ * Subclasses define how the head elements of the sources are compared and when a source is exhausted.
+ * When two heads are equal, the source with the smallest index wins, which keeps the merge stable.
+ * 
+ * @author Juliano Piccoli
+ */
+abstract class LoserTree {
+
+	private final int sources;
+	private final int[] tree;
+
+	LoserTree(final int sources) {
+		this.sources = sources;
+		this.tree = new int[sources];
+	}
+
+	/**
+	 * Compares the current head elements of two sources. Only called for sources that are not exhausted.
+	 * @param source1 Index of the first source.
+	 * @param source2 Index of the second source.
+	 * @return A negative integer, zero, or a positive integer as the head of the first source is
+	 * less than, equal to, or greater than the head of the second one.
+	 */
+	protected abstract int compareHeads(final int source1, final int source2);
+
+	/**
+	 * Checks if the specified source has no more elements.
+	 * @param source Index of the source.
+	 * @return True if the source is exhausted.
+	 */
+	protected abstract boolean isExhausted(final int source);
+
+	/**
+	 * Plays all the matches of the tournament. Must be called once before retrieving the first winner.
+	 */
+	void initialize() {
+		final int[] winners = new int[sources * 2];
+		for (int source = 0; source < sources; source++) {
+			winners[sources + source] = source;
+		}
+		for (int node = sources - 1; node > 0; node--) {
+			final int source1 = winners[node * 2];
+			final int source2 = winners[node * 2 + 1];
+			if (wins(source1, source2)) {
+				winners[node] = source1;
+				tree[node] = source2;
+			} else {
+				winners[node] = source2;
+				tree[node] = source1;
+			}
+		}
+		tree[0] = sources > 1 ? winners[1] : 0;
+	}
+
+	/**
+	 * Retrieves the source whose head element is the next one in the merged order.
+	 * If this source is exhausted, all the sources are exhausted.
+	 * @return Index of the winning source.
+	 */
+	int winner() {
+		return tree[0];
+	}
+
+	/**
+	 * Replays the matches of the current winner. Must be called after the head element
+	 * of the winning source was consumed.
+	 */
+	void replayWinner() {
+		int winner = tree[0];
+		for (int node = (winner + sources) >>> 1; node > 0; node >>>= 1) {
+			final int loser = tree[node];
+			if (wins(loser, winner)) {
+				tree[node] = winner;
+				winner = loser;
+			}
+		}
+		tree[0] = winner;
+	}
+
+	private boolean wins(final int source1, final int source2) {
+		if (isExhausted(source1)) {
+			return false;
+		}
+		if (isExhausted(source2)) {
+			return true;
+		}
+		final int result = compareHeads(source1, source2);
+		return result < 0 || (result == 0 && source1 < source2);
+	}
+
+}
@@ -9,8 +9,20 @@ import java.util.Comparator;
  */
 public class MergeSort<T> extends AbstractSortingAlgorithm<T> {
 	
+	private final ScratchBufferPool bufferPool;
+	
 	public MergeSort(final Comparator<T> comparator) {
+		this(comparator, ScratchBufferPool.NONE);
+	}
+	
+	/**
+	 * Creates an instance that borrows its auxiliary arrays from the specified pool.
+	 * @param comparator The comparator.
+	 * @param bufferPool The pool of auxiliary arrays.
+	 */
+	public MergeSort(final Comparator<T> comparator, final ScratchBufferPool bufferPool) {
 		super(comparator);
+		this.bufferPool = bufferPool;
 	}
 	
 	/**
@@ -24,46 +36,109 @@ public class MergeSort<T> extends AbstractSortingAlgorithm<T> {
 	 * @param length2 length of the second sub-array
 	 */
 	void merge(final T[] source, final T[] destination, final int position, int length1, final int length2) {
+		merge(source, position, length1, source, position + length1, length2, destination, position);
+	}
+	
+	/**
+	 * Merge the contents of two ordered sub-arrays, which may be stored in different arrays,
+	 * and stores the resulting sorted array in the destination argument. When two elements are
+	 * equal, the one from the first sub-array is stored first.
+	 * 
+	 * @param source1 Array containing the first sorted sub-array
+	 * @param position1 Index of the first element of the first sub-array
+	 * @param length1 Length of the first sub-array
+	 * @param source2 Array containing the second sorted sub-array
+	 * @param position2 Index of the first element of the second sub-array
+	 * @param length2 Length of the second sub-array
+	 * @param destination Array where the merged contents of the two sub-arrays will be stored
+	 * @param destinationPosition Index in the destination array where the merged contents will be stored
+	 */
+	void merge(final T[] source1, final int position1, final int length1, final T[] source2, final int position2, final int length2,
+			final T[] destination, final int destinationPosition) {
+		
+		// Runs that are already in order, which is common with nearly sorted input, are just copied.
+		if (length1 > 0 && length2 > 0 && comparator.compare(source1[position1 + length1 - 1], source2[position2]) <= 0) {
+			System.arraycopy(source1, position1, destination, destinationPosition, length1);
+			System.arraycopy(source2, position2, destination, destinationPosition + length1, length2);
+			return;
+		}
 		
-		final int indexLimit1 = position + length1;
-		final int indexLimit2 = indexLimit1 + length2;
-		int sourceIndex1 = position;
-		int sourceIndex2 = indexLimit1;
-		int destinationIndex = position;
+		final int indexLimit1 = position1 + length1;
+		final int indexLimit2 = position2 + length2;
+		int sourceIndex1 = position1;
+		int sourceIndex2 = position2;
+		int destinationIndex = destinationPosition;
 		
 		while(sourceIndex1 < indexLimit1 && sourceIndex2 < indexLimit2) {
-			if (comparator.compare(source[sourceIndex1], source[sourceIndex2]) > 0) {
-				destination[destinationIndex] = source[sourceIndex2];
+			if (comparator.compare(source1[sourceIndex1], source2[sourceIndex2]) > 0) {
+				destination[destinationIndex] = source2[sourceIndex2];
 				sourceIndex2++;
 			} else {
-				destination[destinationIndex] = source[sourceIndex1];
+				destination[destinationIndex] = source1[sourceIndex1];
 				sourceIndex1++;
 			}
 			destinationIndex++;
 		}
 		while(sourceIndex1 < indexLimit1) {
-			destination[destinationIndex] = source[sourceIndex1];
+			destination[destinationIndex] = source1[sourceIndex1];
 			sourceIndex1++;
 			destinationIndex++;
 		}
 		while(sourceIndex2 < indexLimit2) {
-			destination[destinationIndex] = source[sourceIndex2];
+			destination[destinationIndex] = source2[sourceIndex2];
 			sourceIndex2++;
 			destinationIndex++;
 		}
 		
 	}
 	
+	/**
+	 * Finds how many elements of the first sub-array are among the first 'rank' elements
+	 * of the merge of the two specified sorted sub-arrays (co-ranking). The result is consistent
+	 * with the ordering produced by {@link #merge(Object[], int, int, Object[], int, int, Object[], int)},
+	 * so merging the two sub-arrays in independent ranges split at the co-ranks produces the
+	 * same result as a single merge. The search takes O(log(min(length1, length2))) comparisons.
+	 * 
+	 * @param rank Number of elements of the merged output.
+	 * @param source1 Array containing the first sorted sub-array
+	 * @param position1 Index of the first element of the first sub-array
+	 * @param length1 Length of the first sub-array
+	 * @param source2 Array containing the second sorted sub-array
+	 * @param position2 Index of the first element of the second sub-array
+	 * @param length2 Length of the second sub-array
+	 * @return Number of elements taken from the first sub-array. The remaining 'rank' minus
+	 * the returned value are taken from the second one.
+	 */
+	int coRank(final int rank, final T[] source1, final int position1, final int length1, final T[] source2, final int position2, final int length2) {
+		int low = Math.max(0, rank - length2);
+		int high = Math.min(rank, length1);
+		while (low < high) {
+			final int count1 = (low + high) >>> 1;
+			final int count2 = rank - count1;
+			// If the next element of the first sub-array is not greater than the last element taken
+			// from the second one, it must be part of the output prefix as well.
+			if (comparator.compare(source2[position2 + count2 - 1], source1[position1 + count1]) >= 0) {
+				low = count1 + 1;
+			} else {
+				high = count1;
+			}
+		}
+		return low;
+	}
+	
 	@Override
-	@SuppressWarnings("unchecked")
 	public void sort(final T[] elements, final int position, final int length) {
 
+		// The borrowed buffers may be longer than the sorted region. Only their first 'length' elements are used.
+		final T[] auxiliaryBuffer = bufferPool.borrow(length);
+		T[] copyBuffer = null;
 		T[] source = elements;
-		T[] aux = (T[]) new Object[length];
+		T[] aux = auxiliaryBuffer;
 		
 		// Avoiding an arraycopy when the full array is being sorted.
 		if (position != 0 || length != elements.length) {
-			source = (T[]) new Object[length];
+			copyBuffer = bufferPool.borrow(length);
+			source = copyBuffer;
 			System.arraycopy(elements, position, source, 0, length);
 		}
 		
@@ -92,7 +167,13 @@ public class MergeSort<T> extends AbstractSortingAlgorithm<T> {
 		}
 		
 		if (source != elements) {
-			System.arraycopy(source, 0, elements, position, source.length);
+			System.arraycopy(source, 0, elements, position, length);
+		}
+		
+		// Buffers that are not given back because of an exception are simply discarded.
+		bufferPool.release(auxiliaryBuffer, length);
+		if (copyBuffer != null) {
+			bufferPool.release(copyBuffer, length);
 		}
 		
 	}
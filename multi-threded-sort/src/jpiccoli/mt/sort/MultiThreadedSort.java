@@ -1,8 +1,14 @@
 package jpiccoli.mt.sort;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.concurrent.CountDownLatch;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  * Sorting algorithm capable of using multiple threads to execute the sorting
@@ -12,17 +18,47 @@ import java.util.concurrent.Executor;
  */
 public class MultiThreadedSort<T> extends AbstractSortingAlgorithm<T> {
 
+    // Number of sampled elements per bucket used for choosing the sample sort splitters.
+    private static final int OVERSAMPLING = 32;
+    // Minimum number of elements sorted by a task of the segmented sort.
+    private static final int MINIMUM_SEGMENT_BATCH_LENGTH = 1 << 13;
+
     private final SortingAlgorithm<T> sortingAlgorithm;
     private final Executor executor;
+    private final MultiThreadedSortStrategy strategy;
+    private final ScratchBufferPool bufferPool;
+    private volatile SortListener sortListener = SortListener.NONE;
 
     public MultiThreadedSort(final AbstractSortingAlgorithm<T> sortingAlgorithm, final Executor executor) {
         this(sortingAlgorithm, sortingAlgorithm.getComparator(), executor);
     }
 
+    public MultiThreadedSort(final AbstractSortingAlgorithm<T> sortingAlgorithm, final Executor executor, final MultiThreadedSortStrategy strategy) {
+        this(sortingAlgorithm, sortingAlgorithm.getComparator(), executor, strategy);
+    }
+
     public MultiThreadedSort(final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator, final Executor executor) {
+        this(sortingAlgorithm, comparator, executor, MultiThreadedSortStrategy.PAIRWISE_MERGE);
+    }
+
+    public MultiThreadedSort(final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator, final Executor executor,
+            final MultiThreadedSortStrategy strategy) {
+        this(sortingAlgorithm, comparator, executor, strategy, ScratchBufferPool.NONE);
+    }
+
+    /**
+     * Creates an instance that borrows the auxiliary arrays of the merge and distribution phases from
+     * the specified pool. The same pool can be provided to the underlying sorting algorithm
+     * (see {@link MergeSort#MergeSort(Comparator, ScratchBufferPool)}), in which case the executor
+     * threads reuse their buffers across the slice sorts.
+     */
+    public MultiThreadedSort(final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator, final Executor executor,
+            final MultiThreadedSortStrategy strategy, final ScratchBufferPool bufferPool) {
         super(comparator);
         this.sortingAlgorithm = sortingAlgorithm;
         this.executor = executor;
+        this.strategy = strategy;
+        this.bufferPool = bufferPool;
     }
 
     /**
@@ -39,7 +75,10 @@ public class MultiThreadedSort<T> extends AbstractSortingAlgorithm<T> {
      * Sorts the specified array region using multiple threads. The array is divided into
      * the provided number of slices and each slice is sorted independently using the
      * underlying sorting algorithm provided in the constructor. The ordered slices are
-     * then merged using the same approach as the merge-sort algorithm.
+     * then merged using the same approach as the merge-sort algorithm, or in a single
+     * k-way pass when the {@link MultiThreadedSortStrategy#K_WAY_MERGE} strategy is used.
+     * When the {@link MultiThreadedSortStrategy#SAMPLE_SORT} strategy is used, the slices are
+     * buckets of elements defined by sampled splitters and no merge is necessary.
      *
      * @param source   Array containing the elements to be sorted.
      * @param position Index of the first element to be sorted.
@@ -48,49 +87,539 @@ public class MultiThreadedSort<T> extends AbstractSortingAlgorithm<T> {
      * @see {@link MergeSort#merge(Object[], Object[], int, int, int)}
      */
     public void sort(final T[] source, final int position, final int length, final int slices) {
+        final SortListener listener = sortListener;
+        final long startTimestamp = System.nanoTime();
+        final long initialComparisons = comparisonCount();
+        sortRegion(source, position, length, slices);
+        if (listener != SortListener.NONE) {
+            notifySortCompleted(listener, length, slices, startTimestamp, initialComparisons);
+        }
+    }
+
+    /**
+     * Registers a listener that receives measurements of the sort phases: the queue wait and run
+     * times of each slice, the duration of each merge round and the duration of each sort.
+     * The measurements have a small cost, which is avoided when the listener is {@link SortListener#NONE},
+     * the default. When the comparator is a {@link CountingComparator}, the number of comparisons of
+     * each sort is also reported.
+     *
+     * @param sortListener The listener, or null for removing the current one.
+     */
+    public void setSortListener(final SortListener sortListener) {
+        this.sortListener = sortListener == null ? SortListener.NONE : sortListener;
+    }
+
+    private void sortRegion(final T[] source, final int position, final int length, final int slices) {
+        if (length < 2) {
+            return;
+        } else if (slices <= 1) {
+            sortingAlgorithm.sort(source, position, length);
+            return;
+        } else if (slices > length) {
+            sortRegion(source, position, length, length);
+            return;
+        }
+        if (strategy == MultiThreadedSortStrategy.SAMPLE_SORT) {
+            sampleSort(source, position, length, slices, TaskGroup.NOT_CANCELLED);
+            return;
+        }
         // The source array is divided in partitions. The partitions will be ordered in parallel by multiple threads.
+        // The calling thread helps sorting the partitions instead of just waiting for them.
+        final TaskGroup taskGroup = new TaskGroup(executor);
+        sortSlices(source, position, length, slices, taskGroup::execute);
+        taskGroup.await();
+        mergeSortedSlices(source, position, length, slices, TaskGroup.NOT_CANCELLED);
+    }
+
+    /**
+     * Sorts the specified array region asynchronously. The slices are sorted by independent tasks and
+     * the merge phase is chained as a dependent stage which runs when all the slices are sorted, so no
+     * thread blocks waiting for another phase to finish. The tasks that the merge phase distributes
+     * are helped by the thread running the stage, which also makes this method safe to be called
+     * from a task running in the executor itself.
+     * <p>
+     * Cancelling the returned future skips the slice sorts and merge rounds that did not start yet.
+     * The ones already running are not interrupted, so the region is not sorted after a cancellation,
+     * but it still holds a permutation of its original elements once the running tasks finish.
+     * The returned future completes as soon as it is cancelled; {@link SortFuture#whenTerminated()}
+     * completes when those tasks are finished.
+     *
+     * @param source   Array containing the elements to be sorted.
+     * @param position Index of the first element to be sorted.
+     * @param length   Number of elements to be sorted.
+     * @param slices   Number of slices in which the array will be divided.
+     * @return A future which completes with the source array when the region is sorted.
+     * @see {@link #sort(Object[], int, int, int)}
+     */
+    public SortFuture<T> sortAsync(final T[] source, final int position, final int length, final int slices) {
+        if (length < 2) {
+            final SortFuture<T> result = new SortFuture<>();
+            result.complete(source);
+            result.terminate();
+            return result;
+        } else if (slices < 1) {
+            return sortAsync(source, position, length, 1);
+        } else if (slices > length) {
+            return sortAsync(source, position, length, length);
+        }
+        final SortListener listener = sortListener;
+        final long startTimestamp = System.nanoTime();
+        final long initialComparisons = comparisonCount();
+        final SortFuture<T> result = new SortFuture<>();
+        final BooleanSupplier cancelled = result::isDone;
+        final CompletableFuture<Void> sorted;
+        if (strategy == MultiThreadedSortStrategy.SAMPLE_SORT) {
+            sorted = CompletableFuture.runAsync(() -> {
+                if (!cancelled.getAsBoolean()) {
+                    sampleSort(source, position, length, slices, cancelled);
+                }
+            }, executor);
+        } else {
+            final List<CompletableFuture<Void>> sliceStages = new ArrayList<>(slices);
+            sortSlices(source, position, length, slices, task -> sliceStages.add(CompletableFuture.runAsync(() -> {
+                if (!cancelled.getAsBoolean()) {
+                    task.run();
+                }
+            }, executor)));
+            sorted = CompletableFuture.allOf(sliceStages.toArray(new CompletableFuture<?>[sliceStages.size()])).thenRunAsync(() -> {
+                if (slices > 1 && !cancelled.getAsBoolean()) {
+                    mergeSortedSlices(source, position, length, slices, cancelled);
+                }
+            }, executor);
+        }
+        sorted.whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                if (listener != SortListener.NONE && !result.isDone()) {
+                    notifySortCompleted(listener, length, slices, startTimestamp, initialComparisons);
+                }
+                result.complete(source);
+            }
+            result.terminate();
+        });
+        return result;
+    }
+
+    /**
+     * Sorts the specified array region asynchronously using a number of slices that is equal to the
+     * number of logical processing cores available to the JVM.
+     *
+     * @see {@link #sortAsync(Object[], int, int, int)}
+     */
+    public SortFuture<T> sortAsync(final T[] source, final int position, final int length) {
+        return sortAsync(source, position, length, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sorts many independent segments of the array in a single call, using a degree of parallelism
+     * equal to the number of logical processing cores available to the JVM.
+     *
+     * @see {@link #sortSegments(Object[], int[], int)}
+     */
+    public void sortSegments(final T[] elements, final int[] offsets) {
+        sortSegments(elements, offsets, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sorts many independent segments of the array in a single call. The segment i is the interval
+     * [offsets[i], offsets[i + 1]) of the array, so the segments are laid out back to back, like the
+     * groups of elements sharing a key. Each segment is sorted independently from the others.
+     * <p>
+     * The segments are scheduled according to their lengths: consecutive short segments are batched
+     * into tasks of similar total length, avoiding one task per segment, while a segment longer than
+     * the share of elements of one thread is sorted with the multi-threaded algorithm of this instance,
+     * using a number of slices proportional to its length.
+     *
+     * @param elements    Array containing the segments.
+     * @param offsets     Non-decreasing indexes of the segment boundaries.
+     * @param parallelism Number of threads expected to work on the segments.
+     */
+    public void sortSegments(final T[] elements, final int[] offsets, final int parallelism) {
+        for (int index = 0; index < offsets.length; index++) {
+            if (offsets[index] < 0 || offsets[index] > elements.length || (index > 0 && offsets[index] < offsets[index - 1])) {
+                throw new IllegalArgumentException("Invalid segment offset at index " + index + ": " + offsets[index]);
+            }
+        }
+        if (offsets.length < 2 || parallelism < 1) {
+            return;
+        }
+
+        final long totalLength = offsets[offsets.length - 1] - offsets[0];
+        final long threadShare = Math.max(MINIMUM_SEGMENT_BATCH_LENGTH, totalLength / parallelism);
+        // Several batches per thread leave room for balancing segments of different lengths.
+        final long batchLength = Math.max(MINIMUM_SEGMENT_BATCH_LENGTH, totalLength / (parallelism * 4L));
+
+        final TaskGroup taskGroup = new TaskGroup(executor);
+        final List<int[]> longSegments = new ArrayList<>();
+        int batchStart = 0;
+        long batchElements = 0;
+        for (int segment = 0; segment < offsets.length - 1; segment++) {
+            final int segmentLength = offsets[segment + 1] - offsets[segment];
+            if (segmentLength > threadShare) {
+                longSegments.add(new int[] { offsets[segment], segmentLength });
+                continue;
+            }
+            batchElements += segmentLength;
+            if (batchElements >= batchLength) {
+                submitSegmentBatch(taskGroup, elements, offsets, batchStart, segment + 1, threadShare);
+                batchStart = segment + 1;
+                batchElements = 0;
+            }
+        }
+        submitSegmentBatch(taskGroup, elements, offsets, batchStart, offsets.length - 1, threadShare);
+
+        // The calling thread sorts the long segments, whose slices are run by the executor threads
+        // that are not busy with the batches, and then helps with the remaining batches.
+        for (final int[] longSegment : longSegments) {
+            final int segmentLength = longSegment[1];
+            final int slices = (int) Math.min(parallelism, (segmentLength * (long) parallelism + totalLength - 1) / totalLength);
+            sort(elements, longSegment[0], segmentLength, slices);
+        }
+        taskGroup.await();
+    }
+
+    /**
+     * Submits a task for sorting the short segments in the interval [firstSegment, lastSegment).
+     */
+    private void submitSegmentBatch(final TaskGroup taskGroup, final T[] elements, final int[] offsets, final int firstSegment,
+            final int lastSegment, final long threadShare) {
+        if (firstSegment < lastSegment) {
+            taskGroup.execute(() -> {
+                for (int segment = firstSegment; segment < lastSegment; segment++) {
+                    final int segmentLength = offsets[segment + 1] - offsets[segment];
+                    // Long segments are skipped, they are sorted separately.
+                    if (segmentLength > 1 && segmentLength <= threadShare) {
+                        sortingAlgorithm.sort(elements, offsets[segment], segmentLength);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Submits one task for sorting each slice of the region to the specified consumer.
+     */
+    private void sortSlices(final T[] source, final int position, final int length, final int slices, final Consumer<Runnable> submitter) {
         final int partitionLength = length / slices;
-        CountDownLatch countDownLatch = new CountDownLatch(slices);
         for (int sliceIndex = 0; sliceIndex < slices - 1; sliceIndex++) {
             final int slicePosition = position + sliceIndex * partitionLength;
-            executor.execute(new RunnableWrapper(countDownLatch, () ->
-                    sortingAlgorithm.sort(source, slicePosition, partitionLength)
-            ));
+            submitter.accept(instrumentSlice(sliceIndex, partitionLength, () -> sortingAlgorithm.sort(source, slicePosition, partitionLength)));
         }
-        // The last partition will include the remaining items of the array.
+        // The last partition will include the remaining items of the region.
         // This is necessary because the last partition will contain a different number of items
-        // when the total length of the source array is not exactly divisible by the number of slices.
-        if (slices > 1) {
-            final int lastSlicePosition = position + (slices - 1) * partitionLength;
-            executor.execute(new RunnableWrapper(countDownLatch, () ->
-                    sortingAlgorithm.sort(source, lastSlicePosition, source.length - lastSlicePosition)
-            ));
+        // when the length of the region is not exactly divisible by the number of slices.
+        final int lastSlicePosition = position + (slices - 1) * partitionLength;
+        final int lastSliceLength = position + length - lastSlicePosition;
+        submitter.accept(instrumentSlice(slices - 1, lastSliceLength, () -> sortingAlgorithm.sort(source, lastSlicePosition, lastSliceLength)));
+    }
+
+    /**
+     * Wraps a slice sort task so that its queue wait and run times are reported to the listener.
+     * The task is returned unchanged when there is no listener.
+     */
+    private Runnable instrumentSlice(final int slice, final int sliceLength, final Runnable task) {
+        final SortListener listener = sortListener;
+        if (listener == SortListener.NONE) {
+            return task;
         }
+        final long submissionTimestamp = System.nanoTime();
+        return () -> {
+            final long startTimestamp = System.nanoTime();
+            task.run();
+            listener.sliceSorted(slice, sliceLength, startTimestamp - submissionTimestamp, System.nanoTime() - startTimestamp);
+        };
+    }
 
-        try {
+    private void notifySortCompleted(final SortListener listener, final int length, final int slices, final long startTimestamp,
+            final long initialComparisons) {
+        final long comparisons = initialComparisons < 0 ? -1 : comparisonCount() - initialComparisons;
+        listener.sortCompleted(length, slices, System.nanoTime() - startTimestamp, comparisons);
+    }
 
-            countDownLatch.await();
+    /**
+     * @return The number of comparisons executed by the comparator, or -1 if they are not counted.
+     */
+    private long comparisonCount() {
+        return comparator instanceof CountingComparator ? ((CountingComparator<T>) comparator).getCount() : -1;
+    }
+
+    private void mergeSortedSlices(final T[] source, final int position, final int length, final int slices, final BooleanSupplier cancelled) {
+        if (strategy == MultiThreadedSortStrategy.K_WAY_MERGE) {
+            kWayMergeSlices(source, position, length, slices);
+        } else {
+            mergeSlices(source, position, length, slices, cancelled);
+        }
+    }
 
-            mergeSlices(source, position, length, slices);
+    /**
+     * Sorts the specified array region by distributing its elements into one bucket per slice
+     * and sorting each bucket independently with the underlying sorting algorithm.
+     * The bucket boundaries (splitters) are chosen from a sorted random sample of the region.
+     * Elements equal to a splitter are placed in the bucket that follows it, and the distribution
+     * keeps the relative order of the elements, so a stable underlying algorithm results in a stable sort.
+     * <p>
+     * When a value is frequent enough to be sampled as consecutive equal splitters, all of its elements
+     * would end up in a single bucket, sorted by a single thread. In that case, every splitter gets an
+     * equality bucket between the buckets of the elements less than and greater than it. The equality
+     * buckets hold equal elements in their original order, so they are not sorted.
+     */
+    @SuppressWarnings("unchecked")
+    private void sampleSort(final T[] elements, final int position, final int length, final int slices, final BooleanSupplier cancelled) {
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new SortingException(e);
+        final int sampleLength = slices * OVERSAMPLING;
+        if (slices <= 1 || length < sampleLength * 2) {
+            sortingAlgorithm.sort(elements, position, length);
+            return;
         }
 
+        // Each sampled element is picked at a random position of an evenly spaced interval of the region.
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final T[] sample = (T[]) new Object[sampleLength];
+        final int sampleInterval = length / sampleLength;
+        for (int sampleIndex = 0; sampleIndex < sampleLength; sampleIndex++) {
+            sample[sampleIndex] = elements[position + sampleIndex * sampleInterval + random.nextInt(sampleInterval)];
+        }
+        Arrays.sort(sample, comparator);
+        final T[] splitters = (T[]) new Object[slices - 1];
+        boolean duplicatedSplitters = false;
+        for (int splitterIndex = 0; splitterIndex < splitters.length; splitterIndex++) {
+            splitters[splitterIndex] = sample[(splitterIndex + 1) * OVERSAMPLING];
+            duplicatedSplitters |= splitterIndex > 0 && comparator.compare(splitters[splitterIndex - 1], splitters[splitterIndex]) == 0;
+        }
+        final boolean equalityBuckets = duplicatedSplitters;
+        final int bucketCount = equalityBuckets ? slices * 2 - 1 : slices;
+
+        // First pass: each slice of the region finds the bucket of its elements and counts them.
+        final int[] buckets = new int[length];
+        final int[][] histograms = new int[slices][bucketCount];
+        final int partitionLength = length / slices;
+        ParallelTasks.forEach(executor, slices, slice -> {
+            final int[] histogram = histograms[slice];
+            final int start = slice * partitionLength;
+            final int end = slice == slices - 1 ? length : start + partitionLength;
+            for (int index = start; index < end; index++) {
+                final int bucket = findBucket(splitters, elements[position + index], equalityBuckets);
+                buckets[index] = bucket;
+                histogram[bucket]++;
+            }
+        });
+
+        final int[] bucketPositions = new int[bucketCount + 1];
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            int bucketLength = 0;
+            for (int slice = 0; slice < slices; slice++) {
+                bucketLength += histograms[slice][bucket];
+            }
+            bucketPositions[bucket + 1] = bucketPositions[bucket] + bucketLength;
+        }
+
+        // Second pass: each slice moves its elements to its reserved area of every bucket.
+        final T[] auxiliary = bufferPool.borrow(length);
+        ParallelTasks.forEach(executor, slices, slice -> {
+            final int[] offsets = new int[bucketCount];
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                int offset = bucketPositions[bucket];
+                for (int previousSlice = 0; previousSlice < slice; previousSlice++) {
+                    offset += histograms[previousSlice][bucket];
+                }
+                offsets[bucket] = offset;
+            }
+            final int start = slice * partitionLength;
+            final int end = slice == slices - 1 ? length : start + partitionLength;
+            for (int index = start; index < end; index++) {
+                auxiliary[offsets[buckets[index]]++] = elements[position + index];
+            }
+        });
+
+        // The buckets are copied back even when the sort is cancelled, so the region always holds
+        // a permutation of its elements. Only the bucket sorts can be skipped.
+        ParallelTasks.forEach(executor, slices, slice -> {
+            final int start = slice * partitionLength;
+            final int end = slice == slices - 1 ? length : start + partitionLength;
+            System.arraycopy(auxiliary, start, elements, position + start, end - start);
+        });
+        bufferPool.release(auxiliary, length);
+
+        // The buckets are sorted independently, like the slices of the merge strategy.
+        // The equality buckets, at the odd indexes, are already sorted.
+        final TaskGroup taskGroup = new TaskGroup(executor, cancelled);
+        for (int bucket = 0; bucket < bucketCount; bucket += equalityBuckets ? 2 : 1) {
+            final int bucketPosition = position + bucketPositions[bucket];
+            final int bucketLength = bucketPositions[bucket + 1] - bucketPositions[bucket];
+            if (bucketLength > 1) {
+                taskGroup.execute(instrumentSlice(bucket, bucketLength, () -> sortingAlgorithm.sort(elements, bucketPosition, bucketLength)));
+            }
+        }
+        taskGroup.await();
+
+    }
+
+    /**
+     * Finds the bucket of an element by binary search over the splitters. The bucket index is
+     * the number of splitters that are not greater than the element. With equality buckets, the
+     * buckets of the elements between the splitters are at the even indexes, and an element equal
+     * to the splitter i (the last one, when several are equal) goes to the bucket 2 * i + 1.
+     */
+    private int findBucket(final T[] splitters, final T element, final boolean equalityBuckets) {
+        int low = 0;
+        int high = splitters.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (comparator.compare(splitters[middle], element) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (!equalityBuckets) {
+            return low;
+        }
+        return low > 0 && comparator.compare(splitters[low - 1], element) == 0 ? low * 2 - 1 : low * 2;
     }
 
+    /**
+     * Merges all the sorted slices in a single pass using a tournament tree of losers.
+     * The output is divided into one range per slice: splitters are sampled from the slices and,
+     * for each splitter, every slice is cut around the elements equal to the splitter. Those elements
+     * are divided by rank: the cut takes them in slice order, which is also their merged order, until
+     * the range reaches its share of the output. So when a frequent value is sampled as several equal
+     * splitters, its elements are spread over several ranges instead of being merged by a single task.
+     * The elements between two consecutive cuts of all slices form an independent merge task.
+     * The merged ranges are stored in an auxiliary array and then copied back in parallel.
+     */
     @SuppressWarnings("unchecked")
-    private void mergeSlices(final T[] elements, final int position, final int length, final int slices) throws InterruptedException {
+    private void kWayMergeSlices(final T[] elements, final int position, final int length, final int slices) {
+
+        final int partitionLength = length / slices;
+        final int[] sliceLimits = new int[slices + 1];
+        for (int slice = 0; slice < slices; slice++) {
+            sliceLimits[slice] = position + slice * partitionLength;
+        }
+        sliceLimits[slices] = position + length;
+
+        // Short slices are merged by a single task.
+        final int ranges = partitionLength >= OVERSAMPLING ? slices : 1;
+        final int[][] cuts = new int[ranges + 1][];
+        cuts[0] = Arrays.copyOf(sliceLimits, slices);
+        cuts[ranges] = Arrays.copyOfRange(sliceLimits, 1, slices + 1);
+        if (ranges > 1) {
+            final T[] sample = (T[]) new Object[slices * OVERSAMPLING];
+            for (int slice = 0; slice < slices; slice++) {
+                final int sliceLength = sliceLimits[slice + 1] - sliceLimits[slice];
+                for (int sampleIndex = 0; sampleIndex < OVERSAMPLING; sampleIndex++) {
+                    sample[slice * OVERSAMPLING + sampleIndex] = elements[sliceLimits[slice] + (int) ((long) sampleIndex * sliceLength / OVERSAMPLING)];
+                }
+            }
+            Arrays.sort(sample, comparator);
+            final int[] lowerBounds = new int[slices];
+            final int[] upperBounds = new int[slices];
+            for (int range = 1; range < ranges; range++) {
+                final T splitter = sample[range * OVERSAMPLING];
+                long lessCount = 0;
+                for (int slice = 0; slice < slices; slice++) {
+                    lowerBounds[slice] = lowerBound(elements, sliceLimits[slice], sliceLimits[slice + 1], splitter);
+                    upperBounds[slice] = upperBound(elements, lowerBounds[slice], sliceLimits[slice + 1], splitter);
+                    lessCount += lowerBounds[slice] - sliceLimits[slice];
+                }
+                // Number of elements equal to the splitter that go before the cut, so that the range
+                // ends close to its share of the output. The cuts never move backwards, since the
+                // splitters and the shares are both non-decreasing.
+                long equalCount = Math.max(0, (long) length * range / ranges - lessCount);
+                cuts[range] = new int[slices];
+                for (int slice = 0; slice < slices; slice++) {
+                    final int taken = (int) Math.min(equalCount, upperBounds[slice] - lowerBounds[slice]);
+                    cuts[range][slice] = lowerBounds[slice] + taken;
+                    equalCount -= taken;
+                }
+            }
+        }
+
+        final int[] outputPositions = new int[ranges + 1];
+        for (int range = 1; range <= ranges; range++) {
+            int outputPosition = 0;
+            for (int slice = 0; slice < slices; slice++) {
+                outputPosition += cuts[range][slice] - sliceLimits[slice];
+            }
+            outputPositions[range] = outputPosition;
+        }
+
+        final long mergeStartTimestamp = System.nanoTime();
+        final T[] auxiliary = bufferPool.borrow(length);
+        ParallelTasks.forEach(executor, ranges, range -> {
+            final int[] heads = cuts[range].clone();
+            final int[] limits = cuts[range + 1];
+            final LoserTree loserTree = new LoserTree(slices) {
+                @Override
+                protected int compareHeads(final int source1, final int source2) {
+                    return comparator.compare(elements[heads[source1]], elements[heads[source2]]);
+                }
+                @Override
+                protected boolean isExhausted(final int source) {
+                    return heads[source] >= limits[source];
+                }
+            };
+            loserTree.initialize();
+            final int outputLimit = outputPositions[range + 1];
+            for (int outputIndex = outputPositions[range]; outputIndex < outputLimit; outputIndex++) {
+                final int winner = loserTree.winner();
+                auxiliary[outputIndex] = elements[heads[winner]];
+                heads[winner]++;
+                loserTree.replayWinner();
+            }
+        });
+        ParallelTasks.forEach(executor, ranges, range -> System.arraycopy(auxiliary, outputPositions[range], elements,
+                position + outputPositions[range], outputPositions[range + 1] - outputPositions[range]));
+        bufferPool.release(auxiliary, length);
+        sortListener.mergeRoundCompleted(0, ranges, System.nanoTime() - mergeStartTimestamp);
+
+    }
+
+    /**
+     * Finds the index of the first element of the sorted array interval that is not less than the specified value.
+     */
+    private int lowerBound(final T[] elements, int low, int high, final T value) {
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (comparator.compare(elements[middle], value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the index of the first element of the sorted array interval that is greater than the specified value.
+     */
+    private int upperBound(final T[] elements, int low, int high, final T value) {
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (comparator.compare(elements[middle], value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void mergeSlices(final T[] elements, final int position, final int length, final int slices, final BooleanSupplier cancelled) {
 
         final MergeSort<T> mergeSort = new MergeSort<>(comparator);
 
+        // The borrowed buffers may be longer than the sorted region, so the lengths below are
+        // derived from the 'length' argument instead of the array lengths.
+        final T[] auxiliaryBuffer = bufferPool.borrow(length);
+        T[] copyBuffer = null;
         T[] source = elements;
-        T[] auxiliary = (T[]) new Object[length];
+        T[] auxiliary = auxiliaryBuffer;
 
         // Avoiding an array copy when the full array is being sorted.
         if (position != 0 || length != elements.length) {
-            source = (T[]) new Object[length];
+            copyBuffer = bufferPool.borrow(length);
+            source = copyBuffer;
             System.arraycopy(elements, position, source, 0, length);
         }
 
@@ -100,42 +629,50 @@ public class MultiThreadedSort<T> extends AbstractSortingAlgorithm<T> {
         // In each iteration, the number of threads is halved.
 
         int tasks = slices;
-        int partitionLength = elements.length / tasks;
-        int lastPartitionLength = elements.length - (tasks - 1) * partitionLength;
+        int partitionLength = length / tasks;
+        int lastPartitionLength = length - (tasks - 1) * partitionLength;
+        int round = 0;
         while (tasks > 1) {
+            final long roundStartTimestamp = System.nanoTime();
             tasks = tasks / 2;
             int localPosition = 0;
             final T[] localArray1 = source;
             final T[] localArray2 = auxiliary;
-            final CountDownLatch countDownLatch = new CountDownLatch(tasks);
+            final TaskGroup taskGroup = new TaskGroup(executor, cancelled);
             for (int taskIndex = 0; taskIndex < tasks - 1; taskIndex++) {
                 final int threadPartitionLength = partitionLength;
                 final int threadPartitionPosition = localPosition;
-                executor.execute(new RunnableWrapper(countDownLatch, () -> mergeSort.merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadPartitionLength)));
+                taskGroup.execute(() -> mergeSort.merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadPartitionLength));
                 localPosition += partitionLength * 2;
             }
 
             final int threadPartitionLength = partitionLength;
             final int threadLastPartitionLength = lastPartitionLength;
             final int threadPartitionPosition = localPosition;
-            final int lastTwoPartitionsIndex = source.length - lastPartitionLength - partitionLength;
+            final int lastTwoPartitionsIndex = length - lastPartitionLength - partitionLength;
             // When the number of threads is not a power of two, the algorithm will eventually
             // end up with an odd number of partitions. In this case, the last thread will
             // execute two merge operations. The first one will merge the n-3 and n-2 partitions.
             // The second will merge the last (n-1) partition with the partition resulting from the first merge.
             if (lastTwoPartitionsIndex > threadPartitionPosition) {
-                executor.execute(new RunnableWrapper(countDownLatch, () -> {
+                taskGroup.execute(() -> {
                     mergeSort.merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadPartitionLength);
                     System.arraycopy(localArray2, threadPartitionPosition, localArray1, threadPartitionPosition, threadPartitionLength * 2);
                     mergeSort.merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength * 2, threadLastPartitionLength);
-                }));
+                });
                 lastPartitionLength += partitionLength * 2;
             } else {
-                executor.execute(new RunnableWrapper(countDownLatch, () -> mergeSort.merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadLastPartitionLength)));
+                taskGroup.execute(() -> mergeSort.merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadLastPartitionLength));
                 lastPartitionLength += partitionLength;
             }
 
-            countDownLatch.await();
+            taskGroup.await();
+            if (cancelled.getAsBoolean()) {
+                // Some merges of this round may have been skipped, so only the input of the round
+                // is known to hold all the elements.
+                break;
+            }
+            sortListener.mergeRoundCompleted(round++, tasks, System.nanoTime() - roundStartTimestamp);
 
             partitionLength *= 2;
 
@@ -151,32 +688,12 @@ public class MultiThreadedSort<T> extends AbstractSortingAlgorithm<T> {
         }
 
         if (source != elements) {
-            System.arraycopy(source, 0, elements, position, source.length);
+            System.arraycopy(source, 0, elements, position, length);
         }
 
-    }
-
-    /**
-     * Runnable that decrement a CountDownLatch count by one when the underlying
-     * runnable finishes.
-     */
-    private static class RunnableWrapper implements Runnable {
-
-        private final CountDownLatch countDownLatch;
-        private final Runnable runnable;
-
-        private RunnableWrapper(final CountDownLatch countDownLatch, final Runnable runnable) {
-            this.countDownLatch = countDownLatch;
-            this.runnable = runnable;
-        }
-
-        @Override
-        public void run() {
-            try {
-                runnable.run();
-            } finally {
-                countDownLatch.countDown();
-            }
+        bufferPool.release(auxiliaryBuffer, length);
+        if (copyBuffer != null) {
+            bufferPool.release(copyBuffer, length);
         }
 
     }
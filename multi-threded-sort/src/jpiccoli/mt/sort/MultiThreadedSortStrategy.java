@@ -0,0 +1,32 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Defines how {@link MultiThreadedSort} splits the work between the threads and how
+ * the independently sorted parts are combined.
+ * 
+ * @author Juliano Piccoli
+ */
+public enum MultiThreadedSortStrategy {
+
+	/**
+	 * The array is divided in equally sized slices which are sorted independently and
+	 * then merged in pairs, halving the number of merge tasks in each round.
+	 */
+	PAIRWISE_MERGE,
+	
+	/**
+	 * Splitters are chosen by sampling the array and the elements are distributed in a
+	 * single parallel pass into one bucket per slice. Every bucket only contains elements
+	 * that are ordered after the ones of the previous bucket, so the buckets are sorted
+	 * independently and no merge is needed.
+	 */
+	SAMPLE_SORT,
+	
+	/**
+	 * The array is divided in equally sized slices which are sorted independently and
+	 * then merged in a single pass with a tournament tree of losers. The output is split
+	 * into independent ranges by splitter search, so the ranges are merged in parallel.
+	 */
+	K_WAY_MERGE
+
+}
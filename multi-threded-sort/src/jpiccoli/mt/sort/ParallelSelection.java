@@ -0,0 +1,328 @@
+package jpiccoli.mt.sort;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Parallel selection algorithms for the cases where only a prefix of the sorted order is needed,
+ * such as the smallest k elements or the median. They avoid the O(n log n) cost of a full sort:
+ * <ul>
+ * <li>{@link #nthElement(Object[], int, int, int)} places the n-th element at its sorted position using a
+ * quickselect whose partitioning passes over long regions are executed in parallel. Short regions are
+ * handled sequentially and, when the partitioning depth exceeds a limit proportional to log2(length),
+ * with a heap selection, which bounds the running time at O(n log n) on adversarial input.</li>
+ * <li>{@link #partialSort(Object[], int, int, int)} selects the k smallest elements and sorts only them.</li>
+ * <li>{@link #topK(Object[], int, int, int)} keeps a bounded heap per slice and merges the heaps, without modifying the array.</li>
+ * </ul>
+ * The full sort operation is delegated to the sorting algorithm provided in the constructor, which is
+ * also used for sorting the selected prefix.
+ *
+ * @author Juliano Piccoli
+ */
+public class ParallelSelection<T> extends AbstractSortingAlgorithm<T> {
+
+	// Regions shorter than this are partitioned by the calling thread.
+	private static final int PARALLEL_THRESHOLD = 1 << 15;
+	private static final int PIVOT_SAMPLE_LENGTH = 31;
+
+	private static final byte LESS = 0;
+	private static final byte EQUAL = 1;
+	private static final byte GREATER = 2;
+
+	private final SortingAlgorithm<T> sortingAlgorithm;
+	private final Executor executor;
+
+	public ParallelSelection(final AbstractSortingAlgorithm<T> sortingAlgorithm, final Executor executor) {
+		this(sortingAlgorithm, sortingAlgorithm.getComparator(), executor);
+	}
+
+	public ParallelSelection(final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator, final Executor executor) {
+		super(comparator);
+		this.sortingAlgorithm = sortingAlgorithm;
+		this.executor = executor;
+	}
+
+	@Override
+	public void sort(final T[] elements, final int position, final int length) {
+		sortingAlgorithm.sort(elements, position, length);
+	}
+
+	/**
+	 * Rearranges the specified region so that the element at index position + n is the one that would be
+	 * at this index if the region was sorted. No element before it is greater than it and no element after
+	 * it is less than it. The order of the other elements is undefined.
+	 *
+	 * @param elements Array containing the elements.
+	 * @param position Index of the first element of the region.
+	 * @param length   Number of elements of the region.
+	 * @param n        Rank of the selected element, relative to the beginning of the region.
+	 */
+	@SuppressWarnings("unchecked")
+	public void nthElement(final T[] elements, final int position, final int length, final int n) {
+		if (n < 0 || n >= length) {
+			throw new IllegalArgumentException("Invalid rank: " + n);
+		}
+		final int target = position + n;
+		int low = position;
+		int high = position + length;
+		T[] auxiliary = null;
+		byte[] categories = null;
+		while (high - low > PARALLEL_THRESHOLD) {
+			if (auxiliary == null) {
+				auxiliary = (T[]) new Object[length];
+				categories = new byte[length];
+			}
+			final int[] bounds = parallelPartition(elements, low, high, samplePivot(elements, low, high), auxiliary, categories);
+			if (target < bounds[0]) {
+				high = bounds[0];
+			} else if (target < bounds[1]) {
+				return;
+			} else {
+				low = bounds[1];
+			}
+		}
+		if (high - low > 1) {
+			select(elements, low, high, target, 2 * (31 - Integer.numberOfLeadingZeros(high - low)));
+		}
+	}
+
+	/**
+	 * Rearranges the specified region so that its first k elements are the k smallest ones, in sorted order.
+	 * The order of the remaining elements is undefined.
+	 *
+	 * @param elements Array containing the elements.
+	 * @param position Index of the first element of the region.
+	 * @param length   Number of elements of the region.
+	 * @param k        Number of elements to be sorted.
+	 */
+	public void partialSort(final T[] elements, final int position, final int length, final int k) {
+		if (k <= 0) {
+			return;
+		}
+		if (k < length) {
+			nthElement(elements, position, length, k - 1);
+		}
+		sortingAlgorithm.sort(elements, position, Math.min(k, length));
+	}
+
+	/**
+	 * Retrieves the k smallest elements of the specified region, in sorted order, without modifying the array.
+	 * Each slice of the region is scanned by a separate task that keeps its k smallest elements in a bounded
+	 * heap, and the sorted contents of the heaps are then merged.
+	 *
+	 * @param elements Array containing the elements.
+	 * @param position Index of the first element of the region.
+	 * @param length   Number of elements of the region.
+	 * @param k        Number of elements to be retrieved.
+	 * @return A new array with the min(k, length) smallest elements of the region.
+	 */
+	@SuppressWarnings("unchecked")
+	public T[] topK(final T[] elements, final int position, final int length, final int k) {
+		final int resultLength = Math.max(0, Math.min(k, length));
+		final T[] result = (T[]) new Object[resultLength];
+		if (resultLength == 0) {
+			return result;
+		}
+		final int slices = ParallelTasks.slices(length);
+		final int sliceLength = length / slices;
+		final T[][] candidates = (T[][]) new Object[slices][];
+		final Comparator<T> reversed = comparator.reversed();
+		ParallelTasks.forEach(executor, slices, slice -> {
+			final int start = position + slice * sliceLength;
+			final int end = slice == slices - 1 ? position + length : start + sliceLength;
+			// Max-heap holding the smallest elements found so far: its root is the first to be replaced.
+			final PriorityQueue<T> heap = new PriorityQueue<>(Math.min(resultLength, end - start) + 1, reversed);
+			for (int index = start; index < end; index++) {
+				final T element = elements[index];
+				if (heap.size() < resultLength) {
+					heap.add(element);
+				} else if (comparator.compare(element, heap.peek()) < 0) {
+					heap.poll();
+					heap.add(element);
+				}
+			}
+			final T[] sorted = (T[]) new Object[heap.size()];
+			for (int index = sorted.length - 1; index >= 0; index--) {
+				sorted[index] = heap.poll();
+			}
+			candidates[slice] = sorted;
+		});
+
+		final int[] heads = new int[slices];
+		final LoserTree loserTree = new LoserTree(slices) {
+			@Override
+			protected int compareHeads(final int source1, final int source2) {
+				return comparator.compare(candidates[source1][heads[source1]], candidates[source2][heads[source2]]);
+			}
+			@Override
+			protected boolean isExhausted(final int source) {
+				return heads[source] >= candidates[source].length;
+			}
+		};
+		loserTree.initialize();
+		for (int index = 0; index < resultLength; index++) {
+			final int winner = loserTree.winner();
+			result[index] = candidates[winner][heads[winner]];
+			heads[winner]++;
+			loserTree.replayWinner();
+		}
+		return result;
+	}
+
+	/**
+	 * Partitions the interval [low, high) in elements less than, equal to and greater than the pivot.
+	 * The category of each element is computed in parallel, the elements are distributed in parallel into
+	 * the auxiliary array and then copied back in parallel.
+	 * @return The index of the first element equal to the pivot and the index of the first element greater than the pivot.
+	 */
+	private int[] parallelPartition(final T[] elements, final int low, final int high, final T pivot, final T[] auxiliary, final byte[] categories) {
+		final int length = high - low;
+		final int slices = ParallelTasks.slices(length);
+		final int sliceLength = length / slices;
+		final int[][] counts = new int[slices][3];
+		ParallelTasks.forEach(executor, slices, slice -> {
+			final int[] sliceCounts = counts[slice];
+			final int start = slice * sliceLength;
+			final int end = slice == slices - 1 ? length : start + sliceLength;
+			for (int index = start; index < end; index++) {
+				final int result = comparator.compare(elements[low + index], pivot);
+				final byte category = result < 0 ? LESS : result == 0 ? EQUAL : GREATER;
+				categories[index] = category;
+				sliceCounts[category]++;
+			}
+		});
+
+		final int[] totals = new int[3];
+		for (int slice = 0; slice < slices; slice++) {
+			for (int category = 0; category < 3; category++) {
+				totals[category] += counts[slice][category];
+			}
+		}
+
+		ParallelTasks.forEach(executor, slices, slice -> {
+			final int[] offsets = { 0, totals[LESS], totals[LESS] + totals[EQUAL] };
+			for (int previousSlice = 0; previousSlice < slice; previousSlice++) {
+				for (int category = 0; category < 3; category++) {
+					offsets[category] += counts[previousSlice][category];
+				}
+			}
+			final int start = slice * sliceLength;
+			final int end = slice == slices - 1 ? length : start + sliceLength;
+			for (int index = start; index < end; index++) {
+				auxiliary[offsets[categories[index]]++] = elements[low + index];
+			}
+		});
+		ParallelTasks.forEach(executor, slices, slice -> {
+			final int start = slice * sliceLength;
+			final int end = slice == slices - 1 ? length : start + sliceLength;
+			System.arraycopy(auxiliary, start, elements, low + start, end - start);
+		});
+
+		return new int[] { low + totals[LESS], low + totals[LESS] + totals[EQUAL] };
+	}
+
+	/**
+	 * Chooses the median of a random sample of the interval as pivot.
+	 */
+	@SuppressWarnings("unchecked")
+	private T samplePivot(final T[] elements, final int low, final int high) {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final T[] sample = (T[]) new Object[PIVOT_SAMPLE_LENGTH];
+		for (int index = 0; index < sample.length; index++) {
+			sample[index] = elements[random.nextInt(low, high)];
+		}
+		Arrays.sort(sample, comparator);
+		return sample[sample.length / 2];
+	}
+
+	/**
+	 * Sequential quickselect with median-of-three pivots and three-way partitioning.
+	 * When the depth limit is reached, the rest of the interval is handled by a heap selection.
+	 */
+	private void select(final T[] elements, int low, int high, final int target, int depthLimit) {
+		while (high - low > 1) {
+			if (depthLimit == 0) {
+				heapSelect(elements, low, high, target);
+				return;
+			}
+			depthLimit--;
+			final int middle = (low + high) >>> 1;
+			final T pivot = medianOfThree(elements[low], elements[middle], elements[high - 1]);
+			int less = low;
+			int index = low;
+			int great = high - 1;
+			while (index <= great) {
+				final int result = comparator.compare(elements[index], pivot);
+				if (result < 0) {
+					swap(elements, less++, index++);
+				} else if (result > 0) {
+					swap(elements, index, great--);
+				} else {
+					index++;
+				}
+			}
+			if (target < less) {
+				high = less;
+			} else if (target > great) {
+				low = great + 1;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Keeps the smallest elements of the interval [low, target] in a max-heap at the beginning of the
+	 * interval, replacing its root by each smaller element found after it. The root is then the element
+	 * of rank target, which is moved to its sorted position.
+	 */
+	private void heapSelect(final T[] elements, final int low, final int high, final int target) {
+		final int heapLength = target - low + 1;
+		for (int node = heapLength / 2 - 1; node >= 0; node--) {
+			siftDown(elements, low, node, heapLength);
+		}
+		for (int index = target + 1; index < high; index++) {
+			if (comparator.compare(elements[index], elements[low]) < 0) {
+				swap(elements, low, index);
+				siftDown(elements, low, 0, heapLength);
+			}
+		}
+		swap(elements, low, target);
+	}
+
+	private void siftDown(final T[] elements, final int low, int node, final int heapLength) {
+		final T element = elements[low + node];
+		while (true) {
+			int child = node * 2 + 1;
+			if (child >= heapLength) {
+				break;
+			}
+			if (child + 1 < heapLength && comparator.compare(elements[low + child + 1], elements[low + child]) > 0) {
+				child++;
+			}
+			if (comparator.compare(elements[low + child], element) <= 0) {
+				break;
+			}
+			elements[low + node] = elements[low + child];
+			node = child;
+		}
+		elements[low + node] = element;
+	}
+
+	private T medianOfThree(final T element1, final T element2, final T element3) {
+		if (comparator.compare(element1, element2) > 0) {
+			return comparator.compare(element2, element3) >= 0 ? element2 : comparator.compare(element1, element3) > 0 ? element3 : element1;
+		}
+		return comparator.compare(element1, element3) >= 0 ? element1 : comparator.compare(element2, element3) > 0 ? element3 : element2;
+	}
+
+	private static <T> void swap(final T[] elements, final int index1, final int index2) {
+		final T element = elements[index1];
+		elements[index1] = elements[index2];
+		elements[index2] = element;
+	}
+
+}
@@ -0,0 +1,88 @@
+package jpiccoli.mt.sort;
+
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+/**
+ * Helper for running a fixed number of indexed tasks in an {@link Executor} and waiting
+ * for all of them to finish. The waiting thread helps to run the tasks (see {@link TaskGroup}).
+ * 
+ * @author Juliano Piccoli
+ */
+final class ParallelTasks {
+
+	/**
+	 * Slices shorter than this are not worth the cost of handing work over to other threads.
+	 */
+	static final int MINIMUM_SLICE_LENGTH = 1 << 12;
+
+	private ParallelTasks() {
+	}
+
+	/**
+	 * @param length Number of elements to be processed.
+	 * @return The number of slices in which the elements are divided: one per logical processing core
+	 * available to the JVM, as long as each slice has at least {@link #MINIMUM_SLICE_LENGTH} elements.
+	 */
+	static int slices(final int length) {
+		return slices(length, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param length Number of elements to be processed.
+	 * @param maximumSlices Requested number of slices.
+	 * @return The requested number of slices, reduced so that each slice has at least
+	 * {@link #MINIMUM_SLICE_LENGTH} elements. At least one slice is returned.
+	 */
+	static int slices(final int length, final int maximumSlices) {
+		return Math.max(1, Math.min(maximumSlices, length / MINIMUM_SLICE_LENGTH));
+	}
+
+	/**
+	 * Executes the task once for each index in the interval [0, count) and blocks until all
+	 * executions are finished. When count is one, the task is executed by the calling thread.
+	 * 
+	 * @param executor Executor used for running the tasks.
+	 * @param count Number of tasks.
+	 * @param task Task to be executed. Receives the task index as argument.
+	 */
+	static void forEach(final Executor executor, final int count, final IntConsumer task) {
+		if (count == 1) {
+			task.accept(0);
+			return;
+		}
+		final TaskGroup taskGroup = new TaskGroup(executor);
+		for (int index = 0; index < count; index++) {
+			final int taskIndex = index;
+			taskGroup.execute(() -> task.accept(taskIndex));
+		}
+		taskGroup.await();
+	}
+
+	/**
+	 * Divides the interval [0, length) into the specified number of slices of similar lengths and
+	 * executes the task once for each slice, blocking until all executions are finished.
+	 * The last slice includes the remaining elements when the length is not divisible by the number of slices.
+	 * 
+	 * @param executor Executor used for running the tasks.
+	 * @param length Number of elements.
+	 * @param slices Number of slices.
+	 * @param task Task to be executed for each slice.
+	 */
+	static void forEachSlice(final Executor executor, final int length, final int slices, final SliceTask task) {
+		final int sliceLength = length / slices;
+		forEach(executor, slices, slice -> {
+			final int start = slice * sliceLength;
+			task.run(start, slice == slices - 1 ? length : start + sliceLength);
+		});
+	}
+
+	/**
+	 * Task that processes the interval [start, end) of a region.
+	 */
+	@FunctionalInterface
+	interface SliceTask {
+		void run(int start, int end);
+	}
+
+}
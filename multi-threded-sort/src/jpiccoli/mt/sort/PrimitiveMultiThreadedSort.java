@@ -0,0 +1,124 @@
+package jpiccoli.mt.sort;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.Executor;
+
+/**
+ * Scheduling shared by the multi-threaded sorts of primitive arrays. The region is divided into slices
+ * which are sorted in parallel by the underlying algorithm, and the sorted slices are then merged in
+ * rounds that halve the number of merge tasks, like {@link MultiThreadedSort}. The subclasses provide
+ * only the operations that depend on the element type.
+ *
+ * @author Juliano Piccoli
+ *
+ * @param <A> The type of the primitive array
+ */
+abstract class PrimitiveMultiThreadedSort<A> {
+
+	private final Executor executor;
+
+	PrimitiveMultiThreadedSort(final Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sorts one slice with the underlying sorting algorithm.
+	 */
+	abstract void sortSlice(A elements, int position, int length);
+
+	/**
+	 * Merges the consecutive sorted runs of the source that start at the specified position into the
+	 * same region of the destination.
+	 */
+	abstract void merge(A source, A destination, int position, int length1, int length2);
+
+	abstract A newArray(int length);
+
+	/**
+	 * Sorts the specified array region by sorting its slices in parallel and merging them.
+	 * @see MultiThreadedSort#sort(Object[], int, int, int)
+	 */
+	final void sortRegion(final A source, final int position, final int length, final int requestedSlices) {
+		final int slices = Math.min(requestedSlices, length);
+		if (slices <= 1) {
+			if (length > 1) {
+				sortSlice(source, position, length);
+			}
+			return;
+		}
+		final int partitionLength = length / slices;
+		final TaskGroup taskGroup = new TaskGroup(executor);
+		for (int sliceIndex = 0; sliceIndex < slices - 1; sliceIndex++) {
+			final int slicePosition = position + sliceIndex * partitionLength;
+			taskGroup.execute(() -> sortSlice(source, slicePosition, partitionLength));
+		}
+		// The last partition includes the remaining items of the region.
+		final int lastSlicePosition = position + (slices - 1) * partitionLength;
+		taskGroup.execute(() -> sortSlice(source, lastSlicePosition, position + length - lastSlicePosition));
+		taskGroup.await();
+
+		mergeSlices(source, position, length, slices);
+	}
+
+	private void mergeSlices(final A elements, final int position, final int length, final int slices) {
+
+		A source = elements;
+		A auxiliary = newArray(length);
+
+		// Avoiding an array copy when the full array is being sorted.
+		if (position != 0 || length != Array.getLength(elements)) {
+			source = newArray(length);
+			System.arraycopy(elements, position, source, 0, length);
+		}
+
+		// Same merge rounds as MultiThreadedSort: the number of merge tasks is halved in each round.
+		int tasks = slices;
+		int partitionLength = length / tasks;
+		int lastPartitionLength = length - (tasks - 1) * partitionLength;
+		while (tasks > 1) {
+			tasks = tasks / 2;
+			int localPosition = 0;
+			final A localArray1 = source;
+			final A localArray2 = auxiliary;
+			final TaskGroup taskGroup = new TaskGroup(executor);
+			for (int taskIndex = 0; taskIndex < tasks - 1; taskIndex++) {
+				final int threadPartitionLength = partitionLength;
+				final int threadPartitionPosition = localPosition;
+				taskGroup.execute(() -> merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadPartitionLength));
+				localPosition += partitionLength * 2;
+			}
+
+			final int threadPartitionLength = partitionLength;
+			final int threadLastPartitionLength = lastPartitionLength;
+			final int threadPartitionPosition = localPosition;
+			final int lastTwoPartitionsIndex = length - lastPartitionLength - partitionLength;
+			// With an odd number of partitions, the last task merges the last three partitions.
+			if (lastTwoPartitionsIndex > threadPartitionPosition) {
+				taskGroup.execute(() -> {
+					merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadPartitionLength);
+					System.arraycopy(localArray2, threadPartitionPosition, localArray1, threadPartitionPosition, threadPartitionLength * 2);
+					merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength * 2, threadLastPartitionLength);
+				});
+				lastPartitionLength += partitionLength * 2;
+			} else {
+				taskGroup.execute(() -> merge(localArray1, localArray2, threadPartitionPosition, threadPartitionLength, threadLastPartitionLength));
+				lastPartitionLength += partitionLength;
+			}
+
+			taskGroup.await();
+
+			partitionLength *= 2;
+
+			final A temp = source;
+			source = auxiliary;
+			auxiliary = temp;
+
+		}
+
+		if (source != elements) {
+			System.arraycopy(source, 0, elements, position, length);
+		}
+
+	}
+
+}
@@ -0,0 +1,25 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Order in which the digits of the keys are processed by the radix sort implementations.
+ * 
+ * @author Juliano Piccoli
+ * @see IntRadixSort
+ * @see LongRadixSort
+ */
+public enum RadixSortStrategy {
+
+	/**
+	 * Processes the digits from the least significant to the most significant one.
+	 * Every pass is a full parallel histogram, prefix sum and scatter over the array.
+	 */
+	LEAST_SIGNIFICANT_DIGIT_FIRST,
+	
+	/**
+	 * Partitions the array by the most significant digit in parallel and then sorts
+	 * each resulting bucket independently. Large buckets are handed to separate workers
+	 * while small ones are grouped into a single task.
+	 */
+	MOST_SIGNIFICANT_DIGIT_FIRST
+
+}
@@ -0,0 +1,266 @@
+package jpiccoli.mt.sort;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Sorts fixed-width binary records stored in a {@link ByteBuffer}, typically a direct or mapped one,
+ * without turning them into objects. Records are ordered by a key located at the same offset of every
+ * record, compared as a sequence of unsigned bytes (lexicographic order).
+ * <p>
+ * The records are not moved while they are sorted. Instead, the first eight bytes of each key are
+ * read into a long prefix, and the prefixes are sorted along with the record indexes by a parallel
+ * radix sort. Keys longer than eight bytes are then compared in full only inside the groups of equal
+ * prefixes. Finally, the records are moved once, either into a target buffer, in parallel, or inside
+ * the source buffer by following the cycles of the permutation. The sort is stable.
+ *
+ * @author Juliano Piccoli
+ * @see LongRadixSort#sort(long[], int[], int, int, int)
+ */
+public class RecordBufferSort {
+
+	private static final int PREFIX_LENGTH = Long.BYTES;
+	// Groups of equal prefixes up to this length are sorted by insertion sort.
+	private static final int INSERTION_SORT_LENGTH = 16;
+
+	private final Executor executor;
+	private final LongRadixSort radixSort;
+
+	public RecordBufferSort(final Executor executor) {
+		this.executor = executor;
+		this.radixSort = new LongRadixSort(executor);
+	}
+
+	/**
+	 * Sorts the records between the position and the limit of the buffer, moving them inside the buffer.
+	 * The position and the limit of the buffer are not changed.
+	 * @param records Buffer containing the records.
+	 * @param recordLength Length of each record, in bytes.
+	 * @param keyOffset Offset of the key inside each record.
+	 * @param keyLength Length of the key, in bytes.
+	 */
+	public void sort(final ByteBuffer records, final int recordLength, final int keyOffset, final int keyLength) {
+		final int[] permutation = sortIndex(records, recordLength, keyOffset, keyLength);
+		permuteInPlace(records, recordLength, permutation);
+	}
+
+	/**
+	 * Writes the records between the position and the limit of the source buffer into the target buffer,
+	 * starting at its position, in sorted order. The records are copied in parallel. The positions and
+	 * limits of the buffers are not changed.
+	 * @param records Buffer containing the records.
+	 * @param target Buffer where the sorted records will be written. Must not overlap the source records.
+	 * @param recordLength Length of each record, in bytes.
+	 * @param keyOffset Offset of the key inside each record.
+	 * @param keyLength Length of the key, in bytes.
+	 */
+	public void sort(final ByteBuffer records, final ByteBuffer target, final int recordLength, final int keyOffset, final int keyLength) {
+		if (target.remaining() < records.remaining()) {
+			throw new IllegalArgumentException("Target buffer has " + target.remaining() + " bytes remaining, " + records.remaining() + " are needed");
+		}
+		final int[] permutation = sortIndex(records, recordLength, keyOffset, keyLength);
+		final int count = permutation.length;
+		ParallelTasks.forEachSlice(executor, count, ParallelTasks.slices(count), (start, end) -> {
+			final ByteBuffer source = records.duplicate();
+			final ByteBuffer destination = target.duplicate();
+			final int sourcePosition = records.position();
+			destination.position(target.position() + start * recordLength);
+			for (int index = start; index < end; index++) {
+				final int recordPosition = sourcePosition + permutation[index] * recordLength;
+				source.limit(recordPosition + recordLength).position(recordPosition);
+				destination.put(source);
+			}
+		});
+	}
+
+	/**
+	 * Sorts the records between the position and the limit of the buffer without moving them.
+	 * @param records Buffer containing the records.
+	 * @param recordLength Length of each record, in bytes.
+	 * @param keyOffset Offset of the key inside each record.
+	 * @param keyLength Length of the key, in bytes.
+	 * @return The permutation that sorts the records: its i-th element is the index of the record that
+	 * comes i-th in sorted order.
+	 */
+	public int[] sortIndex(final ByteBuffer records, final int recordLength, final int keyOffset, final int keyLength) {
+		if (recordLength <= 0 || records.remaining() % recordLength != 0) {
+			throw new IllegalArgumentException("Buffer length is not a multiple of the record length: " + recordLength);
+		}
+		if (keyOffset < 0 || keyLength <= 0 || keyOffset + keyLength > recordLength) {
+			throw new IllegalArgumentException("Invalid key offset or length: " + keyOffset + ", " + keyLength);
+		}
+		final ByteBuffer buffer = records.duplicate().order(ByteOrder.BIG_ENDIAN);
+		final int basePosition = records.position();
+		final int count = records.remaining() / recordLength;
+		final int slices = ParallelTasks.slices(count);
+
+		final long[] prefixes = new long[count];
+		final int[] permutation = new int[count];
+		ParallelTasks.forEachSlice(executor, count, slices, (start, end) -> {
+			for (int index = start; index < end; index++) {
+				prefixes[index] = readPrefix(buffer, basePosition + index * recordLength + keyOffset, keyLength);
+				permutation[index] = index;
+			}
+		});
+		radixSort.sort(prefixes, permutation, 0, count, slices);
+
+		if (keyLength > PREFIX_LENGTH) {
+			// Each slice sorts the groups of equal prefixes that start inside it, even if they end after it.
+			ParallelTasks.forEachSlice(executor, count, slices, (start, end) -> {
+				int groupStart = start;
+				while (groupStart > 0 && groupStart < end && prefixes[groupStart - 1] == prefixes[groupStart]) {
+					groupStart++;
+				}
+				while (groupStart < end) {
+					int groupEnd = groupStart + 1;
+					while (groupEnd < count && prefixes[groupEnd] == prefixes[groupStart]) {
+						groupEnd++;
+					}
+					if (groupEnd - groupStart > 1) {
+						sortGroup(buffer, basePosition, recordLength, keyOffset + PREFIX_LENGTH, keyLength - PREFIX_LENGTH,
+								permutation, groupStart, groupEnd);
+					}
+					groupStart = groupEnd;
+				}
+			});
+		}
+		return permutation;
+	}
+
+	/**
+	 * Reads up to eight bytes of the key as an unsigned big-endian number, padded with zeros, and flips
+	 * its sign bit, so the signed order of the prefixes is the unsigned order of the key bytes.
+	 */
+	private static long readPrefix(final ByteBuffer buffer, final int keyPosition, final int keyLength) {
+		long prefix;
+		if (keyLength >= PREFIX_LENGTH) {
+			prefix = buffer.getLong(keyPosition);
+		} else {
+			prefix = 0;
+			for (int index = 0; index < keyLength; index++) {
+				prefix = (prefix << 8) | (buffer.get(keyPosition + index) & 0xFF);
+			}
+			prefix <<= (PREFIX_LENGTH - keyLength) * 8;
+		}
+		return prefix ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Stable sort of the interval [start, end) of the permutation by the key bytes that follow the prefix.
+	 * Short groups are sorted by insertion sort and longer ones by a top-down merge sort.
+	 */
+	private static void sortGroup(final ByteBuffer buffer, final int basePosition, final int recordLength, final int suffixOffset,
+			final int suffixLength, final int[] permutation, final int start, final int end) {
+		final RecordComparator comparator = (record1, record2) -> compareBytes(buffer, basePosition + record1 * recordLength + suffixOffset,
+				basePosition + record2 * recordLength + suffixOffset, suffixLength);
+		if (end - start <= INSERTION_SORT_LENGTH) {
+			insertionSort(permutation, start, end, comparator);
+		} else {
+			final int[] group = Arrays.copyOfRange(permutation, start, end);
+			mergeSort(group.clone(), group, 0, group.length, comparator);
+			System.arraycopy(group, 0, permutation, start, group.length);
+		}
+	}
+
+	private static void insertionSort(final int[] records, final int start, final int end, final RecordComparator comparator) {
+		for (int index = start + 1; index < end; index++) {
+			final int record = records[index];
+			int insertionIndex = index;
+			while (insertionIndex > start && comparator.compare(records[insertionIndex - 1], record) > 0) {
+				records[insertionIndex] = records[insertionIndex - 1];
+				insertionIndex--;
+			}
+			records[insertionIndex] = record;
+		}
+	}
+
+	/**
+	 * Sorts the interval of the source array into the same interval of the destination array. Both
+	 * arrays must initially hold the same values in the interval.
+	 */
+	private static void mergeSort(final int[] source, final int[] destination, final int start, final int end, final RecordComparator comparator) {
+		if (end - start <= INSERTION_SORT_LENGTH) {
+			insertionSort(destination, start, end, comparator);
+			return;
+		}
+		final int middle = (start + end) >>> 1;
+		// The halves are sorted into the source array and then merged into the destination array.
+		mergeSort(destination, source, start, middle, comparator);
+		mergeSort(destination, source, middle, end, comparator);
+		int index1 = start;
+		int index2 = middle;
+		for (int index = start; index < end; index++) {
+			if (index2 >= end || (index1 < middle && comparator.compare(source[index1], source[index2]) <= 0)) {
+				destination[index] = source[index1++];
+			} else {
+				destination[index] = source[index2++];
+			}
+		}
+	}
+
+	/**
+	 * Compares two byte sequences of the buffer as unsigned numbers, eight bytes at a time.
+	 */
+	private static int compareBytes(final ByteBuffer buffer, final int position1, final int position2, final int length) {
+		int offset = 0;
+		for (; offset + Long.BYTES <= length; offset += Long.BYTES) {
+			final int result = Long.compareUnsigned(buffer.getLong(position1 + offset), buffer.getLong(position2 + offset));
+			if (result != 0) {
+				return result;
+			}
+		}
+		for (; offset < length; offset++) {
+			final int result = Integer.compare(buffer.get(position1 + offset) & 0xFF, buffer.get(position2 + offset) & 0xFF);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Moves the records to their sorted positions by following the cycles of the permutation, so each
+	 * record is copied once, plus one copy per cycle into a temporary record. The permutation is
+	 * consumed: the moved entries are replaced by their own indexes.
+	 */
+	private static void permuteInPlace(final ByteBuffer records, final int recordLength, final int[] permutation) {
+		final ByteBuffer buffer = records.duplicate();
+		final int basePosition = records.position();
+		final byte[] cycleStart = new byte[recordLength];
+		final byte[] record = new byte[recordLength];
+		for (int index = 0; index < permutation.length; index++) {
+			if (permutation[index] == index) {
+				continue;
+			}
+			buffer.position(basePosition + index * recordLength);
+			buffer.get(cycleStart);
+			int current = index;
+			while (true) {
+				final int next = permutation[current];
+				permutation[current] = current;
+				if (next == index) {
+					buffer.position(basePosition + current * recordLength);
+					buffer.put(cycleStart);
+					break;
+				}
+				buffer.position(basePosition + next * recordLength);
+				buffer.get(record);
+				buffer.position(basePosition + current * recordLength);
+				buffer.put(record);
+				current = next;
+			}
+		}
+	}
+
+
+	/**
+	 * Comparator of records identified by their indexes.
+	 */
+	@FunctionalInterface
+	private interface RecordComparator {
+		int compare(int record1, int record2);
+	}
+
+}
@@ -0,0 +1,37 @@
+package jpiccoli.mt.sort;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts fixed-width binary records to objects and back. Used by {@link ExternalSort}
+ * for reading the records from files and for writing them to the sorted runs and the output.
+ * 
+ * @author Juliano Piccoli
+ *
+ * @param <T> The type of the object that represents a record
+ */
+public interface RecordCodec<T> {
+
+	/**
+	 * Retrieves the size of each record.
+	 * @return The number of bytes of each record.
+	 */
+	int getRecordLength();
+	
+	/**
+	 * Reads one record from the current position of the buffer. The buffer position must
+	 * be advanced by exactly {@link #getRecordLength()} bytes.
+	 * @param buffer Buffer containing the record.
+	 * @return The record.
+	 */
+	T read(final ByteBuffer buffer);
+	
+	/**
+	 * Writes one record at the current position of the buffer. The buffer position must
+	 * be advanced by exactly {@link #getRecordLength()} bytes.
+	 * @param record The record.
+	 * @param buffer Buffer where the record will be written.
+	 */
+	void write(final T record, final ByteBuffer buffer);
+
+}
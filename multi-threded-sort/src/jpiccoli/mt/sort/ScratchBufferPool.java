@@ -0,0 +1,101 @@
+package jpiccoli.mt.sort;
+
+import java.util.Arrays;
+
+/**
+ * Pool of auxiliary arrays that sorting algorithms can borrow instead of allocating a new
+ * array on every call. Each thread keeps its own small set of buffers, so the slice sorts
+ * executed by the worker threads of a {@link MultiThreadedSort} reuse their buffers without
+ * any synchronization.
+ * <p>
+ * The retained memory is bounded: each thread keeps at most 'buffersPerThread' buffers, and
+ * buffers longer than 'maximumRetainedLength' are never retained. References stored in a buffer
+ * are cleared when it is released, so the pool does not keep sorted elements reachable.
+ * 
+ * @author Juliano Piccoli
+ */
+public class ScratchBufferPool {
+
+	/**
+	 * Pool that never retains buffers: every borrowed buffer is a newly allocated array.
+	 */
+	public static final ScratchBufferPool NONE = new ScratchBufferPool(0, 0);
+
+	private static final int DEFAULT_BUFFERS_PER_THREAD = 2;
+
+	private final int maximumRetainedLength;
+	private final ThreadLocal<Object[][]> buffers;
+
+	/**
+	 * Creates a pool in which each thread retains up to two buffers.
+	 * @param maximumRetainedLength Length of the longest buffer that can be retained.
+	 */
+	public ScratchBufferPool(final int maximumRetainedLength) {
+		this(maximumRetainedLength, DEFAULT_BUFFERS_PER_THREAD);
+	}
+
+	/**
+	 * Creates a pool.
+	 * @param maximumRetainedLength Length of the longest buffer that can be retained.
+	 * @param buffersPerThread Maximum number of buffers retained by each thread.
+	 */
+	public ScratchBufferPool(final int maximumRetainedLength, final int buffersPerThread) {
+		this.maximumRetainedLength = maximumRetainedLength;
+		this.buffers = ThreadLocal.withInitial(() -> new Object[buffersPerThread][]);
+	}
+
+	/**
+	 * Borrows a buffer with at least the specified length. The buffer should be given back with
+	 * {@link #release(Object[], int)} by the same thread once it is not used anymore.
+	 * @param length Minimum length of the buffer.
+	 * @return A buffer. Its contents are undefined.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T[] borrow(final int length) {
+		if (length <= maximumRetainedLength) {
+			final Object[][] threadBuffers = buffers.get();
+			int bestIndex = -1;
+			for (int index = 0; index < threadBuffers.length; index++) {
+				final Object[] buffer = threadBuffers[index];
+				if (buffer != null && buffer.length >= length && (bestIndex < 0 || buffer.length < threadBuffers[bestIndex].length)) {
+					bestIndex = index;
+				}
+			}
+			if (bestIndex >= 0) {
+				final Object[] buffer = threadBuffers[bestIndex];
+				threadBuffers[bestIndex] = null;
+				return (T[]) buffer;
+			}
+		}
+		return (T[]) new Object[length];
+	}
+
+	/**
+	 * Gives back a borrowed buffer. The buffer is retained by the current thread if it is short
+	 * enough and if the thread has a free slot or retains a shorter buffer, which is then discarded.
+	 * @param buffer The buffer.
+	 * @param usedLength Number of elements at the beginning of the buffer that may hold references.
+	 */
+	public void release(final Object[] buffer, final int usedLength) {
+		if (buffer.length > maximumRetainedLength) {
+			return;
+		}
+		final Object[][] threadBuffers = buffers.get();
+		int slot = -1;
+		for (int index = 0; index < threadBuffers.length; index++) {
+			final Object[] retained = threadBuffers[index];
+			if (retained == null) {
+				slot = index;
+				break;
+			}
+			if (retained.length < buffer.length && (slot < 0 || retained.length < threadBuffers[slot].length)) {
+				slot = index;
+			}
+		}
+		if (slot >= 0) {
+			Arrays.fill(buffer, 0, usedLength, null);
+			threadBuffers[slot] = buffer;
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+package jpiccoli.mt.sort;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Future of an asynchronous sort. Like any {@link CompletableFuture}, it completes as soon as it is
+ * cancelled, while the tasks of the sort that were already running keep working on the array.
+ * The stage returned by {@link #whenTerminated()} completes only when every task of the sort is
+ * finished, so it is the one to wait for before reusing the array after a cancellation.
+ *
+ * @author Juliano Piccoli
+ */
+public class SortFuture<T> extends CompletableFuture<T[]> {
+
+	private final CompletableFuture<Void> termination = new CompletableFuture<>();
+
+	SortFuture() {
+	}
+
+	/**
+	 * Returns a stage that completes, normally, when no task of the sort is running or waiting to
+	 * run anymore, whether the sort finished, failed or was cancelled.
+	 */
+	public CompletableFuture<Void> whenTerminated() {
+		return termination.thenApply(ignored -> null);
+	}
+
+	void terminate() {
+		termination.complete(null);
+	}
+
+}
@@ -0,0 +1,54 @@
+package jpiccoli.mt.sort;
+
+/**
+ * Receives measurements of the phases of a multi-threaded sort, see
+ * {@link MultiThreadedSort#setSortListener(SortListener)}. All methods have empty default
+ * implementations, so a listener only implements the events it is interested in. The methods
+ * are called by the threads executing the sort, possibly concurrently, and must be fast and thread-safe.
+ * <p>
+ * The durations are measured with {@link System#nanoTime()}. No measurement is taken when the
+ * listener of the sort is {@link #NONE}.
+ *
+ * @author Juliano Piccoli
+ * @see SortStatistics
+ */
+public interface SortListener {
+
+	/**
+	 * Listener that ignores all events.
+	 */
+	SortListener NONE = new SortListener() {
+	};
+
+	/**
+	 * Called when a slice (or a bucket, for the sample sort strategy) is sorted by the underlying algorithm.
+	 * @param slice Index of the slice.
+	 * @param length Number of elements of the slice.
+	 * @param queueWaitNanos Time between the submission of the task and the beginning of its execution.
+	 * @param runNanos Time spent sorting the slice.
+	 */
+	default void sliceSorted(final int slice, final int length, final long queueWaitNanos, final long runNanos) {
+	}
+
+	/**
+	 * Called when a merge round is completed. The pairwise merge strategy executes one round per
+	 * halving of the number of slices and the k-way merge strategy executes a single round.
+	 * @param round Index of the round, starting at zero.
+	 * @param tasks Number of tasks that executed the round.
+	 * @param durationNanos Time between the beginning and the end of the round.
+	 */
+	default void mergeRoundCompleted(final int round, final int tasks, final long durationNanos) {
+	}
+
+	/**
+	 * Called when a sort is completed.
+	 * @param length Number of sorted elements.
+	 * @param slices Number of slices.
+	 * @param durationNanos Time spent in the whole sort.
+	 * @param comparisons Number of comparisons counted during the sort when the comparator is a
+	 * {@link CountingComparator}, or -1 otherwise.
+	 */
+	default void sortCompleted(final int length, final int slices, final long durationNanos, final long comparisons) {
+	}
+
+}
@@ -0,0 +1,95 @@
+package jpiccoli.mt.sort;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that aggregates the measurements of all the sorts it observes. The counters are striped,
+ * so updating them from many threads is cheap. A consistent view is not guaranteed while sorts are
+ * running: each value of a {@link #snapshot()} is read independently.
+ * <p>
+ * The snapshot is a map from metric names to values, which can be exported to a metrics registry.
+ * Comparing the maximum and the average slice run times shows whether the slices are imbalanced, the
+ * queue wait times show whether the executor is backed up, and the merge times show the cost of
+ * the merge phase, which is usually bound by the memory bandwidth.
+ *
+ * @author Juliano Piccoli
+ */
+public class SortStatistics implements SortListener {
+
+	private final LongAdder sorts = new LongAdder();
+	private final LongAdder sortedElements = new LongAdder();
+	private final LongAdder sortNanos = new LongAdder();
+	private final LongAdder comparisons = new LongAdder();
+	private final LongAdder slices = new LongAdder();
+	private final LongAdder sliceRunNanos = new LongAdder();
+	private final LongAccumulator maximumSliceRunNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder sliceQueueWaitNanos = new LongAdder();
+	private final LongAccumulator maximumSliceQueueWaitNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder mergeRounds = new LongAdder();
+	private final LongAdder mergeNanos = new LongAdder();
+
+	@Override
+	public void sliceSorted(final int slice, final int length, final long queueWaitNanos, final long runNanos) {
+		slices.increment();
+		sliceRunNanos.add(runNanos);
+		maximumSliceRunNanos.accumulate(runNanos);
+		sliceQueueWaitNanos.add(queueWaitNanos);
+		maximumSliceQueueWaitNanos.accumulate(queueWaitNanos);
+	}
+
+	@Override
+	public void mergeRoundCompleted(final int round, final int tasks, final long durationNanos) {
+		mergeRounds.increment();
+		mergeNanos.add(durationNanos);
+	}
+
+	@Override
+	public void sortCompleted(final int length, final int slices, final long durationNanos, final long comparisons) {
+		sorts.increment();
+		sortedElements.add(length);
+		sortNanos.add(durationNanos);
+		if (comparisons > 0) {
+			this.comparisons.add(comparisons);
+		}
+	}
+
+	/**
+	 * @return The current value of every metric, by name, in a new map.
+	 */
+	public Map<String, Long> snapshot() {
+		final Map<String, Long> snapshot = new LinkedHashMap<>();
+		snapshot.put("sorts", sorts.sum());
+		snapshot.put("sortedElements", sortedElements.sum());
+		snapshot.put("sortNanos", sortNanos.sum());
+		snapshot.put("comparisons", comparisons.sum());
+		snapshot.put("slices", slices.sum());
+		snapshot.put("sliceRunNanos", sliceRunNanos.sum());
+		snapshot.put("maximumSliceRunNanos", maximumSliceRunNanos.get());
+		snapshot.put("sliceQueueWaitNanos", sliceQueueWaitNanos.sum());
+		snapshot.put("maximumSliceQueueWaitNanos", maximumSliceQueueWaitNanos.get());
+		snapshot.put("mergeRounds", mergeRounds.sum());
+		snapshot.put("mergeNanos", mergeNanos.sum());
+		return snapshot;
+	}
+
+	/**
+	 * Resets all metrics to zero.
+	 */
+	public void reset() {
+		sorts.reset();
+		sortedElements.reset();
+		sortNanos.reset();
+		comparisons.reset();
+		slices.reset();
+		sliceRunNanos.reset();
+		maximumSliceRunNanos.reset();
+		sliceQueueWaitNanos.reset();
+		maximumSliceQueueWaitNanos.reset();
+		mergeRounds.reset();
+		mergeNanos.reset();
+	}
+
+}
@@ -0,0 +1,191 @@
+package jpiccoli.mt.sort;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+
+/**
+ * Sorted array that grows by appending batches of unsorted elements. Instead of sorting the whole
+ * contents again, each batch is sorted alone by the provided sorting algorithm and then merged
+ * into the existing elements. The merge is divided into ranges of the output, which are merged in
+ * parallel after being split at their co-ranks (see {@link MergeSort#coRank}).
+ * <p>
+ * The elements are kept in a backing array plus a spare array of the same capacity that receives
+ * the merge output, after which the roles of the two arrays are swapped. Both arrays are reallocated
+ * only when the capacity is exhausted, with the new capacity given by a {@link GrowthPolicy}.
+ * When equal elements are found, the ones already stored come first. Instances are not thread-safe.
+ *
+ * @author Juliano Piccoli
+ */
+public class SortedAppendBuffer<T> {
+
+	/**
+	 * Policy that decides the capacity of the backing arrays when they must grow.
+	 */
+	@FunctionalInterface
+	public interface GrowthPolicy {
+
+		/**
+		 * Doubles the capacity, or grows it to the required capacity when that is not enough.
+		 */
+		GrowthPolicy DOUBLING = (currentCapacity, requiredCapacity) -> (int) Math.min(Integer.MAX_VALUE - 8,
+				Math.max(requiredCapacity, currentCapacity * 2L));
+
+		/**
+		 * Grows the capacity to exactly the required capacity, trading reallocations for memory.
+		 */
+		GrowthPolicy EXACT = (currentCapacity, requiredCapacity) -> requiredCapacity;
+
+		/**
+		 * @param currentCapacity Current capacity of the backing arrays.
+		 * @param requiredCapacity Capacity needed for storing the appended elements.
+		 * @return The new capacity, which must not be less than the required capacity.
+		 */
+		int newCapacity(int currentCapacity, int requiredCapacity);
+
+	}
+
+	private final SortingAlgorithm<T> sortingAlgorithm;
+	private final Comparator<T> comparator;
+	private final Executor executor;
+	private final GrowthPolicy growthPolicy;
+	private final MergeSort<T> mergeSort;
+
+	private T[] elements;
+	private T[] spare;
+	private int size;
+
+	public SortedAppendBuffer(final AbstractSortingAlgorithm<T> sortingAlgorithm, final Executor executor) {
+		this(sortingAlgorithm, sortingAlgorithm.getComparator(), executor);
+	}
+
+	public SortedAppendBuffer(final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator, final Executor executor) {
+		this(sortingAlgorithm, comparator, executor, GrowthPolicy.DOUBLING, 0);
+	}
+
+	/**
+	 * @param sortingAlgorithm Algorithm used for sorting each appended batch.
+	 * @param comparator Comparator that defines the order of the elements.
+	 * @param executor Executor used for merging the batches.
+	 * @param growthPolicy Policy that decides the new capacity of the backing arrays.
+	 * @param initialCapacity Initial capacity of the backing arrays.
+	 */
+	@SuppressWarnings("unchecked")
+	public SortedAppendBuffer(final SortingAlgorithm<T> sortingAlgorithm, final Comparator<T> comparator, final Executor executor,
+			final GrowthPolicy growthPolicy, final int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+		}
+		this.sortingAlgorithm = sortingAlgorithm;
+		this.comparator = comparator;
+		this.executor = executor;
+		this.growthPolicy = growthPolicy;
+		this.mergeSort = new MergeSort<>(comparator);
+		this.elements = (T[]) new Object[initialCapacity];
+		this.spare = (T[]) new Object[initialCapacity];
+	}
+
+	/**
+	 * Sorts the specified batch and merges it into the stored elements. The batch array is not modified.
+	 * @param batch Array containing the elements to be appended.
+	 */
+	public void append(final T[] batch) {
+		append(batch, 0, batch.length);
+	}
+
+	/**
+	 * Sorts the specified interval of the batch array and merges it into the stored elements.
+	 * The batch array is not modified.
+	 * @param batch Array containing the elements to be appended.
+	 * @param position Index of the first element to be appended.
+	 * @param length Number of elements to be appended.
+	 */
+	public void append(final T[] batch, final int position, final int length) {
+		if (length <= 0) {
+			return;
+		}
+		final int totalLength = size + length;
+		if (totalLength < 0) {
+			throw new IllegalStateException("Maximum capacity exceeded");
+		}
+		ensureCapacity(totalLength);
+
+		// The batch is sorted right after the stored elements, so both runs are in the same array.
+		System.arraycopy(batch, position, elements, size, length);
+		sortingAlgorithm.sort(elements, size, length);
+
+		final int storedLength = size;
+		final T[] source = elements;
+		final T[] destination = spare;
+		final int ranges = ParallelTasks.slices(totalLength);
+		ParallelTasks.forEach(executor, ranges, range -> {
+			final int rankStart = (int) ((long) totalLength * range / ranges);
+			final int rankEnd = (int) ((long) totalLength * (range + 1) / ranges);
+			final int start1 = mergeSort.coRank(rankStart, source, 0, storedLength, source, storedLength, length);
+			final int end1 = mergeSort.coRank(rankEnd, source, 0, storedLength, source, storedLength, length);
+			final int start2 = rankStart - start1;
+			final int end2 = rankEnd - end1;
+			mergeSort.merge(source, start1, end1 - start1, source, storedLength + start2, end2 - start2, destination, rankStart);
+		});
+
+		spare = elements;
+		elements = destination;
+		size = totalLength;
+	}
+
+	/**
+	 * @param index Index of the element, in sorted order.
+	 * @return The stored element at the specified index.
+	 */
+	public T get(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return elements[index];
+	}
+
+	/**
+	 * @return Number of stored elements.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Number of elements that can be stored without reallocating the backing arrays.
+	 */
+	public int capacity() {
+		return elements.length;
+	}
+
+	/**
+	 * @return A new array with the stored elements, in sorted order.
+	 */
+	public T[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	/**
+	 * Removes all the stored elements, keeping the capacity of the backing arrays.
+	 */
+	public void clear() {
+		Arrays.fill(elements, 0, size, null);
+		Arrays.fill(spare, 0, size, null);
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void ensureCapacity(final int requiredCapacity) {
+		if (requiredCapacity <= elements.length) {
+			return;
+		}
+		final int newCapacity = growthPolicy.newCapacity(elements.length, requiredCapacity);
+		if (newCapacity < requiredCapacity) {
+			throw new IllegalStateException("Growth policy returned " + newCapacity + " for a required capacity of " + requiredCapacity);
+		}
+		elements = Arrays.copyOf(elements, newCapacity);
+		// The spare array contents are always overwritten by the next merge.
+		spare = (T[]) new Object[newCapacity];
+	}
+
+}
@@ -0,0 +1,237 @@
+package jpiccoli.mt.sort;
+
+import java.lang.reflect.Array;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+
+/**
+ * Parallel set operations and merge-join over arrays sorted according to a comparator.
+ * The inputs are handled as multisets: a value that occurs n1 times in the first array and n2 times
+ * in the second one occurs max(n1, n2) times in the union, min(n1, n2) times in the intersection and
+ * max(0, n1 - n2) times in the difference, like the set algorithms of the C++ standard library.
+ * <p>
+ * Both inputs are divided into one range per task. The cuts are found by co-ranking the merge of
+ * the two arrays (see {@link MergeSort#coRank}), so the ranges have similar lengths, and are then moved
+ * back to the first element of the value found at the cut, so a group of equal values is never divided
+ * between two tasks. The operation runs twice on each range: a counting pass computes the length of
+ * the output of every range, so the result array is allocated once, and a second pass writes each
+ * range at its final position. The output elements are taken from the first array whenever possible.
+ *
+ * @author Juliano Piccoli
+ */
+public class SortedArrayOperations<T> {
+
+	private final Comparator<T> comparator;
+	private final Executor executor;
+	private final MergeSort<T> mergeSort;
+
+	public SortedArrayOperations(final Comparator<T> comparator, final Executor executor) {
+		this.comparator = comparator;
+		this.executor = executor;
+		this.mergeSort = new MergeSort<>(comparator);
+	}
+
+	/**
+	 * @return A new sorted array with the elements of both arrays, each value occurring as many times as in the input where it occurs most.
+	 */
+	public T[] union(final T[] elements1, final T[] elements2) {
+		return execute(elements1, elements2, newArray(elements1), (source1, position1, count1, source2, position2, count2, output, outputPosition) -> {
+			final int count = Math.max(count1, count2);
+			if (output != null) {
+				System.arraycopy(source1, position1, output, outputPosition, count1);
+				if (count2 > count1) {
+					System.arraycopy(source2, position2 + count1, output, outputPosition + count1, count2 - count1);
+				}
+			}
+			return count;
+		});
+	}
+
+	/**
+	 * @return A new sorted array with the elements that occur in both arrays.
+	 */
+	public T[] intersection(final T[] elements1, final T[] elements2) {
+		return execute(elements1, elements2, newArray(elements1), (source1, position1, count1, source2, position2, count2, output, outputPosition) -> {
+			final int count = Math.min(count1, count2);
+			if (output != null) {
+				System.arraycopy(source1, position1, output, outputPosition, count);
+			}
+			return count;
+		});
+	}
+
+	/**
+	 * @return A new sorted array with the elements of the first array that do not occur in the second one.
+	 */
+	public T[] difference(final T[] elements1, final T[] elements2) {
+		return execute(elements1, elements2, newArray(elements1), (source1, position1, count1, source2, position2, count2, output, outputPosition) -> {
+			final int count = Math.max(0, count1 - count2);
+			if (output != null) {
+				System.arraycopy(source1, position1 + count1 - count, output, outputPosition, count);
+			}
+			return count;
+		});
+	}
+
+	/**
+	 * @return A new sorted array with the first element of each group of equal elements of the specified array.
+	 */
+	public T[] distinct(final T[] elements) {
+		final T[] empty = newArray(elements).apply(0);
+		return execute(elements, empty, newArray(elements), (source1, position1, count1, source2, position2, count2, output, outputPosition) -> {
+			if (output != null) {
+				output[outputPosition] = source1[position1];
+			}
+			return 1;
+		});
+	}
+
+	/**
+	 * Inner merge-join of two sorted arrays: every pair of equal elements, one from each array,
+	 * is combined into an element of the result. The results are ordered by the joined value and,
+	 * for the same value, by the index of the first element and then of the second one.
+	 *
+	 * @param elements1 First sorted array.
+	 * @param elements2 Second sorted array.
+	 * @param combiner Function that creates a result from a pair of equal elements.
+	 * @param generator Function that creates the result array with the specified length.
+	 * @return A new array with the combined pairs.
+	 */
+	public <R> R[] mergeJoin(final T[] elements1, final T[] elements2, final BiFunction<? super T, ? super T, ? extends R> combiner,
+			final IntFunction<R[]> generator) {
+		return execute(elements1, elements2, generator, (source1, position1, count1, source2, position2, count2, output, outputPosition) -> {
+			final long count = (long) count1 * count2;
+			if (count > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Join result is too long");
+			}
+			if (output != null) {
+				int index = outputPosition;
+				for (int index1 = position1; index1 < position1 + count1; index1++) {
+					for (int index2 = position2; index2 < position2 + count2; index2++) {
+						output[index++] = combiner.apply(source1[index1], source2[index2]);
+					}
+				}
+			}
+			return (int) count;
+		});
+	}
+
+	/**
+	 * Divides both inputs into ranges, counts the output of each range, allocates the result
+	 * and then writes the output of each range, with one task per range in both passes.
+	 */
+	private <R> R[] execute(final T[] elements1, final T[] elements2, final IntFunction<R[]> generator, final GroupOperation<T, R> operation) {
+		final int length1 = elements1.length;
+		final int length2 = elements2.length;
+		final long totalLength = (long) length1 + length2;
+		// The total length may exceed the int range, where the number of ranges is already at its maximum.
+		final int ranges = ParallelTasks.slices((int) Math.min(totalLength, Integer.MAX_VALUE));
+
+		final int[] cuts1 = new int[ranges + 1];
+		final int[] cuts2 = new int[ranges + 1];
+		cuts1[ranges] = length1;
+		cuts2[ranges] = length2;
+		for (int range = 1; range < ranges; range++) {
+			final int rank = (int) (totalLength * range / ranges);
+			final int count1 = mergeSort.coRank(rank, elements1, 0, length1, elements2, 0, length2);
+			final int count2 = rank - count1;
+			final T value;
+			if (count2 >= length2 || (count1 < length1 && comparator.compare(elements1[count1], elements2[count2]) <= 0)) {
+				value = elements1[count1];
+			} else {
+				value = elements2[count2];
+			}
+			cuts1[range] = lowerBound(elements1, cuts1[range - 1], length1, value);
+			cuts2[range] = lowerBound(elements2, cuts2[range - 1], length2, value);
+		}
+
+		final int[] outputPositions = new int[ranges + 1];
+		ParallelTasks.forEach(executor, ranges, range -> outputPositions[range + 1] = walk(elements1, cuts1[range], cuts1[range + 1],
+				elements2, cuts2[range], cuts2[range + 1], operation, null, 0));
+		for (int range = 0; range < ranges; range++) {
+			final long outputPosition = (long) outputPositions[range] + outputPositions[range + 1];
+			if (outputPosition > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Result is too long");
+			}
+			outputPositions[range + 1] = (int) outputPosition;
+		}
+
+		final R[] output = generator.apply(outputPositions[ranges]);
+		ParallelTasks.forEach(executor, ranges, range -> walk(elements1, cuts1[range], cuts1[range + 1],
+				elements2, cuts2[range], cuts2[range + 1], operation, output, outputPositions[range]));
+		return output;
+	}
+
+	/**
+	 * Walks the groups of equal values of both ranges in ascending order, like a merge, and applies the
+	 * operation to each one. When the output is null, only the number of output elements is computed.
+	 * @return Number of output elements of the ranges.
+	 */
+	private <R> int walk(final T[] elements1, int index1, final int limit1, final T[] elements2, int index2, final int limit2,
+			final GroupOperation<T, R> operation, final R[] output, final int outputPosition) {
+		int outputIndex = outputPosition;
+		while (index1 < limit1 || index2 < limit2) {
+			final int result;
+			if (index1 >= limit1) {
+				result = 1;
+			} else if (index2 >= limit2) {
+				result = -1;
+			} else {
+				result = comparator.compare(elements1[index1], elements2[index2]);
+			}
+			final int count1 = result <= 0 ? groupLength(elements1, index1, limit1) : 0;
+			final int count2 = result >= 0 ? groupLength(elements2, index2, limit2) : 0;
+			outputIndex += operation.apply(elements1, index1, count1, elements2, index2, count2, output, outputIndex);
+			index1 += count1;
+			index2 += count2;
+		}
+		return outputIndex - outputPosition;
+	}
+
+	/**
+	 * @return Number of consecutive elements, starting at the specified index, that are equal to the element at that index.
+	 */
+	private int groupLength(final T[] elements, final int index, final int limit) {
+		final T value = elements[index];
+		int end = index + 1;
+		while (end < limit && comparator.compare(elements[end], value) == 0) {
+			end++;
+		}
+		return end - index;
+	}
+
+	/**
+	 * Finds the index of the first element of the sorted array interval that is not less than the specified value.
+	 */
+	private int lowerBound(final T[] elements, int low, int high, final T value) {
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (comparator.compare(elements[middle], value) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> IntFunction<T[]> newArray(final T[] template) {
+		return length -> (T[]) Array.newInstance(template.getClass().getComponentType(), length);
+	}
+
+	/**
+	 * Operation applied to a group of equal values, which has count1 elements in the first array
+	 * and count2 elements in the second one (one of the counts may be zero).
+	 */
+	@FunctionalInterface
+	private interface GroupOperation<T, R> {
+		/**
+		 * @return Number of output elements of the group. They are written only when the output is not null.
+		 */
+		int apply(T[] source1, int position1, int count1, T[] source2, int position2, int count2, R[] output, int outputPosition);
+	}
+
+}
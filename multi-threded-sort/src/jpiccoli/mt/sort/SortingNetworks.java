@@ -0,0 +1,140 @@
+package jpiccoli.mt.sort;
+
+import java.util.Arrays;
+
+/**
+ * Branch-free kernels for the leaves of the primitive int and long sorting algorithms. Short blocks
+ * are sorted by a bitonic sorting network, whose sequence of compare-exchange operations does not
+ * depend on the data: each one is a pair of min/max operations, which the JIT compiles to conditional
+ * moves, so there are no mispredicted branches. Sorted runs are merged by loops that select the next
+ * element and advance the indexes with conditional expressions instead of branches.
+ * <p>
+ * The network has {@link #LEAF_LENGTH} wires and every compare-exchange puts the minimum in the lower
+ * wire. A block with fewer elements behaves as if it was padded with the maximum value, so the
+ * compare-exchanges involving the missing wires are just skipped.
+ *
+ * @author Juliano Piccoli
+ */
+final class SortingNetworks {
+
+	/**
+	 * Length of the blocks sorted by the network.
+	 */
+	static final int LEAF_LENGTH = 16;
+
+	// Wires of each compare-exchange, in execution order.
+	private static final int[] LOWER_WIRES;
+	private static final int[] UPPER_WIRES;
+
+	static {
+		int comparators = 0;
+		final int[] lowerWires = new int[LEAF_LENGTH * LEAF_LENGTH];
+		final int[] upperWires = new int[LEAF_LENGTH * LEAF_LENGTH];
+		// Bitonic sort in the form without descending comparators: each stage starts by comparing
+		// mirrored wires of its blocks, which sorts a pair of ascending sequences as a bitonic one.
+		for (int blockLength = 2; blockLength <= LEAF_LENGTH; blockLength *= 2) {
+			for (int wire = 0; wire < LEAF_LENGTH; wire++) {
+				final int partner = wire ^ (blockLength - 1);
+				if (partner > wire) {
+					lowerWires[comparators] = wire;
+					upperWires[comparators++] = partner;
+				}
+			}
+			for (int distance = blockLength / 4; distance > 0; distance /= 2) {
+				for (int wire = 0; wire < LEAF_LENGTH; wire++) {
+					final int partner = wire ^ distance;
+					if (partner > wire) {
+						lowerWires[comparators] = wire;
+						upperWires[comparators++] = partner;
+					}
+				}
+			}
+		}
+		LOWER_WIRES = Arrays.copyOf(lowerWires, comparators);
+		UPPER_WIRES = Arrays.copyOf(upperWires, comparators);
+	}
+
+	private SortingNetworks() {
+	}
+
+	/**
+	 * Sorts a block of up to {@link #LEAF_LENGTH} elements.
+	 */
+	static void sort(final int[] elements, final int position, final int length) {
+		for (int comparator = 0; comparator < LOWER_WIRES.length; comparator++) {
+			final int upperWire = UPPER_WIRES[comparator];
+			if (upperWire < length) {
+				final int lowerIndex = position + LOWER_WIRES[comparator];
+				final int upperIndex = position + upperWire;
+				final int lower = elements[lowerIndex];
+				final int upper = elements[upperIndex];
+				elements[lowerIndex] = Math.min(lower, upper);
+				elements[upperIndex] = Math.max(lower, upper);
+			}
+		}
+	}
+
+	/**
+	 * Sorts a block of up to {@link #LEAF_LENGTH} elements.
+	 */
+	static void sort(final long[] elements, final int position, final int length) {
+		for (int comparator = 0; comparator < LOWER_WIRES.length; comparator++) {
+			final int upperWire = UPPER_WIRES[comparator];
+			if (upperWire < length) {
+				final int lowerIndex = position + LOWER_WIRES[comparator];
+				final int upperIndex = position + upperWire;
+				final long lower = elements[lowerIndex];
+				final long upper = elements[upperIndex];
+				elements[lowerIndex] = Math.min(lower, upper);
+				elements[upperIndex] = Math.max(lower, upper);
+			}
+		}
+	}
+
+	/**
+	 * Merges the sorted sub-arrays [position, position + length1) and [position + length1, position + length1 + length2)
+	 * of the source array into the same interval of the destination array. Equal elements of the first sub-array come first.
+	 */
+	static void merge(final int[] source, final int[] destination, final int position, final int length1, final int length2) {
+		final int indexLimit1 = position + length1;
+		final int indexLimit2 = indexLimit1 + length2;
+		int sourceIndex1 = position;
+		int sourceIndex2 = indexLimit1;
+		int destinationIndex = position;
+		while (sourceIndex1 < indexLimit1 && sourceIndex2 < indexLimit2) {
+			final int element1 = source[sourceIndex1];
+			final int element2 = source[sourceIndex2];
+			final int takeSecond = element2 < element1 ? 1 : 0;
+			destination[destinationIndex++] = takeSecond != 0 ? element2 : element1;
+			sourceIndex2 += takeSecond;
+			sourceIndex1 += 1 - takeSecond;
+		}
+		System.arraycopy(source, sourceIndex1, destination, destinationIndex, indexLimit1 - sourceIndex1);
+		destinationIndex += indexLimit1 - sourceIndex1;
+		System.arraycopy(source, sourceIndex2, destination, destinationIndex, indexLimit2 - sourceIndex2);
+	}
+
+	/**
+	 * Merges the sorted sub-arrays [position, position + length1) and [position + length1, position + length1 + length2)
+	 * of the source array into the same interval of the destination array. Equal elements of the first sub-array come first.
+	 */
+	static void merge(final long[] source, final long[] destination, final int position, final int length1, final int length2) {
+		final int indexLimit1 = position + length1;
+		final int indexLimit2 = indexLimit1 + length2;
+		int sourceIndex1 = position;
+		int sourceIndex2 = indexLimit1;
+		int destinationIndex = position;
+		while (sourceIndex1 < indexLimit1 && sourceIndex2 < indexLimit2) {
+			final long element1 = source[sourceIndex1];
+			final long element2 = source[sourceIndex2];
+			final int takeSecond = element2 < element1 ? 1 : 0;
+			destination[destinationIndex++] = takeSecond != 0 ? element2 : element1;
+			sourceIndex2 += takeSecond;
+			sourceIndex1 += 1 - takeSecond;
+		}
+		System.arraycopy(source, sourceIndex1, destination, destinationIndex, indexLimit1 - sourceIndex1);
+		destinationIndex += indexLimit1 - sourceIndex1;
+		System.arraycopy(source, sourceIndex2, destination, destinationIndex, indexLimit2 - sourceIndex2);
+	}
+
+}
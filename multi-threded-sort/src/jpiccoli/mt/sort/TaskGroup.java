@@ -0,0 +1,100 @@
+package jpiccoli.mt.sort;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Group of tasks executed in an {@link Executor} which the waiting thread helps to run.
+ * The tasks are kept in a queue owned by the group and each submission to the executor only
+ * runs the next queued task, if there is one. A thread calling {@link #await()} drains the
+ * same queue before blocking, so a sort invoked from a thread of a saturated (or single thread)
+ * pool still makes progress instead of starving, and the calling core does useful work.
+ * <p>
+ * Tasks that did not start yet are skipped once the cancellation condition becomes true.
+ * The first exception thrown by a task cancels the remaining ones and is rethrown by {@link #await()}.
+ *
+ * @author Juliano Piccoli
+ */
+final class TaskGroup {
+
+	static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+	private final Executor executor;
+	private final BooleanSupplier cancelled;
+	private final ConcurrentLinkedQueue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger unfinishedTasks = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	TaskGroup(final Executor executor) {
+		this(executor, NOT_CANCELLED);
+	}
+
+	TaskGroup(final Executor executor, final BooleanSupplier cancelled) {
+		this.executor = executor;
+		this.cancelled = cancelled;
+	}
+
+	void execute(final Runnable task) {
+		unfinishedTasks.incrementAndGet();
+		pendingTasks.add(task);
+		executor.execute(this::runPendingTask);
+	}
+
+	/**
+	 * Runs the pending tasks in the calling thread and then blocks until the tasks taken by
+	 * the executor threads are finished.
+	 *
+	 * @throws SortingException If the thread is interrupted or if any task failed.
+	 */
+	void await() {
+		Runnable task;
+		while ((task = pendingTasks.poll()) != null) {
+			run(task);
+		}
+		synchronized (this) {
+			try {
+				while (unfinishedTasks.get() > 0) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SortingException(e);
+			}
+		}
+		final Throwable throwable = failure.get();
+		if (throwable instanceof RuntimeException) {
+			throw (RuntimeException) throwable;
+		} else if (throwable instanceof Error) {
+			throw (Error) throwable;
+		} else if (throwable != null) {
+			throw new SortingException(throwable);
+		}
+	}
+
+	private void runPendingTask() {
+		final Runnable task = pendingTasks.poll();
+		if (task != null) {
+			run(task);
+		}
+	}
+
+	private void run(final Runnable task) {
+		try {
+			if (failure.get() == null && !cancelled.getAsBoolean()) {
+				task.run();
+			}
+		} catch (Throwable throwable) {
+			failure.compareAndSet(null, throwable);
+		} finally {
+			if (unfinishedTasks.decrementAndGet() == 0) {
+				synchronized (this) {
+					notifyAll();
+				}
+			}
+		}
+	}
+
+}